@@ -0,0 +1,43 @@
+package speedtools
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+
+// Every user creates, reads, lists and deletes persons on /example/3, which runs against a local mongod.
+// Run it once with "PersonDao.async = false" and once with "PersonDao.async = true" in example.properties,
+// and compare the throughput and the percentiles of the requests.
+class AsyncDaoTestRestApi extends Simulation {
+
+  val httpConf = http.
+    baseURL("http://localhost:8080").
+    acceptCharsetHeader("utf-8").
+    acceptHeader("application/json").
+    acceptLanguageHeader("en-US").
+    disableFollowRedirect
+
+  val headers = Map(
+    "Accept" -> "application/json",
+    "Content-Type" -> "application/json")
+
+  // Number of persons created, read and deleted per user.
+  val nrPersons = 20
+
+  val scenarioMixed = scenario("AsyncDao").
+    repeat(nrPersons) {
+      exec(http("createPerson").post("/example/3/person").headers(headers).
+        body(StringBody("""{"name":"Async User","age":30}""")).
+        check(jsonPath("$.id").saveAs("id"))).
+        exec(http("getPerson").get("/example/3/person/${id}").headers(headers).
+          check(status.is(200))).
+        exec(http("getPersons").get("/example/3/person?count=20").headers(headers).
+          check(status.is(200))).
+        exec(http("removePerson").delete("/example/3/person/${id}").headers(headers).
+          check(status.is(204)))
+    }
+
+  setUp(
+    scenarioMixed.inject(rampUsers(1000) over (30 seconds))).
+    protocols(httpConf).
+    assertions(global.successfulRequests.percent.is(100))
+}
@@ -0,0 +1,51 @@
+package speedtools
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+
+class BatchTestRestApi extends Simulation {
+
+  val httpConf = http.
+    baseURL("http://localhost:8080").
+    acceptCharsetHeader("utf-8").
+    acceptHeader("application/json").
+    acceptLanguageHeader("en-US").
+    disableFollowRedirect
+
+  val headers = Map(
+    "Accept" -> "application/json",
+    "Content-Type" -> "application/json")
+
+  // Number of persons created by every user, either one by one or in a single batch.
+  val batchSize = 100
+
+  val person = """{"name":"Batch User","age":30}"""
+  val persons = List.fill(batchSize)(person).mkString("""{"persons":[""", ",", "]}")
+
+  val scenarioWarmUp = scenario("Warm-Up").
+    exec(http("first-single").post("/example/2/person").headers(headers).body(StringBody(person))).
+    exec(http("first-batch").post("/example/2/person/batch").headers(headers).body(StringBody(persons)))
+
+  // Create the persons with single calls; every call pays the full simulated database latency.
+  val scenarioSingleCalls = scenario("SingleCalls").
+    group("single-" + batchSize) {
+      repeat(batchSize) {
+        exec(http("single").post("/example/2/person").headers(headers).body(StringBody(person)))
+      }
+    }
+
+  // Create the same number of persons with a single batch call.
+  val scenarioBatchCall = scenario("BatchCall").
+    group("batch-" + batchSize) {
+      exec(http("batch").post("/example/2/person/batch").headers(headers).body(StringBody(persons)))
+    }
+
+  // Compare the group response times in the report: they show the time to create batchSize persons.
+  setUp(
+    scenarioWarmUp.inject(atOnceUsers(1)),
+    scenarioSingleCalls.inject(nothingFor(5 seconds), rampUsers(100) over (30 seconds)),
+    scenarioBatchCall.inject(nothingFor(65 seconds), rampUsers(100) over (30 seconds))).
+    protocols(httpConf).
+    assertions(global.successfulRequests.percent.is(100))
+}
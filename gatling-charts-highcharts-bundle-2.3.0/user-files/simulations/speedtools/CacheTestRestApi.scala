@@ -0,0 +1,50 @@
+package speedtools
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+import scala.util.Random
+
+// Run this simulation twice, with PersonCache.enabled set to true and to false in example.properties,
+// and compare the 50th and 99th percentiles of "getPerson" in both reports.
+class CacheTestRestApi extends Simulation {
+
+  val httpConf = http.
+    baseURL("http://localhost:8080").
+    acceptCharsetHeader("utf-8").
+    acceptHeader("application/json").
+    acceptLanguageHeader("en-US").
+    disableFollowRedirect
+
+  val headers = Map(
+    "Accept" -> "application/json",
+    "Content-Type" -> "application/json")
+
+  // Number of persons in the database and number of reads per user.
+  val nrPersons = 1000
+  val nrReads = 50
+
+  // Pick IDs with a skewed (geometric) distribution, so a small set of persons gets most reads.
+  def pickId(ids: Seq[String]): String =
+    ids(math.min(ids.size - 1, (-math.log(1.0 - Random.nextDouble()) * ids.size / 20).toInt))
+
+  val scenarioFill = scenario("Fill").
+    repeat(nrPersons) {
+      exec(http("createPerson").post("/example/3/person").headers(headers).
+        body(StringBody("""{"name":"Cache User","age":30}""")))
+    }
+
+  val scenarioRead = scenario("Read").
+    exec(http("getPersons").get("/example/3/person?count=" + nrPersons).headers(headers).
+      check(jsonPath("$[*].id").findAll.saveAs("ids"))).
+    repeat(nrReads) {
+      exec(session => session.set("id", pickId(session("ids").as[Seq[String]]))).
+        exec(http("getPerson").get("/example/3/person/${id}").headers(headers))
+    }
+
+  setUp(
+    scenarioFill.inject(atOnceUsers(1)),
+    scenarioRead.inject(nothingFor(30 seconds), rampUsers(2000) over (60 seconds))).
+    protocols(httpConf).
+    assertions(global.successfulRequests.percent.is(100))
+}
@@ -0,0 +1,40 @@
+package speedtools
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+
+// Every user creates persons and deletes each of them twice, concurrently, of which only one delete
+// may succeed. Compare the throughput and the percentiles of "removePerson" before and after a change.
+class DeleteTestRestApi extends Simulation {
+
+  val httpConf = http.
+    baseURL("http://localhost:8080").
+    acceptCharsetHeader("utf-8").
+    acceptHeader("application/json").
+    acceptLanguageHeader("en-US").
+    disableFollowRedirect
+
+  val headers = Map(
+    "Accept" -> "application/json",
+    "Content-Type" -> "application/json")
+
+  // Number of persons created and deleted per user.
+  val nrPersons = 50
+
+  val scenarioDelete = scenario("Delete").
+    repeat(nrPersons) {
+      exec(http("createPerson").post("/example/3/person").headers(headers).
+        body(StringBody("""{"name":"Delete User","age":30}""")).
+        check(jsonPath("$.id").saveAs("id"))).
+        exec(http("removePerson").delete("/example/3/person/${id}").headers(headers).
+          resources(http("removePerson").delete("/example/3/person/${id}").headers(headers).
+            check(status.in(204, 404))).
+          check(status.in(204, 404)))
+    }
+
+  setUp(
+    scenarioDelete.inject(rampUsers(500) over (30 seconds))).
+    protocols(httpConf).
+    assertions(global.successfulRequests.percent.is(100))
+}
@@ -0,0 +1,56 @@
+package speedtools
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+import scala.util.Random
+
+// Every user geocodes a batch of addresses, first one by one and then with a single batch call. Point the LBS
+// properties at a local stand-in with a fixed latency per call, and compare the group response times: the batch call
+// takes about batchSize / GeoCodeBatch.maxConcurrency geocode latencies. The addresses are random, so they are not
+// served from the geocoding cache.
+class GeoCodeBatchTestRestApi extends Simulation {
+
+  val httpConf = http.
+    baseURL("http://localhost:8080").
+    acceptCharsetHeader("utf-8").
+    acceptHeader("application/json").
+    acceptLanguageHeader("en-US").
+    disableFollowRedirect
+
+  val headers = Map(
+    "Accept" -> "application/json",
+    "Content-Type" -> "application/json")
+
+  // Number of addresses geocoded by every user.
+  val batchSize = 20
+
+  val addresses = Iterator.continually {
+    val houseNumbers = List.fill(batchSize)(Random.nextInt(1000) + 1)
+    Map(
+      "houseNumbers" -> houseNumbers,
+      "queries" -> houseNumbers.map(n => "\"Damrak " + n + " Amsterdam\"").mkString("""{"queries":[""", ",", "]}"))
+  }
+
+  val scenarioSingleCalls = scenario("SingleCalls").
+    feed(addresses).
+    group("single-" + batchSize) {
+      foreach("${houseNumbers}", "houseNumber") {
+        exec(http("getGeoCode").get("/lbs/geocode/Damrak%20${houseNumber}%20Amsterdam").headers(headers).
+          check(status.is(200)))
+      }
+    }
+
+  val scenarioBatchCall = scenario("BatchCall").
+    feed(addresses).
+    group("batch-" + batchSize) {
+      exec(http("getGeoCodes").post("/lbs/geocode/batch").headers(headers).body(StringBody("${queries}")).
+        check(status.is(200)))
+    }
+
+  setUp(
+    scenarioSingleCalls.inject(rampUsers(50) over (30 seconds)),
+    scenarioBatchCall.inject(nothingFor(60 seconds), rampUsers(50) over (30 seconds))).
+    protocols(httpConf).
+    assertions(global.successfulRequests.percent.is(100))
+}
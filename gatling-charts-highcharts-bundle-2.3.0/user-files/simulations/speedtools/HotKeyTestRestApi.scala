@@ -0,0 +1,48 @@
+package speedtools
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+
+class HotKeyTestRestApi extends Simulation {
+
+  val httpConf = http.
+    baseURL("http://localhost:8080").
+    acceptCharsetHeader("utf-8").
+    acceptHeader("application/json").
+    acceptLanguageHeader("en-US").
+    disableFollowRedirect
+
+  val headers = Map(
+    "Accept" -> "application/json")
+
+  // Skewed ID distribution: most requests are for a single hot person.
+  def hotPersons(name: String, path: String) =
+    randomSwitch(
+      80.0 -> exec(http(name).get(path + "/person/1-1-1-1-1").headers(headers)),
+      20.0 -> exec(http(name).get(path + "/person/1-1-1-1-2").headers(headers)))
+
+  val scenarioWarmUp = scenario("Warm-Up").
+    exec(http("first-thread").get("/example/1/person/1-1-1-1-1").headers(headers)).
+    exec(http("first-future").get("/example/2/person/1-1-1-1-1").headers(headers)).
+    exec(http("first-database").get("/example/3/person/1-1-1-1-1").headers(headers))
+
+  // Every request executes its own database call.
+  val scenarioNotCoalesced = scenario("NotCoalesced").
+    exec(hotPersons("NotCoalesced", "/example/1"))
+
+  // Concurrent requests for the same person share a single database call.
+  val scenarioCoalesced = scenario("Coalesced").
+    exec(hotPersons("Coalesced", "/example/2"))
+
+  val scenarioCoalescedDatabase = scenario("CoalescedDatabase").
+    exec(hotPersons("CoalescedDatabase", "/example/3"))
+
+  setUp(
+    scenarioWarmUp.inject(atOnceUsers(1)),
+    scenarioNotCoalesced.inject(nothingFor(10 seconds), rampUsers(5000) over (30 seconds)),
+    scenarioCoalesced.inject(nothingFor(70 seconds), rampUsers(5000) over (30 seconds)),
+    scenarioCoalescedDatabase.inject(nothingFor(130 seconds), rampUsers(5000) over (30 seconds))).
+    protocols(httpConf).
+    assertions(global.successfulRequests.percent.is(100))
+}
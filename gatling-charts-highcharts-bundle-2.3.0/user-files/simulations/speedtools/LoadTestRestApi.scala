@@ -18,7 +18,8 @@ class LoadTestRestApi extends Simulation {
 
   val scenarioWarmUp = scenario("Warm-Up").
     exec(http("first-thread").get("/example/1/person").headers(headers)).
-    exec(http("first-future").get("/example/2/person").headers(headers))
+    exec(http("first-future").get("/example/2/person").headers(headers)).
+    exec(http("first-virtual").get("/example/4/person").headers(headers))
 
   val scenarioNonAkkaImplementation = scenario("NonAkkaImplementation").
     exec(http("NonAkkaImplementation").get("/example/1/person").headers(headers))
@@ -26,10 +27,17 @@ class LoadTestRestApi extends Simulation {
   val scenarioAkkaImplementation = scenario("AkkaImplementation").
     exec(http("AkkaImplementation").get("/example/2/person").headers(headers))
 
+  val scenarioVirtualThreadImplementation = scenario("VirtualThreadImplementation").
+    exec(http("VirtualThreadImplementation").get("/example/4/person").headers(headers))
+
+  // Run the implementations one after the other with the same ramp, so the report shows how they
+  // scale under the latency profile configured in example.properties (SimulatedBusyDatabase.latency*).
+  // The virtual thread implementation uses virtual threads on JDK 21 and later only.
   setUp(
     scenarioWarmUp.inject(atOnceUsers(1)),
-    scenarioAkkaImplementation.inject(nothingFor(10 seconds), rampUsers(5000) over (30 seconds))).
-    //scenarioAkkaImplementation.inject(nothingFor(180 seconds), rampUsers(5000) over (30 seconds))).
+    scenarioNonAkkaImplementation.inject(nothingFor(10 seconds), rampUsers(5000) over (30 seconds)),
+    scenarioAkkaImplementation.inject(nothingFor(70 seconds), rampUsers(5000) over (30 seconds)),
+    scenarioVirtualThreadImplementation.inject(nothingFor(130 seconds), rampUsers(5000) over (30 seconds))).
     protocols(httpConf).
     assertions(global.successfulRequests.percent.is(100))
 }
@@ -0,0 +1,38 @@
+package speedtools
+
+import io.gatling.core.Predef._
+import io.gatling.http.Predef._
+import scala.concurrent.duration._
+
+// Every user requests routes between a few addresses. Point the LBS properties at a local stand-in with a fixed
+// latency per call, and compare the percentiles of "getRoute" before and after a change: with the geocodes of
+// origin and destination executed at the same time, a route takes one geocode latency less.
+class RouteTestRestApi extends Simulation {
+
+  val httpConf = http.
+    baseURL("http://localhost:8080").
+    acceptCharsetHeader("utf-8").
+    acceptHeader("application/json").
+    acceptLanguageHeader("en-US").
+    disableFollowRedirect
+
+  val headers = Map(
+    "Accept" -> "application/json")
+
+  val routes = Array(
+    Map("from" -> "Amsterdam", "to" -> "Utrecht"),
+    Map("from" -> "Rotterdam", "to" -> "Eindhoven"),
+    Map("from" -> "Groningen", "to" -> "Maastricht")).circular
+
+  val scenarioRoute = scenario("Route").
+    repeat(10) {
+      feed(routes).
+        exec(http("getRoute").get("/lbs/route/${from}/${to}").headers(headers).
+          check(status.is(200)))
+    }
+
+  setUp(
+    scenarioRoute.inject(rampUsers(100) over (30 seconds))).
+    protocols(httpConf).
+    assertions(global.successfulRequests.percent.is(100))
+}
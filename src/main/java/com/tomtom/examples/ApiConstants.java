@@ -52,12 +52,32 @@ public final class ApiConstants {
     public static final int API_COUNT_MAX = Integer.MAX_VALUE;
     public static final int API_OFFSET_MAX = Integer.MAX_VALUE;
 
+    /**
+     * Default page size for paged requests without an explicit count.
+     */
+    public static final int API_COUNT_DEFAULT = 100;
+
+    /**
+     * Maximum number of items in a batch request.
+     */
+    public static final int API_BATCH_SIZE_MAX = 1000;
+
+    /**
+     * Maximum number of queries in a batch geocoding request. This is much larger than {@link #API_BATCH_SIZE_MAX},
+     * as batch geocoding is meant for address lists of tens of thousands of entries; the results are streamed, so they
+     * are never held in memory all at once.
+     */
+    public static final int API_GEOCODE_BATCH_SIZE_MAX = 50000;
+
     public static final int API_VERSION_LEN_MIN = 1;
     public static final int API_VERSION_LEN_MAX = 250;
 
     public static final int API_NAME_LEN_MIN = 1;
     public static final int API_NAME_LEN_MAX = 250;
 
+    public static final int API_QUERY_LEN_MIN = 1;
+    public static final int API_QUERY_LEN_MAX = 250;
+
     public static final int API_HEART_RATE_MIN = 0;
     public static final int API_HEART_RATE_MAX = 250;
 
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.common;
+
+import javax.annotation.Nonnull;
+import java.util.Enumeration;
+import java.util.Iterator;
+
+/**
+ * Iterator over a resource which must be closed after use, such as a database cursor. Unlike {@link AutoCloseable},
+ * closing it does not throw a checked exception, so it can be closed in a try-with-resources block of a lambda.
+ *
+ * @param <T> Element type.
+ */
+public interface CloseableIterator<T> extends Iterator<T>, AutoCloseable {
+
+    /**
+     * Release the underlying resource. Closing an iterator twice has no effect.
+     */
+    @Override
+    void close();
+
+    /**
+     * Create a closeable iterator which does not hold a resource.
+     *
+     * @param iterator Iterator to wrap.
+     * @param <T>      Element type.
+     * @return Iterator; closing it has no effect.
+     */
+    @Nonnull
+    static <T> CloseableIterator<T> of(@Nonnull final Iterator<? extends T> iterator) {
+        assert iterator != null;
+        return new CloseableIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release.
+            }
+        };
+    }
+
+    /**
+     * Create a closeable iterator over an enumeration, such as the keys of a concurrent map.
+     *
+     * @param enumeration Enumeration to wrap.
+     * @param <T>         Element type.
+     * @return Iterator; closing it has no effect.
+     */
+    @Nonnull
+    static <T> CloseableIterator<T> of(@Nonnull final Enumeration<? extends T> enumeration) {
+        assert enumeration != null;
+        return new CloseableIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return enumeration.hasMoreElements();
+            }
+
+            @Override
+            public T next() {
+                return enumeration.nextElement();
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release.
+            }
+        };
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.common;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.actor.Scheduler;
+import akka.dispatch.Futures;
+import com.tomtom.examples.ApiConstants;
+import com.tomtom.speedtools.rest.ResourceProcessor;
+import org.slf4j.Logger;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.concurrent.duration.Duration;
+import scala.jdk.javaapi.FutureConverters;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * This class lets request handlers be written with Java {@link CompletionStage}s, rather than Scala futures and Akka
+ * {@link akka.dispatch.Mapper} classes. It is a thin layer on top of {@link ResourceProcessor}, so requests are still
+ * processed, logged and mapped to error responses by SpeedTools.
+ *
+ * The completion stage returned by a handler is bridged to a Scala future directly on the thread that completes the
+ * stage, so there is no additional thread hop. If the stage does not complete within the timeout, the request fails
+ * with HTTP 503 (Service Unavailable).
+ *
+ * Example:
+ * <pre>
+ *     processor.process("getPerson", LOG, response, () -&gt;
+ *         db.get(id).thenApply(person -&gt; {
+ *             response.resume(Response.ok(PersonConverter.fromDomain(person)).build());
+ *             return null;
+ *         }));
+ * </pre>
+ */
+public final class CompletionStageProcessor {
+
+    @Nonnull
+    private final ResourceProcessor processor;
+    @Nonnull
+    private final Scheduler scheduler;
+    @Nonnull
+    private final ExecutionContext executionContext;
+
+    @Inject
+    public CompletionStageProcessor(
+            @Nonnull final ResourceProcessor processor,
+            @Nonnull final ActorSystem system) {
+        super();
+        assert processor != null;
+        assert system != null;
+        this.processor = processor;
+        this.scheduler = system.scheduler();
+        this.executionContext = system.dispatcher();
+    }
+
+    /**
+     * Process a request, with the default timeout {@link ApiConstants#SUSPEND_TIMEOUT}.
+     *
+     * @param name     Name of the request, for logging.
+     * @param log      Logger of the resource.
+     * @param response Response, which must be resumed by the handler.
+     * @param handler  Request handler. It is called on a thread of the processor and returns a completion stage,
+     *                 which completes when the handler has resumed the response.
+     */
+    public void process(
+            @Nonnull final String name,
+            @Nonnull final Logger log,
+            @Nonnull final AsyncResponse response,
+            @Nonnull final Supplier<? extends CompletionStage<?>> handler) {
+        process(name, log, response, ApiConstants.SUSPEND_TIMEOUT, handler);
+    }
+
+    /**
+     * Process a request.
+     *
+     * @param name          Name of the request, for logging.
+     * @param log           Logger of the resource.
+     * @param response      Response, which must be resumed by the handler.
+     * @param timeoutMsecs  Timeout in milliseconds. If the completion stage has not completed by then, the request
+     *                      fails with {@link ServiceUnavailableException}. Zero means no timeout.
+     * @param handler       Request handler. It is called on a thread of the processor and returns a completion
+     *                      stage, which completes when the handler has resumed the response.
+     */
+    public void process(
+            @Nonnull final String name,
+            @Nonnull final Logger log,
+            @Nonnull final AsyncResponse response,
+            final long timeoutMsecs,
+            @Nonnull final Supplier<? extends CompletionStage<?>> handler) {
+        assert name != null;
+        assert log != null;
+        assert response != null;
+        assert timeoutMsecs >= 0;
+        assert handler != null;
+
+        processor.process(name, log, response, () -> bridge(handler.get(), timeoutMsecs));
+    }
+
+    /**
+     * Convert a Scala future into a completion stage, for example to compose the result of an Akka based service in
+     * a handler.
+     *
+     * @param future Scala future.
+     * @param <T>    Type of the result.
+     * @return Completion stage.
+     */
+    @Nonnull
+    public static <T> CompletionStage<T> toCompletionStage(@Nonnull final Future<T> future) {
+        assert future != null;
+        return FutureConverters.asJava(future);
+    }
+
+    @Nonnull
+    private Future<Object> bridge(@Nonnull final CompletionStage<?> stage, final long timeoutMsecs) {
+        final Promise<Object> promise = Futures.promise();
+        final Cancellable timer = (timeoutMsecs == 0) ? null : scheduler.scheduleOnce(
+                Duration.create(timeoutMsecs, TimeUnit.MILLISECONDS),
+                () -> promise.tryFailure(new ServiceUnavailableException(
+                        "Request timed out after " + timeoutMsecs + " ms")),
+                executionContext);
+
+        // Complete the promise on the thread that completes the stage.
+        stage.whenComplete((result, throwable) -> {
+            if (timer != null) {
+                timer.cancel();
+            }
+            if (throwable == null) {
+                promise.trySuccess(result);
+            } else {
+                promise.tryFailure(((throwable instanceof CompletionException) && (throwable.getCause() != null)) ?
+                        throwable.getCause() : throwable);
+            }
+        });
+        return promise.future();
+    }
+}
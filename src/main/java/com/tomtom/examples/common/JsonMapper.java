@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Jackson object mapper for code which serializes DTOs itself, rather than through RESTEasy, such as streamed and
+ * cached responses. It is configured like the RESTEasy Jackson provider, with both the Jackson and the JAXB
+ * annotations, so its output is the same as that of a regular response.
+ *
+ * The mapper is thread-safe, but shared: it must not be reconfigured.
+ */
+public final class JsonMapper {
+
+    @Nonnull
+    public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().
+            setAnnotationIntrospector(AnnotationIntrospector.pair(
+                    new JacksonAnnotationIntrospector(),
+                    new JaxbAnnotationIntrospector(TypeFactory.defaultInstance()))).
+            disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    // Prevent instantiation.
+    private JsonMapper() {
+        super();
+        assert false;
+    }
+}
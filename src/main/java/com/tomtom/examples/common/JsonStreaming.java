@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.tomtom.speedtools.apivalidation.ApiDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.Variant;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Utility methods to stream large listings as JSON. Rather than building a list of DTOs and serializing it after the
+ * last record was read, every record is converted, validated and written through a Jackson generator as soon as it is
+ * read from the database cursor or store iterator. The response is sent with chunked transfer encoding, so the first
+ * record goes out right away and the memory used per request does not depend on the number of records.
+ *
+ * Two formats are supported: a JSON array, which looks the same as a non-streamed response, and newline-delimited
+ * JSON ("application/x-ndjson"), with one record per line, which clients can process line by line as well.
+ *
+ * The time to the first record, the total time and the number of bytes allocated while streaming are logged at debug
+ * level, to compare streamed and non-streamed responses.
+ */
+public final class JsonStreaming {
+    private static final Logger LOG = LoggerFactory.getLogger(JsonStreaming.class);
+
+    /**
+     * Media type of newline-delimited JSON.
+     */
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON_TYPE = MediaType.valueOf(APPLICATION_NDJSON);
+
+    /**
+     * Streamed formats.
+     */
+    public enum Format {
+        JSON_ARRAY(MediaType.APPLICATION_JSON_TYPE),
+        NDJSON(APPLICATION_NDJSON_TYPE);
+
+        @Nonnull
+        private final MediaType mediaType;
+
+        Format(@Nonnull final MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        @Nonnull
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+    }
+
+    // Representations of a listing, in order of preference. XML is never streamed.
+    @Nonnull
+    private static final List<Variant> VARIANTS = Variant.mediaTypes(
+            MediaType.APPLICATION_JSON_TYPE, MediaType.APPLICATION_XML_TYPE, APPLICATION_NDJSON_TYPE).build();
+
+    // Number of records after which the generator is flushed, so records are sent in chunks.
+    private static final int FLUSH_INTERVAL = 100;
+
+    // Prevent instantiation.
+    private JsonStreaming() {
+        assert false;
+    }
+
+    /**
+     * Select the streamed format for a request, based on its "Accept" header.
+     *
+     * @param request Request.
+     * @return Streamed format, or null if the client prefers XML, which is not streamed.
+     */
+    @Nullable
+    public static Format selectFormat(@Nonnull final Request request) {
+        assert request != null;
+        @Nullable final Variant variant = request.selectVariant(VARIANTS);
+        if (variant == null) {
+            return null;
+        }
+        if (APPLICATION_NDJSON_TYPE.isCompatible(variant.getMediaType())) {
+            return Format.NDJSON;
+        }
+        if (MediaType.APPLICATION_JSON_TYPE.isCompatible(variant.getMediaType())) {
+            return Format.JSON_ARRAY;
+        }
+        return null;
+    }
+
+    /**
+     * Create a 200 (OK) response which streams records. The iterator is closed when the response is written. Send the
+     * response with {@link #resume(AsyncResponse, Response, CloseableIterator)}, which also closes the iterator if the
+     * response is never written.
+     *
+     * @param name      Name of the listing, for logging.
+     * @param format    Streamed format.
+     * @param field     For a JSON array, the name of the field of the object wrapping the array, or null to stream a
+     *                  bare array. Ignored for NDJSON.
+     * @param records   Records to stream.
+     * @param converter Converts a record to a DTO, which is validated before it is written.
+     * @param <T>       Record type.
+     * @return Response builder, with the media type set.
+     */
+    @Nonnull
+    public static <T> Response.ResponseBuilder ok(
+            @Nonnull final String name,
+            @Nonnull final Format format,
+            @Nullable final String field,
+            @Nonnull final CloseableIterator<T> records,
+            @Nonnull final Function<? super T, ? extends ApiDTO> converter) {
+        return ok(name, format, field, records, converter, FLUSH_INTERVAL);
+    }
+
+    /**
+     * Create a 200 (OK) response which streams records, flushing the output every given number of records. Use a
+     * flush interval of 1 if every record is slow to produce and should reach the client as soon as it is available.
+     *
+     * @param name          Name of the listing, for logging.
+     * @param format        Streamed format.
+     * @param field         For a JSON array, the name of the field of the object wrapping the array, or null to
+     *                      stream a bare array. Ignored for NDJSON.
+     * @param records       Records to stream.
+     * @param converter     Converts a record to a DTO, which is validated before it is written.
+     * @param flushInterval Number of records after which the output is flushed. The first record is always flushed.
+     * @param <T>           Record type.
+     * @return Response builder, with the media type set.
+     */
+    @Nonnull
+    public static <T> Response.ResponseBuilder ok(
+            @Nonnull final String name,
+            @Nonnull final Format format,
+            @Nullable final String field,
+            @Nonnull final CloseableIterator<T> records,
+            @Nonnull final Function<? super T, ? extends ApiDTO> converter,
+            final int flushInterval) {
+        assert name != null;
+        assert format != null;
+        assert records != null;
+        assert converter != null;
+        assert flushInterval > 0;
+        final StreamingOutput output = out -> {
+            final long startNanos = System.nanoTime();
+            final long startBytes = getAllocatedBytes();
+            long firstNanos = -1;
+            int count = 0;
+            try (final CloseableIterator<T> iterator = records;
+                 final JsonGenerator generator = JsonMapper.OBJECT_MAPPER.getFactory().createGenerator(out)) {
+                if (format == Format.NDJSON) {
+                    generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+                } else {
+                    if (field != null) {
+                        generator.writeStartObject();
+                        generator.writeFieldName(field);
+                    }
+                    generator.writeStartArray();
+                }
+                while (iterator.hasNext()) {
+                    final ApiDTO binder = converter.apply(iterator.next());
+                    binder.validate();
+                    generator.writeObject(binder);
+                    if (format == Format.NDJSON) {
+                        generator.writeRaw('\n');
+                    }
+                    ++count;
+
+                    // Send the first record right away, and the others in chunks.
+                    if (count == 1) {
+                        generator.flush();
+                        firstNanos = System.nanoTime();
+                    } else if ((count % flushInterval) == 0) {
+                        generator.flush();
+                    }
+                }
+                if (format == Format.JSON_ARRAY) {
+                    generator.writeEndArray();
+                    if (field != null) {
+                        generator.writeEndObject();
+                    }
+                }
+            }
+            if (LOG.isDebugEnabled()) {
+                final long endNanos = System.nanoTime();
+                LOG.debug("ok: streamed {}, format={}, count={}, firstRecordMsecs={}, totalMsecs={}, " +
+                                "allocatedBytes={}", name, format, count,
+                        (firstNanos < 0) ? -1 : ((firstNanos - startNanos) / 1000000),
+                        (endNanos - startNanos) / 1000000,
+                        (startBytes < 0) ? -1 : (getAllocatedBytes() - startBytes));
+            }
+        };
+        return Response.ok(output, format.getMediaType());
+    }
+
+    /**
+     * Resume a suspended request with a streamed response. The records are closed when the response has been written,
+     * but also if it is never written: if the request timed out or was cancelled, so the response is not accepted, or
+     * if the request completes without calling the streaming output, for example because the client went away.
+     *
+     * @param response Suspended response.
+     * @param streamed Response created with {@link #ok(String, Format, String, CloseableIterator, Function)}.
+     * @param records  Records streamed by the response.
+     */
+    public static void resume(
+            @Nonnull final AsyncResponse response,
+            @Nonnull final Response streamed,
+            @Nonnull final CloseableIterator<?> records) {
+        assert response != null;
+        assert streamed != null;
+        assert records != null;
+        response.register((CompletionCallback) throwable -> records.close());
+        if (!response.resume(streamed)) {
+            LOG.debug("resume: Response not accepted, closing records");
+            records.close();
+        }
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread, if the JVM supports it.
+     *
+     * @return Number of bytes, or -1 if not supported.
+     */
+    private static long getAllocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
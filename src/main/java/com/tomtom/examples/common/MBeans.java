@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Utility methods to expose statistics of the examples through JMX. All MBeans are registered in the
+ * "com.tomtom.examples" domain of the platform MBean server, so they can be inspected with JConsole or VisualVM.
+ */
+public final class MBeans {
+    private static final Logger LOG = LoggerFactory.getLogger(MBeans.class);
+
+    private static final String DOMAIN = "com.tomtom.examples";
+
+    // Prevent instantiation.
+    private MBeans() {
+        assert false;
+    }
+
+    /**
+     * Register an MBean with the platform MBean server. An MBean registered earlier under the same name is
+     * replaced. Failures are logged, but not thrown, as statistics are not essential to the service.
+     *
+     * @param mbean MBean to register.
+     * @param type  Type of the MBean, for example the simple class name.
+     * @param name  Name of the MBean, unique for the type.
+     */
+    public static void register(@Nonnull final Object mbean, @Nonnull final String type, @Nonnull final String name) {
+        assert mbean != null;
+        assert type != null;
+        assert name != null;
+        try {
+            final ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+        } catch (final JMException e) {
+            LOG.warn("register: Cannot register MBean, type={}, name={}", type, name, e);
+        }
+    }
+}
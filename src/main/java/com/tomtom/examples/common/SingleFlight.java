@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.common;
+
+import akka.dispatch.ExecutionContexts;
+import akka.dispatch.Futures;
+import akka.dispatch.OnComplete;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class coalesces concurrent calls for the same key: while a call for a key is in flight, other calls for that
+ * key do not execute, but share the future of the call in flight. Once the call completes, the next call for the key
+ * executes again, so results are never cached beyond the duration of a call.
+ *
+ * Calls in flight are kept in a concurrent map, so calls for different keys never block each other. The result of a
+ * call is passed on on the thread that completes it.
+ *
+ * The number of calls and coalesced calls is available through JMX, under the name given to the constructor.
+ *
+ * @param <K> Type of the key. Keys must implement equals() and hashCode().
+ * @param <V> Type of the result. Results are shared between callers, so they should be immutable.
+ */
+public final class SingleFlight<K, V> implements SingleFlightMXBean {
+    @Nonnull
+    private final ConcurrentHashMap<K, Future<V>> inFlight = new ConcurrentHashMap<>();
+    @Nonnull
+    private final LongAdder calls = new LongAdder();
+    @Nonnull
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    /**
+     * Create a single flight group and register it with the platform MBean server.
+     *
+     * @param name Name of the group, used as the JMX name.
+     */
+    public SingleFlight(@Nonnull final String name) {
+        super();
+        assert name != null;
+        MBeans.register(this, "SingleFlight", name);
+    }
+
+    /**
+     * Execute a call, unless a call for the same key is in flight.
+     *
+     * @param key  Key of the call.
+     * @param call Call to execute. It is only executed if no call for the key is in flight. If it throws an
+     *             exception, the returned future fails with that exception.
+     * @return Future of the call, or of the call in flight.
+     */
+    @Nonnull
+    public Future<V> execute(@Nonnull final K key, @Nonnull final Callable<Future<V>> call) {
+        assert key != null;
+        assert call != null;
+        calls.increment();
+
+        final Promise<V> promise = Futures.promise();
+        final Future<V> future = promise.future();
+        @Nullable final Future<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return existing;
+        }
+
+        Future<V> result;
+        try {
+            result = call.call();
+        } catch (final Exception e) {
+            result = Futures.failed(e);
+        }
+
+        // Remove the key before the promise completes, so callers that see the result never get it again.
+        result.onComplete(new OnComplete<V>() {
+            @Override
+            public void onComplete(@Nullable final Throwable failure, @Nullable final V success) {
+                inFlight.remove(key, future);
+                if (failure != null) {
+                    promise.failure(failure);
+                } else {
+                    promise.success(success);
+                }
+            }
+        }, ExecutionContexts.parasitic());
+        return future;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getCoalescedCalls() {
+        return coalescedCalls.sum();
+    }
+
+    @Override
+    public double getCoalescingRate() {
+        final long nrCalls = calls.sum();
+        return (nrCalls == 0) ? 0.0 : ((double) coalescedCalls.sum() / nrCalls);
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
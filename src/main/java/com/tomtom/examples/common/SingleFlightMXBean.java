@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.common;
+
+/**
+ * Management interface of {@link SingleFlight}, which shows how many calls were coalesced.
+ */
+public interface SingleFlightMXBean {
+
+    /**
+     * Return the number of calls.
+     *
+     * @return Number of calls, including coalesced calls.
+     */
+    long getCalls();
+
+    /**
+     * Return the number of calls which shared the result of a call that was already in flight.
+     *
+     * @return Number of coalesced calls.
+     */
+    long getCoalescedCalls();
+
+    /**
+     * Return the fraction of calls which were coalesced.
+     *
+     * @return Coalesced calls divided by calls, or 0 if there were no calls.
+     */
+    double getCoalescingRate();
+
+    /**
+     * Return the number of keys with a call in flight.
+     *
+     * @return Number of keys.
+     */
+    int getInFlight();
+}
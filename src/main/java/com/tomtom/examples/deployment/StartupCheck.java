@@ -23,6 +23,10 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * This is an example class of how to safely start up a system. It provides basic checks required before startup is
@@ -39,6 +43,10 @@ public class StartupCheck {
 
     private static final String REQUIRED_ENCODING = "UTF-8";
 
+    // Supported Java releases: the long-term support releases, by feature version (1.8 is 8).
+    private static final Set<Integer> SUPPORTED_JAVA_VERSIONS =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(8, 11, 17, 21, 25)));
+
     @Inject
     public StartupCheck(@Nonnull final Injector injector) {
         assert injector != null;
@@ -59,8 +67,8 @@ public class StartupCheck {
 
         // Check if we are using the correct JDK.
         final String javaVersion = System.getProperty("java.version");
-        check(javaVersion.startsWith("1.6.") || javaVersion.startsWith("1.7.") || javaVersion.startsWith("1.8."),
-                "The system requires JRE 1.6.x, 1.7.x or 1.8.x (found JRE " + javaVersion + ").");
+        check(SUPPORTED_JAVA_VERSIONS.contains(getJavaFeatureVersion(javaVersion)),
+                "The system requires JRE 1.8.x, 11, 17, 21 or 25 (found JRE " + javaVersion + ").");
 
         // Check encoding. The default character encoding for JSON is UTF8. UTF16 and UTF32 are also supported.
         // This is to make sure that byte conversions that rely on default encoding do not cause unexpected behaviour.
@@ -71,6 +79,23 @@ public class StartupCheck {
         LOG.info("Startup: System started succesfully.");
     }
 
+    /**
+     * Get the feature version of a Java version string: 8 for "1.8.0_292", 17 for "17.0.2" and 21 for "21-ea".
+     *
+     * @param javaVersion Value of the system property "java.version".
+     * @return Feature version, or -1 if the version string cannot be parsed.
+     */
+    static int getJavaFeatureVersion(@Nonnull final String javaVersion) {
+        assert javaVersion != null;
+        final String[] parts = javaVersion.split("[.\\-+_]");
+        try {
+            final int major = Integer.parseInt(parts[0]);
+            return ((major == 1) && (parts.length > 1)) ? Integer.parseInt(parts[1]) : major;
+        } catch (final NumberFormatException ignored) {
+            return -1;
+        }
+    }
+
     @SuppressWarnings("UseOfSystemOutOrSystemErr")
     private static void check(final boolean check, @Nonnull final String reason) {
         if (!check) {
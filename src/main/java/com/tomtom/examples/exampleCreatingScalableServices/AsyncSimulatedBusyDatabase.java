@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices;
+
+import akka.actor.ActorSystem;
+import akka.dispatch.Mapper;
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.examples.exampleCreatingScalableServices.store.IndexedPersonStore;
+import com.tomtom.examples.exampleCreatingScalableServices.store.PersonChangeLog;
+import com.tomtom.examples.exampleCreatingScalableServices.store.PersonStore;
+import com.tomtom.speedtools.domain.Uid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.ExecutionContextExecutor;
+import scala.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * This class provides asynchronous access to the {@link SimulatedBusyDatabase}. Every operation returns a future and
+ * runs on a dedicated dispatcher, "example-database-dispatcher", defined in application.conf. This dispatcher has a
+ * fixed number of threads, so a slow database only delays database operations, rather than starving the dispatcher
+ * that handles all other requests.
+ *
+ * The simulated latency is spent with {@link SimulatedLatency#delay(scala.concurrent.ExecutionContext)}, so for the
+ * WAIT profile no thread is used at all while waiting.
+ */
+public final class AsyncSimulatedBusyDatabase {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncSimulatedBusyDatabase.class);
+
+    /**
+     * Name of the Akka dispatcher for database operations.
+     */
+    public static final String DISPATCHER_NAME = "example-database-dispatcher";
+
+    @Nonnull
+    private final PersonStore store;
+    @Nonnull
+    private final IndexedPersonStore indexedStore;
+    @Nonnull
+    private final SimulatedLatency latency;
+    @Nonnull
+    private final PersonResponseCache responseCache;
+    @Nonnull
+    private final ExecutionContextExecutor dispatcher;
+
+    @Inject
+    public AsyncSimulatedBusyDatabase(
+            @Nonnull final SimulatedBusyDatabase db,
+            @Nonnull final ActorSystem system) {
+        super();
+        assert db != null;
+        assert system != null;
+        this.store = db.getStore();
+        this.indexedStore = db.getIndexedStore();
+        this.latency = db.getLatency();
+        this.responseCache = db.getResponseCache();
+
+        if (system.dispatchers().hasDispatcher(DISPATCHER_NAME)) {
+            this.dispatcher = system.dispatchers().lookup(DISPATCHER_NAME);
+        } else {
+            LOG.warn("AsyncSimulatedBusyDatabase: dispatcher {} not configured, using default dispatcher",
+                    DISPATCHER_NAME);
+            this.dispatcher = system.dispatcher();
+        }
+    }
+
+    /**
+     * Get the cache of serialized persons. See {@link SimulatedBusyDatabase#getResponseCache()}.
+     *
+     * @return Response cache.
+     */
+    @Nonnull
+    public PersonResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Get the version of the person IDs. This only reads a counter, so it does not simulate any latency.
+     *
+     * @return Version. See {@link PersonChangeLog}.
+     */
+    @Nonnull
+    public String getIdsVersion() {
+        return indexedStore.getChangeLog().getVersion();
+    }
+
+    /**
+     * Get the person IDs added and removed since a version.
+     *
+     * @param since Version, see {@link PersonChangeLog#isVersion(String)}.
+     * @return Future changes, or a future null if the changes since the version are no longer available.
+     */
+    @Nonnull
+    public Future<PersonChangeLog.Changes> changesSince(@Nonnull final String since) {
+        return execute(() -> indexedStore.getChangeLog().changesSince(since));
+    }
+
+    /**
+     * Get all person IDs.
+     *
+     * @return Future list of person IDs.
+     */
+    @Nonnull
+    public Future<List<Uid<Person>>> keys() {
+        return execute(() -> {
+            final List<Uid<Person>> ids = new ArrayList<>(store.size());
+            final Enumeration<Uid<Person>> e = store.keys();
+            while (e.hasMoreElements()) {
+                ids.add(e.nextElement());
+            }
+            return ids;
+        });
+    }
+
+    /**
+     * Get all person IDs, without copying them. The IDs are read from the store while the iterator is iterated, so
+     * IDs which are added or removed meanwhile may or may not be returned.
+     *
+     * @return Future iterator over the person IDs.
+     */
+    @Nonnull
+    public Future<CloseableIterator<Uid<Person>>> streamKeys() {
+        return execute(() -> CloseableIterator.of(store.keys()));
+    }
+
+    /**
+     * Get a page of person IDs. See {@link SimulatedBusyDatabase#keysAfter(Uid, int)}.
+     *
+     * @param after Last ID of the previous page, or null.
+     * @param count Maximum number of IDs to return.
+     * @return Future list of person IDs.
+     */
+    @Nonnull
+    public Future<List<Uid<Person>>> keysAfter(@Nullable final Uid<Person> after, final int count) {
+        return execute(() -> store.keysAfter(after, count));
+    }
+
+    /**
+     * Find persons by age range and/or name prefix. See {@link SimulatedBusyDatabase#find(Integer, Integer, String,
+     * int)}.
+     *
+     * @param minAge     Minimum age, inclusive, or null.
+     * @param maxAge     Maximum age, inclusive, or null.
+     * @param namePrefix Name prefix, or null.
+     * @param count      Maximum number of IDs to return.
+     * @return Future list of person IDs.
+     */
+    @Nonnull
+    public Future<List<Uid<Person>>> find(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            final int count) {
+        return execute(() -> indexedStore.find(minAge, maxAge, namePrefix, count));
+    }
+
+    /**
+     * Get a person.
+     *
+     * @param id Person ID.
+     * @return Future person, or a future null if not found.
+     */
+    @Nonnull
+    public Future<Person> get(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        return execute(() -> store.get(id));
+    }
+
+    /**
+     * Store a person, unless a person with the same ID already exists.
+     *
+     * @param person Person to store.
+     * @return Future existing person, or a future null if the person was stored.
+     */
+    @Nonnull
+    public Future<Person> putIfAbsent(@Nonnull final Person person) {
+        assert person != null;
+        return execute(() -> SimulatedBusyDatabase.putIfAbsentAndInvalidate(store, responseCache, person));
+    }
+
+    /**
+     * Remove a person.
+     *
+     * @param id Person ID.
+     * @return Future removed person, or a future null if not found.
+     */
+    @Nonnull
+    public Future<Person> remove(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        return execute(() -> SimulatedBusyDatabase.removeAndInvalidate(store, responseCache, id));
+    }
+
+    /**
+     * Store persons in a single operation. See {@link SimulatedBusyDatabase#putAllIfAbsent(List)}.
+     *
+     * @param persons Persons to store.
+     * @return Future list with, for every person, the existing person or null if the person was stored.
+     */
+    @Nonnull
+    public Future<List<Person>> putAllIfAbsent(@Nonnull final List<Person> persons) {
+        assert persons != null;
+        return execute(() -> {
+            final List<Person> result = new ArrayList<>(persons.size());
+            for (final Person person : persons) {
+                result.add(SimulatedBusyDatabase.putIfAbsentAndInvalidate(store, responseCache, person));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Get persons in a single operation.
+     *
+     * @param ids Person IDs.
+     * @return Future list with, for every ID, the person or null if not found.
+     */
+    @Nonnull
+    public Future<List<Person>> getAll(@Nonnull final List<Uid<Person>> ids) {
+        assert ids != null;
+        return execute(() -> {
+            final List<Person> result = new ArrayList<>(ids.size());
+            for (final Uid<Person> id : ids) {
+                result.add(store.get(id));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Remove persons in a single operation.
+     *
+     * @param ids Person IDs.
+     * @return Future list with, for every ID, the removed person or null if not found.
+     */
+    @Nonnull
+    public Future<List<Person>> removeAll(@Nonnull final List<Uid<Person>> ids) {
+        assert ids != null;
+        return execute(() -> {
+            final List<Person> result = new ArrayList<>(ids.size());
+            for (final Uid<Person> id : ids) {
+                result.add(SimulatedBusyDatabase.removeAndInvalidate(store, responseCache, id));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Spend the simulated latency and then execute an operation on the store, all on the database dispatcher.
+     */
+    @Nonnull
+    private <T> Future<T> execute(@Nonnull final Supplier<T> operation) {
+        return latency.delay(dispatcher).map(new Mapper<Void, T>() {
+            @Nullable
+            @Override
+            public T checkedApply(@Nullable final Void parameter) {
+                return operation.get();
+            }
+        }, dispatcher);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices;
+
+import com.tomtom.examples.ApiConstants;
+import com.tomtom.examples.exampleCreatingScalableServices.converters.IdConverter;
+import com.tomtom.examples.exampleCreatingScalableServices.converters.PersonConverter;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.IdDTO;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.IdsDTO;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.PersonDTO;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.PersonsDTO;
+import com.tomtom.speedtools.apivalidation.exceptions.ApiIntegerOutOfRangeException;
+import com.tomtom.speedtools.apivalidation.exceptions.ApiInvalidParameterCombinationException;
+import com.tomtom.speedtools.apivalidation.exceptions.ApiParameterMissingException;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utility functions to check and convert the input of batch requests (see {@link BatchResource}). All items are
+ * checked before any of them is processed, so an invalid request has no effect at all.
+ */
+public final class BatchRequests {
+
+    // Prevent instantiation.
+    private BatchRequests() {
+        assert false;
+    }
+
+    /**
+     * Check the persons of a batch create request and convert them to new persons, each with a new ID.
+     *
+     * @param personsDTO Persons to create.
+     * @return New persons, in the order of the request.
+     */
+    @Nonnull
+    public static List<Person> toNewPersons(@Nullable final PersonsDTO personsDTO) {
+        if (personsDTO == null) {
+            throw new ApiParameterMissingException("persons");
+        }
+        personsDTO.validate();
+        final List<PersonDTO> personDTOs = personsDTO.getPersonDTOs();
+        checkSize("persons", personDTOs.size());
+
+        final List<Person> persons = new ArrayList<>(personDTOs.size());
+        for (final PersonDTO personDTO : personDTOs) {
+            if (personDTO.getId() != null) {
+                throw new ApiInvalidParameterCombinationException("id");
+            }
+
+            // Create a new person ID on-the-fly.
+            persons.add(PersonConverter.toDomain(personDTO));
+        }
+        return persons;
+    }
+
+    /**
+     * Check the IDs of a batch get or delete request and convert them to person IDs.
+     *
+     * @param idsDTO IDs.
+     * @return Person IDs, without duplicates.
+     */
+    @Nonnull
+    public static List<Uid<Person>> toIds(@Nullable final IdsDTO idsDTO) {
+        if (idsDTO == null) {
+            throw new ApiParameterMissingException("ids");
+        }
+        idsDTO.validate();
+        checkSize("ids", idsDTO.getIdDTOs().size());
+
+        final List<Uid<Person>> ids = new ArrayList<>(idsDTO.getIdDTOs().size());
+        for (final IdDTO idDTO : idsDTO.getIdDTOs()) {
+            ids.add(IdConverter.toDomain(idDTO).as(Person.class));
+        }
+        return ids;
+    }
+
+    private static void checkSize(@Nonnull final String name, final int size) {
+        if ((size < 1) || (size > ApiConstants.API_BATCH_SIZE_MAX)) {
+            throw new ApiIntegerOutOfRangeException(name, size, 1, ApiConstants.API_BATCH_SIZE_MAX);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices;
+
+import com.tomtom.examples.ApiConstants;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.BatchResultDTO;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.IdsDTO;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.PersonsDTO;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+
+/**
+ * This interface adds batch versions of the person calls of {@link SimpleThreadBasedResource}. A batch request is
+ * validated as a whole and applied to the database in a single operation, which saves the cost of a database
+ * operation per item. It holds at most {@link ApiConstants#API_BATCH_SIZE_MAX} items.
+ *
+ * The response contains a status per item. This is the HTTP status code the corresponding single request would have
+ * returned.
+ */
+public interface BatchResource {
+
+    /**
+     * This method creates new Person records. The IDs should not be specified (considered an error).
+     *
+     * HTTP 200: The request was processed. Every created person has status 200.
+     *
+     * HTTP 400: If any person is invalid or contains an ID. No persons are created in this case.
+     *
+     * @param personsDTO Persons to be created in database. Must not contain "id" fields.
+     * @param response   Results, {@link BatchResultDTO}, including the new records.
+     */
+    @POST
+    @Path("person/batch")
+    void createPersons(
+            @Nullable PersonsDTO personsDTO,
+            @Suspended @Nonnull AsyncResponse response);
+
+    /**
+     * This method gets existing Person records.
+     *
+     * HTTP 200: The request was processed. Every person found has status 200, others have status 404.
+     *
+     * HTTP 400: If any ID is invalid.
+     *
+     * @param idsDTO   Persons to be retrieved from database.
+     * @param response Results, {@link BatchResultDTO}, including the records found.
+     */
+    @POST
+    @Path("person/batch-get")
+    void getPersonsById(
+            @Nullable IdsDTO idsDTO,
+            @Suspended @Nonnull AsyncResponse response);
+
+    /**
+     * This method deletes existing Person records.
+     *
+     * HTTP 200: The request was processed. Every deleted person has status 204, others have status 404.
+     *
+     * HTTP 400: If any ID is invalid. No persons are deleted in this case.
+     *
+     * @param idsDTO   Persons to be deleted from database.
+     * @param response Results, {@link BatchResultDTO}.
+     */
+    @POST
+    @Path("person/batch-delete")
+    void removePersons(
+            @Nullable IdsDTO idsDTO,
+            @Suspended @Nonnull AsyncResponse response);
+}
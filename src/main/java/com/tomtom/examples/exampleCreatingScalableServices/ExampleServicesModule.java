@@ -19,6 +19,7 @@ package com.tomtom.examples.exampleCreatingScalableServices;
 import com.google.inject.Binder;
 import com.google.inject.Module;
 import com.google.inject.Singleton;
+import com.tomtom.examples.common.CompletionStageProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,8 +27,8 @@ import javax.annotation.Nonnull;
 
 /**
  * This is an example Guice module of how to bind service implementations to their interfaces. This examples binds a
- * "version 1" and "version 2" interfaces of a REST API to 2 different implementations. It also binds a rudimentary
- * database implementation to a database interface.
+ * "version 1" and "version 2" interfaces of a REST API to 2 different implementations (and a "version 4" running on
+ * virtual threads). It also binds a rudimentary database implementation to a database interface.
  */
 public class ExampleServicesModule implements Module {
     private static final Logger LOG = LoggerFactory.getLogger(ExampleServicesModule.class);
@@ -39,7 +40,11 @@ public class ExampleServicesModule implements Module {
         // Bind APIs to their implementation.
         binder.bind(FutureBasedResource.class).to(FutureBasedResourceImpl.class).in(Singleton.class);
         binder.bind(SimpleThreadBasedResource.class).to(SimpleThreadBasedResourceImpl.class).in(Singleton.class);
+        binder.bind(VirtualThreadResource.class).to(VirtualThreadResourceImpl.class).in(Singleton.class);
         binder.bind(SimulatedBusyDatabase.class).in(Singleton.class);
+        binder.bind(AsyncSimulatedBusyDatabase.class).in(Singleton.class);
+        binder.bind(SimulatedBusyDatabaseProperties.class).in(Singleton.class);
+        binder.bind(CompletionStageProcessor.class).in(Singleton.class);
 
         /**
          * Show some start-up information about this example application.
@@ -47,12 +52,18 @@ public class ExampleServicesModule implements Module {
         LOG.info("configure:");
         LOG.info("configure: Services /example/1 and /example/2 show how you can create REST API calls without");
         LOG.info("configure:        and with the SpeedTools Akka framework for high scalability");
+        LOG.info("configure: Service /example/4 offers the API of /example/1 running on virtual threads (JDK 21+)");
         LOG.info("configure:");
         LOG.info("configure: GET    /example/[1|2]/person               Get list of person IDs");
+        LOG.info("configure: GET    /example/[1|2]/person?count=<n>&cursor=<c>  Get page of person IDs");
+        LOG.info("configure: GET    /example/[1|2]/person?minAge=<a>&maxAge=<b>&namePrefix=<p>  Find person IDs");
         LOG.info("configure: GET    /example/[1|2]/person/<personId>    Get specific person");
         LOG.info("configure: POST   /example/[1|2]/person               Create new person");
         LOG.info("configure: DELETE /example/[1|2]/person/<personId>    Delete person");
         LOG.info("configure:");
+        LOG.info("configure: POST   /example/2/person/batch             Create list of persons");
+        LOG.info("configure: POST   /example/2/person/batch-get         Get list of persons");
+        LOG.info("configure: POST   /example/2/person/batch-delete      Delete list of persons");
         LOG.info("configure: GET    /example/2/version                  Get POM version number");
     }
 }
@@ -35,11 +35,11 @@ import javax.ws.rs.core.MediaType;
 @Path("/example/2")
 @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
 @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-public interface FutureBasedResource extends SimpleThreadBasedResource {
+public interface FutureBasedResource extends SimpleThreadBasedResource, BatchResource {
 
     /**
      * This API extends the REST API services from
-     * {@link SimpleThreadBasedResource} and adds one to it.
+     * {@link SimpleThreadBasedResource} and adds one to it, as well as the batch calls from {@link BatchResource}.
      */
 
     /**
@@ -17,33 +17,49 @@
 package com.tomtom.examples.exampleCreatingScalableServices;
 
 import akka.dispatch.Futures;
+import akka.dispatch.Mapper;
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.common.CompletionStageProcessor;
+import com.tomtom.examples.common.JsonStreaming;
+import com.tomtom.examples.common.SingleFlight;
 import com.tomtom.examples.exampleCreatingScalableServices.converters.IdConverter;
 import com.tomtom.examples.exampleCreatingScalableServices.converters.PersonConverter;
 import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
-import com.tomtom.examples.exampleCreatingScalableServices.dto.IdDTO;
-import com.tomtom.examples.exampleCreatingScalableServices.dto.IdsDTO;
-import com.tomtom.examples.exampleCreatingScalableServices.dto.PersonDTO;
-import com.tomtom.examples.exampleCreatingScalableServices.dto.VersionDTO;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.*;
+import com.tomtom.examples.exampleCreatingScalableServices.store.PersonChangeLog;
 import com.tomtom.speedtools.apivalidation.exceptions.*;
 import com.tomtom.speedtools.domain.Uid;
 import com.tomtom.speedtools.maven.MavenProperties;
+import com.tomtom.speedtools.rest.Reactor;
 import com.tomtom.speedtools.rest.ResourceProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.concurrent.Future;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class implements the REST API resources using the SpeedTools framework.
+ *
+ * The database calls return futures, which run on a dispatcher of their own (see {@link AsyncSimulatedBusyDatabase}).
+ * The request handlers map the results of these futures to responses on the execution context of the reactor, so no
+ * thread of the request dispatcher ever waits for the database.
+ *
+ * The "getPerson" and "getFavicon" handlers show the same style with Java completion stages, using the
+ * {@link CompletionStageProcessor}.
  */
 public class FutureBasedResourceImpl implements FutureBasedResource {
     private static final Logger LOG = LoggerFactory.getLogger(FutureBasedResourceImpl.class);
@@ -53,31 +69,46 @@ public class FutureBasedResourceImpl implements FutureBasedResource {
     @Nonnull
     private final MavenProperties mavenProperties;
     @Nonnull
-    private final SimulatedBusyDatabase db;
+    private final Reactor reactor;
+    @Nonnull
+    private final AsyncSimulatedBusyDatabase db;
+    @Nonnull
+    private final CompletionStageProcessor stageProcessor;
+    @Nonnull
+    private final SingleFlight<Uid<Person>, Person> getPersonFlight = new SingleFlight<>("example2.getPerson");
 
     /**
      * Define your REST API calls in a class and have the constructor of the class get the Akka reactor, the processor
      * and any required properties injected.
      *
+     * @param reactor         The reactor provides the execution context to map the results of futures on.
      * @param processor       The processor allows calls to be executed on virtual Akka threads (in futures) in a simple
      *                        way.
      * @param mavenProperties These are additional properties, in this case to satisfy the "version" request.
      * @param db              The 'database interface' to used. This is added as an example of how to inject your own
-     *                        singletons.
+     *                        singletons. Its operations run on their own dispatcher and return futures.
+     * @param stageProcessor  The stage processor allows calls to be written with Java completion stages, rather than
+     *                        Scala futures.
      */
     @Inject
     public FutureBasedResourceImpl(
+            @Nonnull final Reactor reactor,
             @Nonnull final ResourceProcessor processor,
             @Nonnull final MavenProperties mavenProperties,
-            @Nonnull final SimulatedBusyDatabase db) {
+            @Nonnull final AsyncSimulatedBusyDatabase db,
+            @Nonnull final CompletionStageProcessor stageProcessor) {
+        assert reactor != null;
         assert processor != null;
         assert mavenProperties != null;
         assert db != null;
+        assert stageProcessor != null;
 
         // Store the injected values.
+        this.reactor = reactor;
         this.processor = processor;
         this.mavenProperties = mavenProperties;
         this.db = db;
+        this.stageProcessor = stageProcessor;
     }
 
     /**
@@ -122,9 +153,9 @@ public class FutureBasedResourceImpl implements FutureBasedResource {
             @Suspended @Nonnull final AsyncResponse response) {
         assert response != null;
 
-        processor.process("getFavicon", LOG, response, () -> {
+        stageProcessor.process("getFavicon", LOG, response, () -> {
             response.resume(Response.noContent().build());
-            return Futures.successful(null);
+            return CompletableFuture.completedFuture(null);
         });
     }
 
@@ -137,55 +168,209 @@ public class FutureBasedResourceImpl implements FutureBasedResource {
 
     @Override
     public void getPersons(
+            @Nullable @QueryParam(PARAM_COUNT) final Integer count,
+            @Nullable @QueryParam(PARAM_CURSOR) final String cursor,
+            @Nullable @QueryParam(PARAM_MIN_AGE) final Integer minAge,
+            @Nullable @QueryParam(PARAM_MAX_AGE) final Integer maxAge,
+            @Nullable @QueryParam(PARAM_NAME_PREFIX) final String namePrefix,
+            @Nullable @QueryParam(PARAM_SINCE) final String since,
+            @Context @Nonnull final Request request,
             @Suspended @Nonnull final AsyncResponse response) {
+        assert request != null;
         assert response != null;
 
         processor.process("getPersons", LOG, response, () -> {
-            @Nonnull final Set<IdDTO> idDTOs = new HashSet<>();
-            final Enumeration<Uid<Person>> e = db.keys();
-            while (e.hasMoreElements()) {
-                @Nonnull final IdDTO idDTO = IdConverter.fromDomain(e.nextElement());
-                idDTOs.add(idDTO);
+
+            // Check input.
+            @Nonnull final PageRequest page = PageRequest.fromParameters(count, cursor);
+            @Nonnull final PersonFilter filter = PersonFilter.fromParameters(minAge, maxAge, namePrefix, page);
+            final boolean allIds = filter.isEmpty() && !page.isPaged();
+            if ((since != null) && !allIds) {
+                throw new ApiInvalidParameterCombinationException(PARAM_SINCE);
+            }
+            if ((since != null) && !PersonChangeLog.isVersion(since)) {
+                throw new ApiInvalidFormatException(PARAM_SINCE, since, "version");
             }
 
-            // Build response.
-            @Nonnull final IdsDTO binder = new IdsDTO(idDTOs); // Create the binder.
-            binder.validate();                                          // And validate it before returning!
-            response.resume(Response.ok(binder).build());
+            // Answer unchanged polls for all IDs with 304 (Not Modified), without reading the IDs. The version is
+            // read before the IDs, so a client which continues from it may see some changes twice, but never misses
+            // one. The tag is weak, as it is the same for the JSON, XML and NDJSON representations.
+            if (allIds) {
+                final EntityTag tag = new EntityTag(db.getIdsVersion(), true);
+                @Nullable final Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+                if (notModified != null) {
+                    response.resume(notModified.tag(tag).build());
+                    return Futures.successful(null);
+                }
+                if (since != null) {
+                    return getChanges(since, response);
+                }
+
+                // Stream the IDs from the store as they are read, unless the client asks for XML.
+                @Nullable final JsonStreaming.Format format = JsonStreaming.selectFormat(request);
+                if (format != null) {
+                    return streamIds(db.streamKeys(), format, tag, response);
+                }
+                return getIds(db.keys(), page, filter, tag, request, response);
+            }
 
-            // The response is already set within this method body.
-            return Futures.successful(null);
+            // Look up matching persons in the indexes, or get a single page.
+            final Future<List<Uid<Person>>> futureIds = filter.isEmpty() ?
+                    db.keysAfter(page.getAfter(), page.getCount()) :
+                    db.find(filter.getMinAge(), filter.getMaxAge(), filter.getNamePrefix(), page.getCount());
+            return getIds(futureIds, page, filter, null, request, response);
         });
     }
 
+    /**
+     * Map the future ID iterator of a "getPersons" request to a streamed response. As JSON, the IDs are wrapped in
+     * the same object as {@link IdsDTO}.
+     */
+    @Nonnull
+    private Future<Void> streamIds(
+            @Nonnull final Future<CloseableIterator<Uid<Person>>> futureIds,
+            @Nonnull final JsonStreaming.Format format,
+            @Nonnull final EntityTag tag,
+            @Nonnull final AsyncResponse response) {
+        return futureIds.map(new Mapper<CloseableIterator<Uid<Person>>, Void>() {
+            @Nullable
+            @Override
+            public Void checkedApply(@Nonnull final CloseableIterator<Uid<Person>> ids) {
+                JsonStreaming.resume(response,
+                        JsonStreaming.ok("getPersons", format, "ids", ids, IdConverter::fromDomain).tag(tag).build(),
+                        ids);
+                return null;
+            }
+        }, reactor.getExecutionContext());
+    }
+
+    /**
+     * Map the future IDs of a "getPersons" request to the response.
+     */
+    @Nonnull
+    private Future<Void> getIds(
+            @Nonnull final Future<List<Uid<Person>>> futureIds,
+            @Nonnull final PageRequest page,
+            @Nonnull final PersonFilter filter,
+            @Nullable final EntityTag tag,
+            @Nonnull final Request request,
+            @Nonnull final AsyncResponse response) {
+        return futureIds.map(new Mapper<List<Uid<Person>>, Void>() {
+            @Nullable
+            @Override
+            public Void checkedApply(@Nonnull final List<Uid<Person>> ids) {
+                @Nullable final String nextCursor = (filter.isEmpty() && page.isPaged()) ?
+                        page.nextCursor(ids.isEmpty() ? null : ids.get(ids.size() - 1), ids.size()) : null;
+
+                // Build response. NDJSON has one ID per line, without a binder around it.
+                final Response.ResponseBuilder builder;
+                if (JsonStreaming.selectFormat(request) == JsonStreaming.Format.NDJSON) {
+                    builder = JsonStreaming.ok("getPersons", JsonStreaming.Format.NDJSON, null,
+                            CloseableIterator.of(ids.iterator()), IdConverter::fromDomain);
+                } else {
+
+                    // Keep the order of the IDs, so the last ID of a page is also the last one returned.
+                    @Nonnull final Set<IdDTO> idDTOs = new LinkedHashSet<>();
+                    for (final Uid<Person> id : ids) {
+                        idDTOs.add(IdConverter.fromDomain(id));
+                    }
+                    @Nonnull final IdsDTO binder = new IdsDTO(idDTOs); // Create the binder.
+                    binder.validate();                                  // And validate it before returning!
+                    builder = Response.ok(binder);
+                }
+                if (nextCursor != null) {
+                    builder.header(HEADER_NEXT_CURSOR, nextCursor);
+                }
+                if (tag != null) {
+                    builder.tag(tag);
+                }
+                response.resume(builder.build());
+                return null;
+            }
+        }, reactor.getExecutionContext());
+    }
+
+    /**
+     * Get the IDs added and removed since a version for a "getPersons" request.
+     */
+    @Nonnull
+    private Future<Void> getChanges(@Nonnull final String since, @Nonnull final AsyncResponse response) {
+        return db.changesSince(since).map(new Mapper<PersonChangeLog.Changes, Void>() {
+            @Nullable
+            @Override
+            public Void checkedApply(@Nullable final PersonChangeLog.Changes changes) {
+                LOG.debug("getChanges: since={}, changes={}", since, changes);
+                if (changes == null) {
+                    throw new ClientErrorException(Response.Status.GONE);
+                }
+                @Nonnull final Set<IdDTO> added = new LinkedHashSet<>();
+                for (final Uid<Person> id : changes.getAdded()) {
+                    added.add(IdConverter.fromDomain(id));
+                }
+                @Nonnull final Set<IdDTO> removed = new LinkedHashSet<>();
+                for (final Uid<Person> id : changes.getRemoved()) {
+                    removed.add(IdConverter.fromDomain(id));
+                }
+
+                // Build response.
+                @Nonnull final PersonChangesDTO binder = new PersonChangesDTO(changes.getVersion(), added, removed);
+                binder.validate();
+                response.resume(Response.ok(binder).tag(new EntityTag(changes.getVersion(), true)).build());
+                return null;
+            }
+        }, reactor.getExecutionContext());
+    }
+
     @Override
     public void getPerson(
             @Nonnull @PathParam(PARAM_PERSON_ID) final String personId,
+            @Context @Nonnull final Request request,
             @Suspended @Nonnull final AsyncResponse response) {
         assert personId != null;
+        assert request != null;
         assert response != null;
 
-        processor.process("getPerson", LOG, response, () -> {
+        stageProcessor.process("getPerson", LOG, response, () -> {
 
             // Check input.
             if (!Uid.isValid(personId)) {
                 throw new ApiUidSyntaxException("personId", personId);
             }
             final Uid<Person> personUid = new Uid<>(personId);
-            @Nullable final Person person = db.get(personUid);
 
-            LOG.debug("getPerson: personId={}, person={}", personId, person);
-            if (person == null) {
-                throw new ApiNotFoundException();
+            // Return the serialized person if it is cached; this may be a 304 (Not Modified).
+            final PersonResponseCache responseCache = db.getResponseCache();
+            @Nullable final Response cached = responseCache.get(personUid, request);
+            if (cached != null) {
+                response.resume(cached);
+                return CompletableFuture.completedFuture(null);
             }
 
-            // Build response.
-            final PersonDTO binder = PersonConverter.fromDomain(person); // Create the binder.
-            binder.validate();                                              // And validate it.
-            response.resume(Response.ok(binder).build());
-
-            // The response is already set within this method body.
-            return Futures.successful(null);
+            // Concurrent requests for the same person share a single database call, which also fills the cache.
+            // Continue with the result on the thread that completes the database call, without a Mapper class.
+            // Exceptions are handled by the 'processor'.
+            return CompletionStageProcessor.toCompletionStage(
+                    getPersonFlight.execute(personUid, () -> {
+                        final long stamp = responseCache.getStamp(personUid);
+                        return db.get(personUid).map(new Mapper<Person, Person>() {
+                            @Nullable
+                            @Override
+                            public Person checkedApply(@Nullable final Person person) {
+                                if (person != null) {
+                                    responseCache.put(person, stamp);
+                                }
+                                return person;
+                            }
+                        }, reactor.getExecutionContext());
+                    })).thenAccept(person -> {
+                LOG.debug("getPerson: personId={}, person={}", personId, person);
+                if (person == null) {
+                    throw new ApiNotFoundException();
+                }
+
+                // Build response.
+                response.resume(responseCache.toResponse(person, request));
+            });
         });
     }
 
@@ -209,21 +394,26 @@ public class FutureBasedResourceImpl implements FutureBasedResource {
 
             // Create a new person ID on-the-fly.
             @Nonnull final Person person = PersonConverter.toDomain(personDTO);
-
             LOG.debug("createPerson: personId={}", person.getId());
-            if (db.putIfAbsent(person) != null) {
-                throw new ApiDuplicateIdException("id", person.getId().toString());
-            }
-
-            // Create the response and validate it.
-            @Nonnull final PersonDTO binder = PersonConverter.fromDomain(person);    // Create binder
-            binder.validate();                                                          // And validate.
 
-            // Build the response and return it.
-            response.resume(Response.ok(binder).build());
-
-            // The response is already set within this method body.
-            return Futures.successful(null);
+            // Map the future once it is available.
+            return db.putIfAbsent(person).map(new Mapper<Person, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nullable final Person existing) {
+                    if (existing != null) {
+                        throw new ApiDuplicateIdException("id", person.getId().toString());
+                    }
+
+                    // Create the response and validate it.
+                    @Nonnull final PersonDTO binder = PersonConverter.fromDomain(person);    // Create binder
+                    binder.validate();                                                      // And validate.
+
+                    // Build the response and return it.
+                    response.resume(Response.ok(binder).build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
         });
     }
 
@@ -241,18 +431,128 @@ public class FutureBasedResourceImpl implements FutureBasedResource {
                 throw new ApiUidSyntaxException("personId", personId);
             }
             final Uid<Person> personUid = new Uid<>(personId);
-            @Nullable final Person person = db.remove(personUid);
 
-            LOG.debug("removePerson: personId={}, person={}", personId, person);
-            if (person == null) {
-                throw new ApiNotFoundException();
-            }
+            // Map the future once it is available.
+            return db.remove(personUid).map(new Mapper<Person, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nullable final Person person) {
+                    LOG.debug("removePerson: personId={}, person={}", personId, person);
+                    if (person == null) {
+                        throw new ApiNotFoundException();
+                    }
+
+                    // Build a "204 (NO CONTENT)" response. No binders required.
+                    response.resume(Response.noContent().build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
+        });
+    }
 
-            // Build a "204 (NO CONTENT)" response. No binders required.
-            response.resume(Response.noContent().build());
+    @Override
+    public void createPersons(
+            @Nullable final PersonsDTO personsDTO,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert response != null;
 
-            // The response is already set within this method body.
-            return Futures.successful(null);
+        processor.process("createPersons", LOG, response, () -> {
+
+            // Check input; this validates all persons in one go.
+            @Nonnull final List<Person> persons = BatchRequests.toNewPersons(personsDTO);
+            LOG.debug("createPersons: count={}", persons.size());
+
+            // Store all persons in a single database operation.
+            return db.putAllIfAbsent(persons).map(new Mapper<List<Person>, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nonnull final List<Person> existing) {
+                    final List<BatchItemDTO> results = new ArrayList<>(persons.size());
+                    for (int i = 0; i < persons.size(); ++i) {
+                        final Person person = persons.get(i);
+                        results.add((existing.get(i) == null) ?
+                                new BatchItemDTO(person.getId().toString(), Response.Status.OK.getStatusCode(),
+                                        PersonConverter.fromDomain(person)) :
+                                new BatchItemDTO(person.getId().toString(),
+                                        Response.Status.CONFLICT.getStatusCode(), null));
+                    }
+
+                    // Build the response and return it.
+                    @Nonnull final BatchResultDTO binder = new BatchResultDTO(results);
+                    binder.validate();
+                    response.resume(Response.ok(binder).build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
+        });
+    }
+
+    @Override
+    public void getPersonsById(
+            @Nullable final IdsDTO idsDTO,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert response != null;
+
+        processor.process("getPersonsById", LOG, response, () -> {
+
+            // Check input.
+            @Nonnull final List<Uid<Person>> ids = BatchRequests.toIds(idsDTO);
+            LOG.debug("getPersonsById: count={}", ids.size());
+
+            return db.getAll(ids).map(new Mapper<List<Person>, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nonnull final List<Person> persons) {
+                    final List<BatchItemDTO> results = new ArrayList<>(ids.size());
+                    for (int i = 0; i < ids.size(); ++i) {
+                        final Person person = persons.get(i);
+                        results.add((person != null) ?
+                                new BatchItemDTO(ids.get(i).toString(), Response.Status.OK.getStatusCode(),
+                                        PersonConverter.fromDomain(person)) :
+                                new BatchItemDTO(ids.get(i).toString(), Response.Status.NOT_FOUND.getStatusCode(),
+                                        null));
+                    }
+
+                    // Build the response and return it.
+                    @Nonnull final BatchResultDTO binder = new BatchResultDTO(results);
+                    binder.validate();
+                    response.resume(Response.ok(binder).build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
+        });
+    }
+
+    @Override
+    public void removePersons(
+            @Nullable final IdsDTO idsDTO,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert response != null;
+
+        processor.process("removePersons", LOG, response, () -> {
+
+            // Check input.
+            @Nonnull final List<Uid<Person>> ids = BatchRequests.toIds(idsDTO);
+            LOG.debug("removePersons: count={}", ids.size());
+
+            return db.removeAll(ids).map(new Mapper<List<Person>, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nonnull final List<Person> removed) {
+                    final List<BatchItemDTO> results = new ArrayList<>(ids.size());
+                    for (int i = 0; i < ids.size(); ++i) {
+                        results.add(new BatchItemDTO(ids.get(i).toString(), (removed.get(i) != null) ?
+                                Response.Status.NO_CONTENT.getStatusCode() :
+                                Response.Status.NOT_FOUND.getStatusCode(), null));
+                    }
+
+                    // Build the response and return it.
+                    @Nonnull final BatchResultDTO binder = new BatchResultDTO(results);
+                    binder.validate();
+                    response.resume(Response.ok(binder).build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
         });
     }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices;
+
+import com.tomtom.examples.ApiConstants;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.examples.exampleCreatingScalableServices.store.PersonKeys;
+import com.tomtom.speedtools.apivalidation.exceptions.ApiIntegerOutOfRangeException;
+import com.tomtom.speedtools.apivalidation.exceptions.ApiInvalidFormatException;
+import com.tomtom.speedtools.domain.Uid;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * This class holds the "count" and "cursor" query parameters of a paged request for person IDs.
+ *
+ * Pages are fetched with keyset pagination: the cursor holds the last ID of the previous page, so the next page is
+ * found by looking up the IDs after that ID, rather than by skipping a number of IDs. This keeps the cost of a page
+ * constant, no matter how deep into the list the page is. The cursor also holds the number of IDs returned so far,
+ * which is bounded by {@link ApiConstants#API_OFFSET_MAX}.
+ *
+ * The cursor is opaque to clients: it is a URL-safe Base64 string, which should be passed back unmodified.
+ */
+public final class PageRequest {
+
+    // Size of a decoded cursor: most and least significant bits of the ID, and offset.
+    private static final int CURSOR_SIZE = 8 + 8 + 4;
+
+    @Nullable
+    private final Uid<Person> after;
+    private final int count;
+    private final int offset;
+    private final boolean paged;
+
+    private PageRequest(@Nullable final Uid<Person> after, final int count, final int offset, final boolean paged) {
+        super();
+        this.after = after;
+        this.count = count;
+        this.offset = offset;
+        this.paged = paged;
+    }
+
+    /**
+     * Parse and validate the query parameters of a request. If neither parameter is given, the request is not paged
+     * and all IDs should be returned at once.
+     *
+     * @param count  Maximum number of IDs to return, or null for the default page size.
+     * @param cursor Cursor returned with the previous page, or null to get the first page.
+     * @return Page request.
+     * @throws ApiIntegerOutOfRangeException If the count is out of range.
+     * @throws ApiInvalidFormatException     If the cursor is invalid.
+     */
+    @Nonnull
+    public static PageRequest fromParameters(@Nullable final Integer count, @Nullable final String cursor) {
+        if ((count == null) && (cursor == null)) {
+            return new PageRequest(null, ApiConstants.API_COUNT_MAX, 0, false);
+        }
+        final int pageSize = (count == null) ? ApiConstants.API_COUNT_DEFAULT : count;
+        if ((pageSize < 1) || (pageSize > ApiConstants.API_COUNT_MAX)) {
+            throw new ApiIntegerOutOfRangeException(SimpleThreadBasedResource.PARAM_COUNT, pageSize, 1,
+                    ApiConstants.API_COUNT_MAX);
+        }
+        if ((cursor == null) || cursor.isEmpty()) {
+            return new PageRequest(null, pageSize, 0, true);
+        }
+
+        final ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+        } catch (final IllegalArgumentException ignored) {
+            throw new ApiInvalidFormatException(SimpleThreadBasedResource.PARAM_CURSOR, cursor, "cursor");
+        }
+        if (buffer.remaining() != CURSOR_SIZE) {
+            throw new ApiInvalidFormatException(SimpleThreadBasedResource.PARAM_CURSOR, cursor, "cursor");
+        }
+        try {
+            final long mostSigBits = buffer.getLong();
+            final long leastSigBits = buffer.getLong();
+            final int offset = buffer.getInt();
+            if ((offset < 0) || (offset > ApiConstants.API_OFFSET_MAX)) {
+                throw new ApiInvalidFormatException(SimpleThreadBasedResource.PARAM_CURSOR, cursor, "cursor");
+            }
+            return new PageRequest(PersonKeys.toUid(mostSigBits, leastSigBits), pageSize, offset, true);
+        } catch (final BufferUnderflowException ignored) {
+            throw new ApiInvalidFormatException(SimpleThreadBasedResource.PARAM_CURSOR, cursor, "cursor");
+        }
+    }
+
+    /**
+     * Return the cursor for the page after a page, or null if there are no more pages. A page shorter than the
+     * requested count is the last page.
+     *
+     * @param lastId   Last ID of the page, or null if the page was empty.
+     * @param returned Number of IDs in the page.
+     * @return Cursor, or null if the page is the last page.
+     */
+    @Nullable
+    public String nextCursor(@Nullable final Uid<Person> lastId, final int returned) {
+        assert returned >= 0;
+        final long nextOffset = (long) offset + returned;
+        if (!paged || (lastId == null) || (returned < count) || (nextOffset > ApiConstants.API_OFFSET_MAX)) {
+            return null;
+        }
+        final UUID uuid = PersonKeys.toUUID(lastId);
+        final ByteBuffer buffer = ByteBuffer.allocate(CURSOR_SIZE);
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+        buffer.putInt((int) nextOffset);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Return the ID after which the page starts.
+     *
+     * @return Last ID of the previous page, or null for the first page.
+     */
+    @Nullable
+    public Uid<Person> getAfter() {
+        return after;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public boolean isPaged() {
+        return paged;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices;
+
+import com.tomtom.examples.ApiConstants;
+import com.tomtom.speedtools.apivalidation.exceptions.ApiIntegerOutOfRangeException;
+import com.tomtom.speedtools.apivalidation.exceptions.ApiInvalidParameterCombinationException;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * This class holds the "minAge", "maxAge" and "namePrefix" query parameters of a request for persons. Persons match
+ * if they match all given parameters. The name prefix is case-sensitive.
+ */
+public final class PersonFilter {
+
+    @Nullable
+    private final Integer minAge;
+    @Nullable
+    private final Integer maxAge;
+    @Nullable
+    private final String namePrefix;
+
+    private PersonFilter(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix) {
+        super();
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.namePrefix = namePrefix;
+    }
+
+    /**
+     * Parse and validate the query parameters of a request. An empty name prefix is the same as no name prefix.
+     *
+     * @param minAge     Minimum age, inclusive, or null.
+     * @param maxAge     Maximum age, inclusive, or null.
+     * @param namePrefix Name prefix, or null.
+     * @param page       Page request of the same request. Filtered requests can be limited by a count, but cannot
+     *                   be continued with a cursor.
+     * @return Filter.
+     * @throws ApiIntegerOutOfRangeException           If an age is out of range.
+     * @throws ApiInvalidParameterCombinationException If the minimum age exceeds the maximum age, or a filter is
+     *                                                 combined with a cursor.
+     */
+    @Nonnull
+    public static PersonFilter fromParameters(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            @Nonnull final PageRequest page) {
+        assert page != null;
+        checkAge(SimpleThreadBasedResource.PARAM_MIN_AGE, minAge);
+        checkAge(SimpleThreadBasedResource.PARAM_MAX_AGE, maxAge);
+        if ((minAge != null) && (maxAge != null) && (minAge > maxAge)) {
+            throw new ApiInvalidParameterCombinationException(SimpleThreadBasedResource.PARAM_MIN_AGE);
+        }
+        final PersonFilter filter = new PersonFilter(minAge, maxAge,
+                ((namePrefix == null) || namePrefix.isEmpty()) ? null : namePrefix);
+        if (!filter.isEmpty() && (page.getAfter() != null)) {
+            throw new ApiInvalidParameterCombinationException(SimpleThreadBasedResource.PARAM_CURSOR);
+        }
+        return filter;
+    }
+
+    /**
+     * Return whether this filter matches all persons.
+     *
+     * @return True if no parameter was given.
+     */
+    public boolean isEmpty() {
+        return (minAge == null) && (maxAge == null) && (namePrefix == null);
+    }
+
+    @Nullable
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    @Nullable
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    @Nullable
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    @Override
+    @Nonnull
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+
+    private static void checkAge(@Nonnull final String name, @Nullable final Integer age) {
+        if ((age != null) && ((age < ApiConstants.API_AGE_MIN) || (age > ApiConstants.API_AGE_MAX))) {
+            throw new ApiIntegerOutOfRangeException(name, age, ApiConstants.API_AGE_MIN, ApiConstants.API_AGE_MAX);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tomtom.examples.common.JsonMapper;
+import com.tomtom.examples.exampleCreatingScalableServices.converters.PersonConverter;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.PersonDTO;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class caches the serialized JSON and XML representations of persons, so a person which has not changed is not
+ * converted, validated and serialized again for every request.
+ *
+ * Every representation has a strong ETag, derived from a hash of its serialized bytes. The tag does not depend on
+ * when or how often the person was cached, so it stays valid across restarts of a persistent store, and a changed
+ * person always gets a new tag. A request with a matching "If-None-Match" header gets a 304 (Not Modified) response
+ * straight from the cache, without reading the person.
+ *
+ * Writers must call {@link #invalidate(Uid)} after changing a person. To make sure a person which was read before a
+ * change is not cached after the change, readers take a stamp before reading a person with {@link #getStamp(Uid)},
+ * and pass it to {@link #put(Person, long, Request)}; the person is not cached if it was invalidated since. Stamps are
+ * kept per ID, taken from a fixed set of stamps, so writes to other persons rarely keep a read from being cached.
+ */
+public final class PersonResponseCache {
+
+    // Number of invalidation stamps. IDs which share a stamp only cause an occasional uncached read.
+    private static final int NR_STAMPS = 1024;
+
+    /**
+     * Default maximum number of cached persons.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /**
+     * Representations of a person, in order of preference.
+     */
+    @Nonnull
+    public static final List<Variant> VARIANTS =
+            Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE, MediaType.APPLICATION_XML_TYPE).build();
+
+    @Nonnull
+    private static final ObjectWriter JSON_WRITER = JsonMapper.OBJECT_MAPPER.writerFor(PersonDTO.class);
+
+    @Nonnull
+    private final JAXBContext jaxbContext;
+    @Nonnull
+    private final Cache<Uid<Person>, Entry> cache;
+    @Nonnull
+    private final AtomicLongArray stamps = new AtomicLongArray(NR_STAMPS);
+
+    /**
+     * Create a response cache.
+     *
+     * @param maximumSize Maximum number of cached persons.
+     */
+    public PersonResponseCache(final long maximumSize) {
+        super();
+        assert maximumSize >= 0;
+        try {
+            this.jaxbContext = JAXBContext.newInstance(PersonDTO.class);
+        } catch (final JAXBException e) {
+            throw new IllegalStateException("Cannot create JAXB context for " + PersonDTO.class.getSimpleName(), e);
+        }
+        this.cache = Caffeine.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Get the cached response for a person.
+     *
+     * @param id      Person ID.
+     * @param request Request, used to select the representation and to evaluate "If-None-Match".
+     * @return Response, 200 (OK) or 304 (Not Modified), or null if the person is not cached.
+     */
+    @Nullable
+    public Response get(@Nonnull final Uid<Person> id, @Nonnull final Request request) {
+        assert id != null;
+        assert request != null;
+        @Nullable final Entry entry = cache.getIfPresent(id);
+        return (entry == null) ? null : entry.toResponse(request);
+    }
+
+    /**
+     * Get a stamp to pass to {@link #put(Person, long, Request)}. Must be called before reading the person.
+     *
+     * @param id Person ID.
+     * @return Stamp.
+     */
+    public long getStamp(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        return stamps.get(stampIndex(id));
+    }
+
+    /**
+     * Serialize a person, cache it and return the response for it.
+     *
+     * @param person  Person, as read from the store.
+     * @param stamp   Stamp taken before the person was read.
+     * @param request Request, used to select the representation and to evaluate "If-None-Match".
+     * @return Response, 200 (OK) or 304 (Not Modified).
+     */
+    @Nonnull
+    public Response put(@Nonnull final Person person, final long stamp, @Nonnull final Request request) {
+        assert request != null;
+        return cacheEntry(person, stamp).toResponse(request);
+    }
+
+    /**
+     * Serialize a person and cache it. Use this to fill the cache from a read shared by several requests, which then
+     * get their responses with {@link #toResponse(Person, Request)}.
+     *
+     * @param person Person, as read from the store.
+     * @param stamp  Stamp taken before the person was read.
+     */
+    public void put(@Nonnull final Person person, final long stamp) {
+        cacheEntry(person, stamp);
+    }
+
+    /**
+     * Return the response for a person which was read from the store. The cached representations are used if
+     * available, otherwise the person is serialized, but not cached.
+     *
+     * @param person  Person, as read from the store.
+     * @param request Request, used to select the representation and to evaluate "If-None-Match".
+     * @return Response, 200 (OK) or 304 (Not Modified).
+     */
+    @Nonnull
+    public Response toResponse(@Nonnull final Person person, @Nonnull final Request request) {
+        assert person != null;
+        assert request != null;
+        @Nullable final Entry entry = cache.getIfPresent(person.getId());
+        return ((entry == null) ? createEntry(person) : entry).toResponse(request);
+    }
+
+    /**
+     * Remove a person from the cache. Must be called after a person has been changed or removed.
+     *
+     * @param id Person ID.
+     */
+    public void invalidate(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        stamps.incrementAndGet(stampIndex(id));
+        cache.invalidate(id);
+    }
+
+    @Nonnull
+    private Entry cacheEntry(@Nonnull final Person person, final long stamp) {
+        assert person != null;
+        final Entry entry = createEntry(person);
+
+        // Only keep the entry if no invalidation may have been missed. Invalidations increment the stamp before
+        // removing an entry, so either the check below sees the increment, or the removal happens after the put.
+        cache.put(person.getId(), entry);
+        if (stamps.get(stampIndex(person.getId())) != stamp) {
+            cache.asMap().remove(person.getId(), entry);
+        }
+        return entry;
+    }
+
+    private static int stampIndex(@Nonnull final Uid<Person> id) {
+        return (id.hashCode() & Integer.MAX_VALUE) % NR_STAMPS;
+    }
+
+    @Nonnull
+    private Entry createEntry(@Nonnull final Person person) {
+        final PersonDTO binder = PersonConverter.fromDomain(person);
+        binder.validate();
+        return new Entry(toJson(binder), toXml(binder));
+    }
+
+    @Nonnull
+    private static byte[] toJson(@Nonnull final PersonDTO binder) {
+        try {
+            return JSON_WRITER.writeValueAsBytes(binder);
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize person to JSON", e);
+        }
+    }
+
+    @Nonnull
+    private byte[] toXml(@Nonnull final PersonDTO binder) {
+        try {
+            final Marshaller marshaller = jaxbContext.createMarshaller();   // Marshallers are not thread-safe.
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            marshaller.marshal(binder, out);
+            return out.toByteArray();
+        } catch (final JAXBException e) {
+            throw new IllegalStateException("Cannot serialize person to XML", e);
+        }
+    }
+
+    /**
+     * Serialized representations of a version of a person.
+     */
+    private static final class Entry {
+        @Nonnull
+        private final EntityTag jsonTag;
+        @Nonnull
+        private final EntityTag xmlTag;
+        @Nonnull
+        private final byte[] json;
+        @Nonnull
+        private final byte[] xml;
+
+        Entry(@Nonnull final byte[] json, @Nonnull final byte[] xml) {
+            this.jsonTag = new EntityTag(hash(json));
+            this.xmlTag = new EntityTag(hash(xml));
+            this.json = json;
+            this.xml = xml;
+        }
+
+        @Nonnull
+        Response toResponse(@Nonnull final Request request) {
+            @Nullable final Variant variant = request.selectVariant(VARIANTS);
+            final boolean isXml = (variant != null) && MediaType.APPLICATION_XML_TYPE.equals(variant.getMediaType());
+            final EntityTag tag = isXml ? xmlTag : jsonTag;
+
+            // Return 304 (Not Modified) if the client has this version already.
+            @Nullable final Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.tag(tag).variants(VARIANTS).build();
+            }
+            final MediaType mediaType = isXml ? MediaType.APPLICATION_XML_TYPE : MediaType.APPLICATION_JSON_TYPE;
+            return Response.ok(isXml ? xml : json, mediaType).tag(tag).variants(VARIANTS).build();
+        }
+
+        /**
+         * Hash a representation into a tag: the first 64 bits of its SHA-256 digest, in hex.
+         */
+        @Nonnull
+        private static String hash(@Nonnull final byte[] bytes) {
+            try {
+                final byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+                return String.format("%016x", ByteBuffer.wrap(digest).getLong());
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Cannot hash person response", e);
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.tomtom.examples.exampleCreatingScalableServices;
 
+import com.tomtom.examples.common.JsonStreaming;
 import com.tomtom.examples.exampleCreatingScalableServices.dto.PersonDTO;
 
 import javax.annotation.Nonnull;
@@ -23,7 +24,9 @@ import javax.annotation.Nullable;
 import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 
 /**
  * This class provides all REST API calls with a standard Thread based implementation.
@@ -36,33 +39,88 @@ import javax.ws.rs.core.MediaType;
 public interface SimpleThreadBasedResource {
 
     public final String PARAM_PERSON_ID = "personId";
+    public final String PARAM_COUNT = "count";
+    public final String PARAM_CURSOR = "cursor";
+    public final String PARAM_MIN_AGE = "minAge";
+    public final String PARAM_MAX_AGE = "maxAge";
+    public final String PARAM_NAME_PREFIX = "namePrefix";
+    public final String PARAM_SINCE = "since";
 
     /**
-     * This method gets all IDs of existing Person records.
+     * Response header with the cursor for the next page of a paged request.
+     */
+    public final String HEADER_NEXT_CURSOR = "X-Next-Cursor";
+
+    /**
+     * This method gets the IDs of existing Person records.
+     *
+     * If neither count nor cursor is specified, all IDs are returned at once. Otherwise, at most count IDs are
+     * returned and, if there may be more IDs, the response contains a header {@link #HEADER_NEXT_CURSOR} with a cursor
+     * to get the next page. Pages are returned in a fixed, but unspecified, order.
+     *
+     * If minAge, maxAge or namePrefix is specified, only the IDs of matching persons are returned, looked up in an
+     * index. Such a request can be limited by count, but cannot be combined with a cursor.
+     *
+     * If all IDs are requested, the response has a weak ETag, which holds the version of the IDs: a random epoch of
+     * the current run and a modification sequence. If since is specified, only the IDs added and removed since that
+     * version are returned, as a
+     * {@link com.tomtom.examples.exampleCreatingScalableServices.dto.PersonChangesDTO}. Only /example/2 supports
+     * ETags and since.
+     *
+     * If all IDs are requested as JSON, /example/2 streams them while they are read, rather than collecting them
+     * first. The response can also be requested as newline-delimited JSON ("application/x-ndjson"), with one record
+     * per line, which /example/1 streams in the same way. /example/3 returns persons rather than IDs, and streams
+     * them in the same way.
      *
      * HTTP 200: The person records were successfully retrieved.
      *
-     * @param response Person, {@link PersonDTO}.
+     * HTTP 304: The IDs have not changed since the request with the ETag given in "If-None-Match".
+     *
+     * HTTP 400: If the count or an age is out of range, the cursor is invalid, or the parameters cannot be combined.
+     *
+     * HTTP 410: If the changes since the given version are no longer available, or the version is of an earlier run.
+     * Get all IDs instead.
+     *
+     * @param count      Maximum number of IDs to return. Optional.
+     * @param cursor     Cursor from the previous page. Optional.
+     * @param minAge     Minimum age, inclusive. Optional.
+     * @param maxAge     Maximum age, inclusive. Optional.
+     * @param namePrefix Prefix of the name, case-sensitive. Optional.
+     * @param since      Version, from the ETag or a previous list of changes. Optional.
+     * @param request    Request, used for "If-None-Match".
+     * @param response   Person, {@link PersonDTO}.
      */
     @GET
     @Path("person")
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, JsonStreaming.APPLICATION_NDJSON})
     void getPersons(
+            @Nullable @QueryParam(PARAM_COUNT) Integer count,
+            @Nullable @QueryParam(PARAM_CURSOR) String cursor,
+            @Nullable @QueryParam(PARAM_MIN_AGE) Integer minAge,
+            @Nullable @QueryParam(PARAM_MAX_AGE) Integer maxAge,
+            @Nullable @QueryParam(PARAM_NAME_PREFIX) String namePrefix,
+            @Nullable @QueryParam(PARAM_SINCE) String since,
+            @Context @Nonnull Request request,
             @Suspended @Nonnull AsyncResponse response);
 
     /**
      * This method gets an existing Person record.
      *
-     * HTTP 200: The person record was successfully retrieved.
+     * HTTP 200: The person record was successfully retrieved. The response has a strong ETag.
+     *
+     * HTTP 304: The person record has not changed since the request with the ETag given in "If-None-Match".
      *
      * HTTP 404: The person record was not found.
      *
      * @param personId Person to be retrieved from database.
+     * @param request  Request, used for content negotiation and "If-None-Match".
      * @param response Person, {@link PersonDTO}.
      */
     @GET
     @Path("person/{" + PARAM_PERSON_ID + '}')
     void getPerson(
             @Nonnull @PathParam(PARAM_PERSON_ID) String personId,
+            @Context @Nonnull Request request,
             @Suspended @Nonnull AsyncResponse response);
 
     /**
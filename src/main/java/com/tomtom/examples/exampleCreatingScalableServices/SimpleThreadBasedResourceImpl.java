@@ -16,6 +16,8 @@
 
 package com.tomtom.examples.exampleCreatingScalableServices;
 
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.common.JsonStreaming;
 import com.tomtom.examples.exampleCreatingScalableServices.converters.IdConverter;
 import com.tomtom.examples.exampleCreatingScalableServices.converters.PersonConverter;
 import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
@@ -31,11 +33,15 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -66,28 +72,82 @@ public class SimpleThreadBasedResourceImpl implements SimpleThreadBasedResource
 
     @Override
     public void getPersons(
+            @Nullable @QueryParam(PARAM_COUNT) final Integer count,
+            @Nullable @QueryParam(PARAM_CURSOR) final String cursor,
+            @Nullable @QueryParam(PARAM_MIN_AGE) final Integer minAge,
+            @Nullable @QueryParam(PARAM_MAX_AGE) final Integer maxAge,
+            @Nullable @QueryParam(PARAM_NAME_PREFIX) final String namePrefix,
+            @Nullable @QueryParam(PARAM_SINCE) final String since,
+            @Context @Nonnull final Request request,
             @Suspended @Nonnull final AsyncResponse response) {
+        assert request != null;
         assert response != null;
 
-        @Nonnull final Set<IdDTO> idDTOs = new HashSet<>();
-        final Enumeration<Uid<Person>> e = db.keys();
-        while (e.hasMoreElements()) {
-            @Nonnull final IdDTO idDTO = IdConverter.fromDomain(e.nextElement());
-            idDTOs.add(idDTO);
+        // Check input. Listing changes is only supported by /example/2.
+        if (since != null) {
+            throw new ApiInvalidParameterCombinationException(PARAM_SINCE);
+        }
+        @Nonnull final PageRequest page = PageRequest.fromParameters(count, cursor);
+        @Nonnull final PersonFilter filter = PersonFilter.fromParameters(minAge, maxAge, namePrefix, page);
+
+        // Stream all IDs from the store as newline-delimited JSON while they are read, rather than collecting them
+        // first.
+        final boolean ndjson = (JsonStreaming.selectFormat(request) == JsonStreaming.Format.NDJSON);
+        if (ndjson && filter.isEmpty() && !page.isPaged()) {
+            final CloseableIterator<Uid<Person>> ids = CloseableIterator.of(db.keys());
+            JsonStreaming.resume(response, JsonStreaming.ok("getPersons", JsonStreaming.Format.NDJSON, null, ids,
+                    IdConverter::fromDomain).build(), ids);
+            return;
+        }
+
+        // Keep the order of the IDs, so the last ID of a page is also the last one returned.
+        @Nonnull final Set<IdDTO> idDTOs = new LinkedHashSet<>();
+        @Nullable String nextCursor = null;
+        if (!filter.isEmpty()) {
+
+            // Look up matching persons in the indexes.
+            for (final Uid<Person> id : db.find(filter.getMinAge(), filter.getMaxAge(), filter.getNamePrefix(),
+                    page.getCount())) {
+                idDTOs.add(IdConverter.fromDomain(id));
+            }
+        } else if (page.isPaged()) {
+            final List<Uid<Person>> ids = db.keysAfter(page.getAfter(), page.getCount());
+            for (final Uid<Person> id : ids) {
+                idDTOs.add(IdConverter.fromDomain(id));
+            }
+            nextCursor = page.nextCursor(ids.isEmpty() ? null : ids.get(ids.size() - 1), ids.size());
+        } else {
+            final Enumeration<Uid<Person>> e = db.keys();
+            while (e.hasMoreElements()) {
+                @Nonnull final IdDTO idDTO = IdConverter.fromDomain(e.nextElement());
+                idDTOs.add(idDTO);
+            }
         }
 
         // Build response.
-        LOG.debug("getPersons: idBinders={}", idDTOs);
-        @Nonnull final IdsDTO binder = new IdsDTO(idDTOs);
-        binder.validate();
-        response.resume(Response.ok(binder).build());
+        LOG.debug("getPersons: page={}, filter={}, idBinders={}", page, filter, idDTOs);
+        final Response.ResponseBuilder builder;
+        if (ndjson) {
+            builder = JsonStreaming.ok("getPersons", JsonStreaming.Format.NDJSON, null,
+                    CloseableIterator.of(idDTOs.iterator()), idDTO -> idDTO);
+        } else {
+            @Nonnull final IdsDTO binder = new IdsDTO(idDTOs);
+            binder.validate();
+            builder = Response.ok(binder);
+        }
+        if (nextCursor != null) {
+            builder.header(HEADER_NEXT_CURSOR, nextCursor);
+        }
+        response.resume(builder.build());
     }
 
     @Override
     public void getPerson(
             @Nonnull @PathParam(PARAM_PERSON_ID) final String personId,
+            @Context @Nonnull final Request request,
             @Suspended @Nonnull final AsyncResponse response) {
         assert personId != null;
+        assert request != null;
         assert response != null;
 
         // Check input.
@@ -95,6 +155,15 @@ public class SimpleThreadBasedResourceImpl implements SimpleThreadBasedResource
             throw new ApiUidSyntaxException("personId", personId);
         }
         final Uid<Person> personUid = new Uid<>(personId);
+
+        // Return the serialized person if it is cached; this may be a 304 (Not Modified).
+        final PersonResponseCache responseCache = db.getResponseCache();
+        @Nullable final Response cached = responseCache.get(personUid, request);
+        if (cached != null) {
+            response.resume(cached);
+            return;
+        }
+        final long stamp = responseCache.getStamp(personUid);
         @Nullable final Person person = db.get(personUid);
 
         LOG.debug("getPerson: personId={}, person={}", personId, person);
@@ -103,9 +172,7 @@ public class SimpleThreadBasedResourceImpl implements SimpleThreadBasedResource
         }
 
         // Build response.
-        final PersonDTO binder = PersonConverter.fromDomain(person);
-        binder.validate();
-        response.resume(Response.ok(binder).build());
+        response.resume(responseCache.put(person, stamp, request));
     }
 
     @Override
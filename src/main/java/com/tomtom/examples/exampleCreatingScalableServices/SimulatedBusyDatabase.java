@@ -16,72 +16,300 @@
 
 package com.tomtom.examples.exampleCreatingScalableServices;
 
+import akka.actor.ActorSystem;
 import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.examples.exampleCreatingScalableServices.store.*;
 import com.tomtom.speedtools.domain.Uid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 /**
- * This simple class acts as if it was a busy, slow database (see busy loop in {@link #doHardTask()}).
+ * This simple class acts as if it was a busy, slow database (see {@link #doHardTask()}). The latency of every
+ * operation is simulated by {@link SimulatedLatency}, configured in example.properties.
+ *
+ * The entities are kept in a {@link PersonStore}. The store implementation is selected by the property
+ * "SimulatedBusyDatabase.store" in example.properties. If a journal directory is configured, all mutations are
+ * written to a {@link PersonJournal} and the database is recovered from it at start-up. Secondary indexes on name and
+ * age are kept by an {@link IndexedPersonStore}. The journal is the outermost decorator, so a writer which waits for
+ * its record to be durable does not hold the index lock while it waits.
  */
 public final class SimulatedBusyDatabase {
     private static final Logger LOG = LoggerFactory.getLogger(SimulatedBusyDatabase.class);
 
     // Sample data store to store domain entities. This would normally be a database or so.
     @Nonnull
-    private final ConcurrentHashMap<Uid<Person>, Person> map;
+    private final PersonStore store;
 
-    public SimulatedBusyDatabase() {
+    // Indexes and change log of the store; the store itself if the journal is disabled.
+    @Nonnull
+    private final IndexedPersonStore indexedStore;
+    @Nonnull
+    private final SimulatedLatency latency;
+    @Nonnull
+    private final PersonResponseCache responseCache = new PersonResponseCache(PersonResponseCache.DEFAULT_MAXIMUM_SIZE);
+
+    @Inject
+    public SimulatedBusyDatabase(
+            @Nonnull final SimulatedBusyDatabaseProperties properties,
+            @Nonnull final ActorSystem system) {
         super();
+        assert properties != null;
+        assert system != null;
+
+        // Create the data store, recovering it from the journal if persistence is enabled.
+        final PersonStore memoryStore = createStore(properties);
+        @Nullable final PersonJournal journal;
+        if (properties.isJournalEnabled()) {
+            journal = new PersonJournal(
+                    new File(properties.getJournalDirectory()),
+                    properties.getJournalSegmentSizeMB() * 1024 * 1024,
+                    properties.getJournalGroupCommitMsecs());
+            journal.recover(memoryStore);
+            journal.start(memoryStore, properties.getJournalSnapshotIntervalSecs());
+            system.registerOnTermination(journal::close);
+        } else {
+            journal = null;
+        }
 
-        // Create a sample data store with entries. Note that this class is a singleton.
-        this.map = new ConcurrentHashMap<>();
-        final Uid<Person> id1 = Uid.fromString("1-1-1-1-1").as(Person.class);
-        this.map.put(id1, new Person(id1, "User 1", 30));
-        final Uid<Person> id2 = Uid.fromString("1-1-1-1-2").as(Person.class);
-        this.map.put(id2, new Person(id2, "User 2", 42));
+        // Maintain secondary indexes on name and age; these are built from the recovered contents.
+        this.indexedStore = new IndexedPersonStore(memoryStore, properties.getConcurrencyLevel() * 16,
+                properties.getChangeLogSize());
+        this.store = (journal == null) ? indexedStore : new JournalingPersonStore(indexedStore, journal,
+                properties.isJournalSyncWrites(), properties.getConcurrencyLevel() * 16);
+
+        // Add sample entries to an empty data store. Note that this class is a singleton.
+        if (store.size() == 0) {
+            final Uid<Person> id1 = Uid.fromString("1-1-1-1-1").as(Person.class);
+            this.store.put(new Person(id1, "User 1", 30));
+            final Uid<Person> id2 = Uid.fromString("1-1-1-1-2").as(Person.class);
+            this.store.put(new Person(id2, "User 2", 42));
+        }
+
+        this.latency = new SimulatedLatency(
+                properties.getLatencyProfile(),
+                properties.getLatencyDistribution(),
+                properties.getLatencyMeanMsecs(),
+                properties.getLatencyTailShape(),
+                system.scheduler(),
+                this::doBusyWork);
+        LOG.info("SimulatedBusyDatabase: properties={}", properties);
     }
 
     public void put(@Nonnull final Person person) {
         doHardTask();
-        map.put(person.getId(), person);
+        store.put(person);
+        responseCache.invalidate(person.getId());
     }
 
     @Nullable
     public Person putIfAbsent(@Nonnull final Person person) {
         doHardTask();
-        return map.putIfAbsent(person.getId(), person);
+        return putIfAbsentAndInvalidate(store, responseCache, person);
     }
 
     @Nullable
     public Person get(@Nonnull final Uid<Person> id) {
         doHardTask();
-        return map.get(id);
+        return store.get(id);
     }
 
     @Nullable
     public Person remove(@Nonnull final Uid<Person> id) {
         doHardTask();
-        return map.remove(id);
+        return removeAndInvalidate(store, responseCache, id);
+    }
+
+    /**
+     * Store persons, unless a person with the same ID already exists. The persons are stored in a single database
+     * operation.
+     *
+     * @param persons Persons to store.
+     * @return For every person, the existing person with the same ID, or null if the person was stored.
+     */
+    @Nonnull
+    public List<Person> putAllIfAbsent(@Nonnull final List<Person> persons) {
+        assert persons != null;
+        doHardTask();
+        final List<Person> result = new ArrayList<>(persons.size());
+        for (final Person person : persons) {
+            result.add(putIfAbsentAndInvalidate(store, responseCache, person));
+        }
+        return result;
+    }
+
+    /**
+     * Get persons in a single database operation.
+     *
+     * @param ids Person IDs.
+     * @return For every ID, the person, or null if not found.
+     */
+    @Nonnull
+    public List<Person> getAll(@Nonnull final List<Uid<Person>> ids) {
+        assert ids != null;
+        doHardTask();
+        final List<Person> result = new ArrayList<>(ids.size());
+        for (final Uid<Person> id : ids) {
+            result.add(store.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Remove persons in a single database operation.
+     *
+     * @param ids Person IDs.
+     * @return For every ID, the removed person, or null if not found.
+     */
+    @Nonnull
+    public List<Person> removeAll(@Nonnull final List<Uid<Person>> ids) {
+        assert ids != null;
+        doHardTask();
+        final List<Person> result = new ArrayList<>(ids.size());
+        for (final Uid<Person> id : ids) {
+            result.add(removeAndInvalidate(store, responseCache, id));
+        }
+        return result;
     }
 
     @Nonnull
     public Enumeration<Uid<Person>> keys() {
         doHardTask();
-        return map.keys();
+        return store.keys();
+    }
+
+    @Nonnull
+    public List<Uid<Person>> keysAfter(@Nullable final Uid<Person> after, final int count) {
+        doHardTask();
+        return store.keysAfter(after, count);
+    }
+
+    /**
+     * Find persons by age range and/or name prefix, using the secondary indexes.
+     *
+     * @param minAge     Minimum age, inclusive, or null.
+     * @param maxAge     Maximum age, inclusive, or null.
+     * @param namePrefix Name prefix, or null.
+     * @param count      Maximum number of IDs to return.
+     * @return Person IDs.
+     */
+    @Nonnull
+    public List<Uid<Person>> find(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            final int count) {
+        doHardTask();
+        return indexedStore.find(minAge, maxAge, namePrefix, count);
     }
 
     /**
-     * Do something really busy.
+     * Get the cache of serialized persons. It is invalidated by every write to the database.
+     *
+     * @return Response cache.
+     */
+    @Nonnull
+    public PersonResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Get the underlying store, which does not simulate any latency. Used by {@link AsyncSimulatedBusyDatabase}.
+     *
+     * @return Store.
+     */
+    @Nonnull
+    PersonStore getStore() {
+        return store;
+    }
+
+    /**
+     * Get the indexes and the change log of the underlying store. Used by {@link AsyncSimulatedBusyDatabase}. It must
+     * not be modified directly, as the journal would not record the modifications.
+     *
+     * @return Indexed store.
+     */
+    @Nonnull
+    IndexedPersonStore getIndexedStore() {
+        return indexedStore;
+    }
+
+    /**
+     * Get the latency simulator. Used by {@link AsyncSimulatedBusyDatabase}.
+     *
+     * @return Latency simulator.
+     */
+    @Nonnull
+    SimulatedLatency getLatency() {
+        return latency;
+    }
+
+    /**
+     * Store a person if absent and invalidate its cached response. Also used by {@link AsyncSimulatedBusyDatabase}.
+     */
+    @Nullable
+    static Person putIfAbsentAndInvalidate(
+            @Nonnull final PersonStore store,
+            @Nonnull final PersonResponseCache responseCache,
+            @Nonnull final Person person) {
+        @Nullable final Person existing = store.putIfAbsent(person);
+        if (existing == null) {
+            responseCache.invalidate(person.getId());
+        }
+        return existing;
+    }
+
+    /**
+     * Remove a person and invalidate its cached response. Also used by {@link AsyncSimulatedBusyDatabase}.
+     */
+    @Nullable
+    static Person removeAndInvalidate(
+            @Nonnull final PersonStore store,
+            @Nonnull final PersonResponseCache responseCache,
+            @Nonnull final Uid<Person> id) {
+        @Nullable final Person removed = store.remove(id);
+        if (removed != null) {
+            responseCache.invalidate(id);
+        }
+        return removed;
+    }
+
+    @Nonnull
+    private static PersonStore createStore(@Nonnull final SimulatedBusyDatabaseProperties properties) {
+        switch (properties.getStoreType()) {
+
+            case MAP:
+                return new ConcurrentMapPersonStore(properties.getExpectedSize());
+
+            case STRIPED:
+                return new StripedPersonStore(properties.getExpectedSize(), properties.getConcurrencyLevel());
+
+            default:
+                assert false;
+                throw new IllegalStateException("Unknown store type: " + properties.getStoreType());
+        }
+    }
+
+    /**
+     * Simulate the latency of a single database operation.
      */
     private void doHardTask() {
-        for (int i = 0; i < 100000; ++i) {
-            if (map.containsKey(Uid.fromString("1-1-1-1-" + i).as(Person.class))) {
+        latency.simulate();
+    }
+
+    /**
+     * Do something really busy. This is the unit of work of the CPU latency profile.
+     */
+    private void doBusyWork() {
+        for (int i = 0; i < 100; ++i) {
+            if (store.containsKey(Uid.fromString("1-1-1-1-" + i).as(Person.class))) {
 
                 // Execute something to not optimize this statement away.
                 LOG.trace("waitSomeTime: found, i={}", i);
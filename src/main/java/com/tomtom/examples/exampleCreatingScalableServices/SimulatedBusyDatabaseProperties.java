@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices;
+
+import com.tomtom.examples.exampleCreatingScalableServices.SimulatedLatency.Distribution;
+import com.tomtom.examples.exampleCreatingScalableServices.SimulatedLatency.Profile;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Locale;
+
+/**
+ * Properties for the {@link SimulatedBusyDatabase}. The values are read from the property files listed in the
+ * deployment module (see example.properties).
+ */
+public final class SimulatedBusyDatabaseProperties {
+
+    /**
+     * Implementation of the in-memory store.
+     */
+    public enum StoreType {
+        MAP,        // ConcurrentHashMap of Person objects.
+        STRIPED     // Lock striped, open-addressing hash table with primitive arrays.
+    }
+
+    @Nonnull
+    private final StoreType storeType;
+    private final int expectedSize;
+    private final int concurrencyLevel;
+    private final int changeLogSize;
+    @Nonnull
+    private final Profile latencyProfile;
+    @Nonnull
+    private final Distribution latencyDistribution;
+    private final int latencyMeanMsecs;
+    private final double latencyTailShape;
+    @Nonnull
+    private final String journalDirectory;
+    private final int journalSegmentSizeMB;
+    private final int journalGroupCommitMsecs;
+    private final boolean journalSyncWrites;
+    private final int journalSnapshotIntervalSecs;
+
+    /**
+     * Create the properties.
+     *
+     * @param storeType                   Store implementation, "map" or "striped".
+     * @param expectedSize                Expected number of persons, used to pre-size the store.
+     * @param concurrencyLevel            Expected number of concurrent writers.
+     * @param changeLogSize               Number of ID changes kept for listings of changes.
+     * @param latencyProfile              How the latency of an operation is spent: "cpu", "sleep" or "wait". See
+     *                                    {@link SimulatedLatency}.
+     * @param latencyDistribution         Distribution of the latency: "fixed", "exponential" or "pareto".
+     * @param latencyMeanMsecs            Mean latency of an operation, in milliseconds.
+     * @param latencyTailShape            Shape of the "pareto" distribution, must be greater than 1.
+     * @param journalDirectory            Directory for the write-ahead log and snapshots. If empty, the database is
+     *                                    not persisted.
+     * @param journalSegmentSizeMB        Size of a write-ahead log segment, in MB.
+     * @param journalGroupCommitMsecs     Interval between forcing the write-ahead log to disk, in milliseconds.
+     * @param journalSyncWrites           If true, writes wait until their log record has been forced to disk.
+     * @param journalSnapshotIntervalSecs Interval between snapshots, in seconds.
+     */
+    @Inject
+    public SimulatedBusyDatabaseProperties(
+            @Named("SimulatedBusyDatabase.store") @Nonnull final String storeType,
+            @Named("SimulatedBusyDatabase.expectedSize") final int expectedSize,
+            @Named("SimulatedBusyDatabase.concurrencyLevel") final int concurrencyLevel,
+            @Named("SimulatedBusyDatabase.changeLogSize") final int changeLogSize,
+            @Named("SimulatedBusyDatabase.latencyProfile") @Nonnull final String latencyProfile,
+            @Named("SimulatedBusyDatabase.latencyDistribution") @Nonnull final String latencyDistribution,
+            @Named("SimulatedBusyDatabase.latencyMeanMsecs") final int latencyMeanMsecs,
+            @Named("SimulatedBusyDatabase.latencyTailShape") final double latencyTailShape,
+            @Named("SimulatedBusyDatabase.journalDirectory") @Nonnull final String journalDirectory,
+            @Named("SimulatedBusyDatabase.journalSegmentSizeMB") final int journalSegmentSizeMB,
+            @Named("SimulatedBusyDatabase.journalGroupCommitMsecs") final int journalGroupCommitMsecs,
+            @Named("SimulatedBusyDatabase.journalSyncWrites") final boolean journalSyncWrites,
+            @Named("SimulatedBusyDatabase.journalSnapshotIntervalSecs") final int journalSnapshotIntervalSecs) {
+        assert storeType != null;
+        assert expectedSize >= 0;
+        assert concurrencyLevel >= 1;
+        assert changeLogSize >= 1;
+        assert latencyProfile != null;
+        assert latencyDistribution != null;
+        assert latencyMeanMsecs >= 0;
+        assert latencyTailShape > 1.0;
+        assert journalDirectory != null;
+        assert (journalSegmentSizeMB >= 1) && (journalSegmentSizeMB <= 1024);
+        assert journalGroupCommitMsecs >= 1;
+        assert journalSnapshotIntervalSecs >= 1;
+        this.storeType = StoreType.valueOf(storeType.trim().toUpperCase(Locale.US));
+        this.expectedSize = expectedSize;
+        this.concurrencyLevel = concurrencyLevel;
+        this.changeLogSize = changeLogSize;
+        this.latencyProfile = Profile.valueOf(latencyProfile.trim().toUpperCase(Locale.US));
+        this.latencyDistribution = Distribution.valueOf(latencyDistribution.trim().toUpperCase(Locale.US));
+        this.latencyMeanMsecs = latencyMeanMsecs;
+        this.latencyTailShape = latencyTailShape;
+        this.journalDirectory = journalDirectory.trim();
+        this.journalSegmentSizeMB = journalSegmentSizeMB;
+        this.journalGroupCommitMsecs = journalGroupCommitMsecs;
+        this.journalSyncWrites = journalSyncWrites;
+        this.journalSnapshotIntervalSecs = journalSnapshotIntervalSecs;
+    }
+
+    @Nonnull
+    public StoreType getStoreType() {
+        return storeType;
+    }
+
+    public int getExpectedSize() {
+        return expectedSize;
+    }
+
+    public int getConcurrencyLevel() {
+        return concurrencyLevel;
+    }
+
+    public int getChangeLogSize() {
+        return changeLogSize;
+    }
+
+    @Nonnull
+    public Profile getLatencyProfile() {
+        return latencyProfile;
+    }
+
+    @Nonnull
+    public Distribution getLatencyDistribution() {
+        return latencyDistribution;
+    }
+
+    public int getLatencyMeanMsecs() {
+        return latencyMeanMsecs;
+    }
+
+    public double getLatencyTailShape() {
+        return latencyTailShape;
+    }
+
+    public boolean isJournalEnabled() {
+        return !journalDirectory.isEmpty();
+    }
+
+    @Nonnull
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public int getJournalSegmentSizeMB() {
+        return journalSegmentSizeMB;
+    }
+
+    public int getJournalGroupCommitMsecs() {
+        return journalGroupCommitMsecs;
+    }
+
+    public boolean isJournalSyncWrites() {
+        return journalSyncWrites;
+    }
+
+    public int getJournalSnapshotIntervalSecs() {
+        return journalSnapshotIntervalSecs;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices;
+
+import akka.actor.Scheduler;
+import akka.dispatch.ExecutionContexts;
+import akka.dispatch.Futures;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+import scala.concurrent.duration.Duration;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class simulates the latency of a database operation. The latency is drawn from a configurable distribution and
+ * can be spent in different ways, to mimic different kinds of workloads:
+ * <pre>
+ *     CPU   - Burn CPU cycles, like a database doing a lot of local work.
+ *     SLEEP - Block the calling thread, like a synchronous call to a remote system.
+ *     WAIT  - Schedule a timer on the Akka scheduler, like an asynchronous call to a remote system.
+ * </pre>
+ * The WAIT profile is only non-blocking for callers that use {@link #delay(ExecutionContext)}. Synchronous callers of
+ * {@link #simulate()} still need to park their thread until the timer fires. The timer releases them on the scheduler
+ * thread itself, rather than on a dispatcher, as the callers may well be all threads of that dispatcher.
+ */
+public final class SimulatedLatency {
+
+    /**
+     * How the latency is spent.
+     */
+    public enum Profile {
+        CPU,
+        SLEEP,
+        WAIT
+    }
+
+    /**
+     * Distribution of the latency.
+     */
+    public enum Distribution {
+        FIXED,          // Always the mean.
+        EXPONENTIAL,    // Exponential distribution with the given mean.
+        PARETO          // Long-tailed Pareto distribution with the given mean and shape.
+    }
+
+    // Samples are capped to this factor times the mean, to avoid single requests hitting a time-out.
+    private static final double MAX_DELAY_FACTOR = 100.0;
+
+    @Nonnull
+    private final Profile profile;
+    @Nonnull
+    private final Distribution distribution;
+    private final double meanNanos;
+    private final double tailShape;
+    @Nonnull
+    private final Scheduler scheduler;
+    @Nonnull
+    private final Runnable busyWork;
+
+    /**
+     * Create a latency simulator.
+     *
+     * @param profile      How the latency is spent.
+     * @param distribution Distribution of the latency.
+     * @param meanMsecs    Mean latency in milliseconds.
+     * @param tailShape    Shape parameter of the Pareto distribution, must be greater than 1. Smaller values produce
+     *                     longer tails.
+     * @param scheduler    Scheduler used for the WAIT profile.
+     * @param busyWork     Small unit of CPU work, repeatedly executed for the CPU profile.
+     */
+    public SimulatedLatency(
+            @Nonnull final Profile profile,
+            @Nonnull final Distribution distribution,
+            final int meanMsecs,
+            final double tailShape,
+            @Nonnull final Scheduler scheduler,
+            @Nonnull final Runnable busyWork) {
+        assert profile != null;
+        assert distribution != null;
+        assert meanMsecs >= 0;
+        assert tailShape > 1.0;
+        assert scheduler != null;
+        assert busyWork != null;
+        this.profile = profile;
+        this.distribution = distribution;
+        this.meanNanos = TimeUnit.MILLISECONDS.toNanos(meanMsecs);
+        this.tailShape = tailShape;
+        this.scheduler = scheduler;
+        this.busyWork = busyWork;
+    }
+
+    @Nonnull
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Spend the latency of a single operation on the calling thread.
+     */
+    public void simulate() {
+        final long nanos = nextDelayNanos();
+        switch (profile) {
+
+            case CPU:
+                final long start = System.nanoTime();
+                do {
+                    busyWork.run();
+                } while ((System.nanoTime() - start) < nanos);
+                break;
+
+            case SLEEP:
+                try {
+                    TimeUnit.NANOSECONDS.sleep(nanos);
+                } catch (final InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+
+            case WAIT:
+                final CountDownLatch latch = new CountDownLatch(1);
+                scheduler.scheduleOnce(Duration.create(nanos, TimeUnit.NANOSECONDS), latch::countDown,
+                        ExecutionContexts.parasitic());
+                try {
+                    latch.await();
+                } catch (final InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+
+            default:
+                assert false;
+        }
+    }
+
+    /**
+     * Spend the latency of a single operation asynchronously. For the WAIT profile no thread is used while waiting.
+     * For the other profiles, the latency is spent on a thread of the given execution context.
+     *
+     * @param executionContext Execution context to spend the latency on.
+     * @return Future which completes when the latency has passed.
+     */
+    @Nonnull
+    public Future<Void> delay(@Nonnull final ExecutionContext executionContext) {
+        assert executionContext != null;
+        if (profile == Profile.WAIT) {
+            final Promise<Void> promise = Futures.promise();
+            scheduler.scheduleOnce(Duration.create(nextDelayNanos(), TimeUnit.NANOSECONDS),
+                    () -> promise.success(null), executionContext);
+            return promise.future();
+        } else {
+            return Futures.future(() -> {
+                simulate();
+                return null;
+            }, executionContext);
+        }
+    }
+
+    /**
+     * Draw a latency from the distribution.
+     *
+     * @return Latency in nanoseconds.
+     */
+    public long nextDelayNanos() {
+        final double uniform = ThreadLocalRandom.current().nextDouble();   // In [0, 1).
+        final double nanos;
+        switch (distribution) {
+
+            case FIXED:
+                nanos = meanNanos;
+                break;
+
+            case EXPONENTIAL:
+                nanos = -meanNanos * Math.log(1.0 - uniform);
+                break;
+
+            case PARETO:
+                // Choose the scale such that the mean of the distribution equals meanNanos.
+                final double scale = (meanNanos * (tailShape - 1.0)) / tailShape;
+                nanos = scale / Math.pow(1.0 - uniform, 1.0 / tailShape);
+                break;
+
+            default:
+                assert false;
+                nanos = meanNanos;
+        }
+        return (long) Math.min(nanos, meanNanos * MAX_DELAY_FACTOR);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices;
+
+import akka.actor.ActorSystem;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.PersonDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This example class implements the REST API resources with plain blocking code, like {@link
+ * SimpleThreadBasedResourceImpl}, but runs the body of every request on a virtual thread of its own. The request thread
+ * is released immediately and a virtual thread that blocks on the database does not hold on to a platform thread.
+ *
+ * Virtual threads require JDK 21 or later. As this project is compiled for Java 8, the executor is created by
+ * reflection. On older JDKs, a cached thread pool of platform threads is used instead.
+ */
+public class VirtualThreadResourceImpl implements VirtualThreadResource {
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadResourceImpl.class);
+
+    @Nonnull
+    private final SimpleThreadBasedResource delegate;
+    @Nonnull
+    private final ExecutorService executor;
+
+    /**
+     * Create the resource.
+     *
+     * @param delegate Blocking implementation of the resource, which is called on a virtual thread.
+     * @param system   Actor system; the executor is shut down when the actor system terminates.
+     */
+    @Inject
+    public VirtualThreadResourceImpl(
+            @Nonnull final SimpleThreadBasedResource delegate,
+            @Nonnull final ActorSystem system) {
+        assert delegate != null;
+        assert system != null;
+
+        // Store the injected values.
+        this.delegate = delegate;
+        this.executor = createExecutor();
+        system.registerOnTermination(executor::shutdown);
+    }
+
+    @Override
+    public void getPersons(
+            @Nullable @QueryParam(PARAM_COUNT) final Integer count,
+            @Nullable @QueryParam(PARAM_CURSOR) final String cursor,
+            @Nullable @QueryParam(PARAM_MIN_AGE) final Integer minAge,
+            @Nullable @QueryParam(PARAM_MAX_AGE) final Integer maxAge,
+            @Nullable @QueryParam(PARAM_NAME_PREFIX) final String namePrefix,
+            @Nullable @QueryParam(PARAM_SINCE) final String since,
+            @Context @Nonnull final Request request,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert request != null;
+        assert response != null;
+        execute(response, () -> delegate.getPersons(count, cursor, minAge, maxAge, namePrefix, since, request,
+                response));
+    }
+
+    @Override
+    public void getPerson(
+            @Nonnull @PathParam(PARAM_PERSON_ID) final String personId,
+            @Context @Nonnull final Request request,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert personId != null;
+        assert request != null;
+        assert response != null;
+        execute(response, () -> delegate.getPerson(personId, request, response));
+    }
+
+    @Override
+    public void createPerson(
+            @Nullable final PersonDTO personDTO,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert response != null;
+        execute(response, () -> delegate.createPerson(personDTO, response));
+    }
+
+    @Override
+    public void removePerson(
+            @Nonnull @PathParam(PARAM_PERSON_ID) final String personId,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert personId != null;
+        assert response != null;
+        execute(response, () -> delegate.removePerson(personId, response));
+    }
+
+    /**
+     * Run the body of a request on a virtual thread. Exceptions, such as validation errors, are passed to the
+     * response, which maps them to an HTTP status like any other exception.
+     */
+    private void execute(@Nonnull final AsyncResponse response, @Nonnull final Runnable body) {
+        executor.execute(() -> {
+            try {
+                body.run();
+            } catch (final Throwable e) {
+                LOG.debug("execute: request failed, exception={}", e.toString());
+                response.resume(e);
+            }
+        });
+    }
+
+    @Nonnull
+    private static ExecutorService createExecutor() {
+        try {
+            final ExecutorService executor = (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOG.info("createExecutor: using virtual threads");
+            return executor;
+        } catch (final ReflectiveOperationException ignored) {
+            LOG.warn("createExecutor: virtual threads not available (requires JDK 21), using platform threads");
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.tomtom.speedtools.apivalidation.ApiDTO;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+
+/**
+ * This class contains a binder for the result of a single item of a batch request. The status is the HTTP status code
+ * the corresponding single request would have returned, such as 200 (OK), 204 (deleted) or 404 (not found).
+ */
+@JsonInclude(Include.NON_EMPTY)
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class BatchItemDTO extends ApiDTO {
+
+    private static final int STATUS_MIN = 100;
+    private static final int STATUS_MAX = 599;
+
+    @Nullable
+    private String id;
+    @Nullable
+    private Integer status;
+    @Nullable
+    private PersonDTO person;
+
+    @Override
+    public void validate() {
+        validator().start();
+        validator().checkUid(true, "id", id);
+        validator().checkInteger(true, "status", status, STATUS_MIN, STATUS_MAX);
+        validator().checkNotNullAndValidate(false, "person", person);
+        validator().done();
+    }
+
+    public BatchItemDTO(
+            @Nonnull final String id,
+            final int status,
+            @Nullable final PersonDTO person) {
+        super();
+        setId(id);
+        setStatus(status);
+        setPerson(person);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    @Deprecated
+    private BatchItemDTO() {
+        // Default constructor required by JAX-B.
+        super();
+    }
+
+    @XmlElement(name = "id", required = true)
+    @Nonnull
+    public String getId() {
+        beforeGet();
+        assert id != null;
+        return id;
+    }
+
+    public void setId(@Nullable final String id) {
+        beforeSet();
+        this.id = id;
+    }
+
+    @XmlElement(name = "status", required = true)
+    @Nonnull
+    public Integer getStatus() {
+        beforeGet();
+        assert status != null;
+        return status;
+    }
+
+    public void setStatus(@Nullable final Integer status) {
+        beforeSet();
+        this.status = status;
+    }
+
+    @XmlElement(name = "person", required = false)
+    @Nullable
+    public PersonDTO getPerson() {
+        beforeGet();
+        return person;
+    }
+
+    public void setPerson(@Nullable final PersonDTO person) {
+        beforeSet();
+        this.person = person;
+    }
+
+    @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        return EqualsBuilder.reflectionEquals(this, obj, false);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
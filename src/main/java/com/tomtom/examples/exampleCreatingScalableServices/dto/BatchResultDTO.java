@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.tomtom.speedtools.apivalidation.ApiDTO;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+/**
+ * This class contains a binder for the results of a batch request, one {@link BatchItemDTO} per item. Every item holds
+ * the ID it refers to, so results can be matched with the request.
+ */
+@JsonInclude(Include.NON_EMPTY)
+@XmlRootElement(name = "batch")
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class BatchResultDTO extends ApiDTO {
+
+    @Nullable
+    private List<BatchItemDTO> results;
+
+    @Override
+    public void validate() {
+        validator().start();
+        validator().checkNotNullAndValidateAll(false, "results", results);
+        validator().done();
+    }
+
+    public BatchResultDTO(
+            @Nullable final List<BatchItemDTO> results) {
+        super();
+        setResults(results);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    @Deprecated
+    private BatchResultDTO() {
+        // Default constructor required by JAX-B.
+        super();
+    }
+
+    @XmlElement(name = "results", required = true)
+    @Nonnull
+    public List<BatchItemDTO> getResults() {
+        beforeGet();
+        assert results != null;
+        return results;
+    }
+
+    public void setResults(@Nullable final List<BatchItemDTO> results) {
+        beforeSet();
+        this.results = results;
+    }
+
+    @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        return EqualsBuilder.reflectionEquals(this, obj, false);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.tomtom.speedtools.apivalidation.ApiDTO;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.Set;
+
+/**
+ * This class contains a binder for the person IDs added and removed since a version of the IDs. The version of the
+ * changes can be used as "since" in the next request.
+ */
+@JsonInclude(Include.NON_EMPTY)
+@XmlRootElement(name = "changes")
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class PersonChangesDTO extends ApiDTO {
+
+    @Nullable
+    private String version;
+    @Nullable
+    private Set<IdDTO> added;
+    @Nullable
+    private Set<IdDTO> removed;
+
+    @Override
+    public void validate() {
+        validator().start();
+        validator().checkNotNull(true, "version", version);
+        validator().checkNotNullAndValidateAll(false, "added", added);
+        validator().checkNotNullAndValidateAll(false, "removed", removed);
+        validator().done();
+    }
+
+    public PersonChangesDTO(
+            @Nonnull final String version,
+            @Nullable final Set<IdDTO> added,
+            @Nullable final Set<IdDTO> removed) {
+        super();
+        setVersion(version);
+        setAdded(added);
+        setRemoved(removed);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    @Deprecated
+    private PersonChangesDTO() {
+        // Default constructor required by JAX-B.
+        super();
+    }
+
+    @XmlElement(name = "version", required = true)
+    @Nonnull
+    public String getVersion() {
+        beforeGet();
+        assert version != null;
+        return version;
+    }
+
+    public void setVersion(@Nullable final String version) {
+        beforeSet();
+        this.version = version;
+    }
+
+    @XmlElement(name = "added", required = true)
+    @Nonnull
+    public Set<IdDTO> getAdded() {
+        beforeGet();
+        assert added != null;
+        return added;
+    }
+
+    public void setAdded(@Nullable final Set<IdDTO> added) {
+        beforeSet();
+        this.added = added;
+    }
+
+    @XmlElement(name = "removed", required = true)
+    @Nonnull
+    public Set<IdDTO> getRemoved() {
+        beforeGet();
+        assert removed != null;
+        return removed;
+    }
+
+    public void setRemoved(@Nullable final Set<IdDTO> removed) {
+        beforeSet();
+        this.removed = removed;
+    }
+
+    @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        return EqualsBuilder.reflectionEquals(this, obj, false);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.tomtom.speedtools.apivalidation.ApiDTO;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+/**
+ * This class contains a binder for lists of persons, used in batch requests. The persons are validated all at once, so
+ * all violations are reported in a single error document.
+ */
+@JsonInclude(Include.NON_EMPTY)
+@XmlRootElement(name = "persons")
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class PersonsDTO extends ApiDTO {
+
+    @Nullable
+    private List<PersonDTO> personDTOs;
+
+    @Override
+    public void validate() {
+        validator().start();
+        validator().checkNotNullAndValidateAll(true, "persons", personDTOs);
+        validator().done();
+    }
+
+    public PersonsDTO(
+            @Nullable final List<PersonDTO> personDTOs) {
+        super();
+        setPersonDTOs(personDTOs);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    @Deprecated
+    private PersonsDTO() {
+        // Default constructor required by JAX-B.
+        super();
+    }
+
+    @XmlElement(name = "persons", required = true)
+    @Nonnull
+    public List<PersonDTO> getPersonDTOs() {
+        beforeGet();
+        assert personDTOs != null;
+        return personDTOs;
+    }
+
+    public void setPersonDTOs(@Nullable final List<PersonDTO> personDTOs) {
+        beforeSet();
+        this.personDTOs = personDTOs;
+    }
+
+    @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        return EqualsBuilder.reflectionEquals(this, obj, false);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
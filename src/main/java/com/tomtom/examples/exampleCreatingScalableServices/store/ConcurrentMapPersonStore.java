@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.store;
+
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Straightforward {@link PersonStore} on top of a {@link ConcurrentHashMap}. Every entry costs a map node, a {@link
+ * Uid} key and the {@link Person} object itself, which makes this store simple, but relatively expensive for large
+ * numbers of persons. See {@link StripedPersonStore} for a more compact alternative, which also supports efficient
+ * keyset pagination.
+ */
+public final class ConcurrentMapPersonStore implements PersonStore {
+
+    @Nonnull
+    private final ConcurrentHashMap<Uid<Person>, Person> map;
+
+    public ConcurrentMapPersonStore(final int expectedSize) {
+        super();
+        this.map = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    @Nullable
+    @Override
+    public Person put(@Nonnull final Person person) {
+        assert person != null;
+        return map.put(person.getId(), person);
+    }
+
+    @Nullable
+    @Override
+    public Person putIfAbsent(@Nonnull final Person person) {
+        assert person != null;
+        return map.putIfAbsent(person.getId(), person);
+    }
+
+    @Nullable
+    @Override
+    public Person get(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        return map.get(id);
+    }
+
+    @Nullable
+    @Override
+    public Person remove(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        return map.remove(id);
+    }
+
+    @Override
+    public boolean containsKey(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        return map.containsKey(id);
+    }
+
+    @Nonnull
+    @Override
+    public Enumeration<Uid<Person>> keys() {
+        return map.keys();
+    }
+
+    /**
+     * A hash map has no order, so this method needs to scan all keys, keeping the smallest ones in a bounded heap. It
+     * takes O(n log count) time for every page.
+     */
+    @Nonnull
+    @Override
+    public List<Uid<Person>> keysAfter(@Nullable final Uid<Person> after, final int count) {
+        assert count >= 0;
+        final PersonKey afterKey = (after == null) ? null : PersonKey.of(after);
+
+        // Keep the smallest keys in a max-heap.
+        final PriorityQueue<PersonKey> heap = new PriorityQueue<>(Math.min(count, 1024) + 1,
+                Collections.reverseOrder());
+        for (final Uid<Person> id : map.keySet()) {
+            final PersonKey key = PersonKey.of(id);
+            if ((afterKey == null) || (key.compareTo(afterKey) > 0)) {
+                if (heap.size() < count) {
+                    heap.add(key);
+                } else if ((count > 0) && (key.compareTo(heap.peek()) < 0)) {
+                    heap.poll();
+                    heap.add(key);
+                }
+            }
+        }
+        final List<PersonKey> keys = new ArrayList<>(heap);
+        Collections.sort(keys);
+        final List<Uid<Person>> result = new ArrayList<>(keys.size());
+        for (final PersonKey key : keys) {
+            result.add(key.toUid());
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+}
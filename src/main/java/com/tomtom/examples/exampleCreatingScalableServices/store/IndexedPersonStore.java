@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.store;
+
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * {@link PersonStore} decorator which maintains secondary indexes on the name and age of persons, to find persons by
+ * age range and name prefix without scanning the whole store.
+ * <p>
+ * The indexes are concurrent skip lists, which can be modified by many writers at the same time. A mutation of the
+ * store and the index updates for it are made under a lock for the ID, taken from a fixed set of lock stripes, so the
+ * indexes always match the store for every ID, while writers of different IDs rarely block each other. Readers never
+ * lock.
+ * <p>
+ * Persons without an age are not in the age index.
+ * <p>
+ * The IDs added and removed are logged in a {@link PersonChangeLog}, under the same lock as the index updates.
+ */
+public final class IndexedPersonStore implements PersonStore {
+
+    @Nonnull
+    private final PersonStore delegate;
+    @Nonnull
+    private final ConcurrentSkipListSet<AgeEntry> ageIndex = new ConcurrentSkipListSet<>();
+    @Nonnull
+    private final ConcurrentSkipListSet<NameEntry> nameIndex = new ConcurrentSkipListSet<>();
+    @Nonnull
+    private final Object[] locks;
+    @Nonnull
+    private final PersonChangeLog changeLog;
+
+    /**
+     * Create an indexed store. The indexes are built from the current contents of the underlying store, so the
+     * underlying store must not be modified while this constructor runs, nor directly afterwards.
+     *
+     * @param delegate      Underlying store.
+     * @param nrLocks       Number of lock stripes.
+     * @param changeLogSize Number of changes kept in the change log.
+     */
+    public IndexedPersonStore(
+            @Nonnull final PersonStore delegate,
+            final int nrLocks,
+            final int changeLogSize) {
+        super();
+        assert delegate != null;
+        assert nrLocks > 0;
+        assert changeLogSize > 0;
+        this.delegate = delegate;
+        this.changeLog = new PersonChangeLog(changeLogSize);
+        this.locks = new Object[nrLocks];
+        for (int i = 0; i < nrLocks; ++i) {
+            locks[i] = new Object();
+        }
+
+        final Enumeration<Uid<Person>> e = delegate.keys();
+        while (e.hasMoreElements()) {
+            final Person person = delegate.get(e.nextElement());
+            if (person != null) {
+                addToIndexes(person);
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public Person put(@Nonnull final Person person) {
+        assert person != null;
+        synchronized (lockFor(person.getId())) {
+            final Person previous = delegate.put(person);
+            if (previous != null) {
+                removeFromIndexes(previous);
+            } else {
+                changeLog.added(person.getId());
+            }
+            addToIndexes(person);
+            return previous;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Person putIfAbsent(@Nonnull final Person person) {
+        assert person != null;
+        synchronized (lockFor(person.getId())) {
+            final Person existing = delegate.putIfAbsent(person);
+            if (existing == null) {
+                addToIndexes(person);
+                changeLog.added(person.getId());
+            }
+            return existing;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Person get(@Nonnull final Uid<Person> id) {
+        return delegate.get(id);
+    }
+
+    @Nullable
+    @Override
+    public Person remove(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        synchronized (lockFor(id)) {
+            final Person removed = delegate.remove(id);
+            if (removed != null) {
+                removeFromIndexes(removed);
+                changeLog.removed(id);
+            }
+            return removed;
+        }
+    }
+
+    @Override
+    public boolean containsKey(@Nonnull final Uid<Person> id) {
+        return delegate.containsKey(id);
+    }
+
+    @Nonnull
+    @Override
+    public Enumeration<Uid<Person>> keys() {
+        return delegate.keys();
+    }
+
+    @Nonnull
+    @Override
+    public List<Uid<Person>> keysAfter(@Nullable final Uid<Person> after, final int count) {
+        return delegate.keysAfter(after, count);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    /**
+     * Get the log of IDs added and removed. Replacing a person with the same ID is not a change of the IDs, so it is
+     * not logged.
+     *
+     * @return Change log.
+     */
+    @Nonnull
+    public PersonChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * Find persons by age and/or name. If a name prefix is given, the name index is used and the ages of the matching
+     * entries are checked. Otherwise, the age index is used. Like {@link #keys()}, this is weakly consistent.
+     *
+     * @param minAge     Minimum age, inclusive, or null if there is no minimum.
+     * @param maxAge     Maximum age, inclusive, or null if there is no maximum.
+     * @param namePrefix Prefix of the name, case-sensitive, or null if any name matches.
+     * @param count      Maximum number of IDs to return.
+     * @return Person IDs, ordered by name if a name prefix was given, or by age otherwise.
+     */
+    @Nonnull
+    public List<Uid<Person>> find(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            final int count) {
+        assert count >= 0;
+        final List<Uid<Person>> result = new ArrayList<>(Math.min(count, 1024));
+        if (namePrefix != null) {
+            for (final NameEntry entry : nameIndex.tailSet(new NameEntry(namePrefix, null, null), true)) {
+                if ((result.size() >= count) || !entry.name.startsWith(namePrefix)) {
+                    break;
+                }
+                if (matchesAge(entry.age, minAge, maxAge)) {
+                    result.add(entry.key.toUid());
+                }
+            }
+        } else {
+            NavigableSet<AgeEntry> range = ageIndex;
+            if (minAge != null) {
+                range = range.tailSet(new AgeEntry(minAge, null), true);
+            }
+            if ((maxAge != null) && (maxAge < Integer.MAX_VALUE)) {
+                range = range.headSet(new AgeEntry(maxAge + 1, null), false);
+            }
+            for (final AgeEntry entry : range) {
+                if (result.size() >= count) {
+                    break;
+                }
+                result.add(entry.key.toUid());
+            }
+        }
+        return result;
+    }
+
+    private static boolean matchesAge(
+            @Nullable final Integer age,
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge) {
+        if ((minAge == null) && (maxAge == null)) {
+            return true;
+        }
+        return (age != null) && ((minAge == null) || (age >= minAge)) && ((maxAge == null) || (age <= maxAge));
+    }
+
+    private void addToIndexes(@Nonnull final Person person) {
+        final PersonKey key = PersonKey.of(person.getId());
+        nameIndex.add(new NameEntry(person.getName(), person.getAge(), key));
+        if (person.getAge() != null) {
+            ageIndex.add(new AgeEntry(person.getAge(), key));
+        }
+    }
+
+    private void removeFromIndexes(@Nonnull final Person person) {
+        final PersonKey key = PersonKey.of(person.getId());
+        nameIndex.remove(new NameEntry(person.getName(), person.getAge(), key));
+        if (person.getAge() != null) {
+            ageIndex.remove(new AgeEntry(person.getAge(), key));
+        }
+    }
+
+    @Nonnull
+    private Object lockFor(@Nonnull final Uid<Person> id) {
+        return locks[(id.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    /**
+     * Compare keys of index entries. A null key is used for range bounds and sorts before all other keys.
+     */
+    private static int compareKeys(@Nullable final PersonKey key1, @Nullable final PersonKey key2) {
+        if (key1 == null) {
+            return (key2 == null) ? 0 : -1;
+        }
+        return (key2 == null) ? 1 : key1.compareTo(key2);
+    }
+
+    /**
+     * Age index entry, ordered by age and key.
+     */
+    private static final class AgeEntry implements Comparable<AgeEntry> {
+        private final int age;
+        @Nullable
+        private final PersonKey key;
+
+        AgeEntry(final int age, @Nullable final PersonKey key) {
+            this.age = age;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(@Nonnull final AgeEntry other) {
+            final int result = Integer.compare(age, other.age);
+            return (result != 0) ? result : compareKeys(key, other.key);
+        }
+
+        @Override
+        public boolean equals(@Nullable final Object obj) {
+            return (obj instanceof AgeEntry) && (compareTo((AgeEntry) obj) == 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * age) + ((key == null) ? 0 : key.hashCode());
+        }
+    }
+
+    /**
+     * Name index entry, ordered by name and key. The age is included, so a name prefix and an age range can be
+     * matched without looking up the person.
+     */
+    private static final class NameEntry implements Comparable<NameEntry> {
+        @Nonnull
+        private final String name;
+        @Nullable
+        private final Integer age;
+        @Nullable
+        private final PersonKey key;
+
+        NameEntry(@Nonnull final String name, @Nullable final Integer age, @Nullable final PersonKey key) {
+            this.name = name;
+            this.age = age;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(@Nonnull final NameEntry other) {
+            final int result = name.compareTo(other.name);
+            return (result != 0) ? result : compareKeys(key, other.key);
+        }
+
+        @Override
+        public boolean equals(@Nullable final Object obj) {
+            return (obj instanceof NameEntry) && (compareTo((NameEntry) obj) == 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * name.hashCode()) + ((key == null) ? 0 : key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.store;
+
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * {@link PersonStore} decorator which records every mutation in a {@link PersonJournal}. Reads go straight to the
+ * underlying store.
+ * <p>
+ * A mutation and its journal record are made under a lock for the ID, taken from a fixed set of lock stripes, so the
+ * journal order for an ID always matches the order in which the store was modified. The record is appended before the
+ * store is modified, so a mutation that cannot be journaled, for example because the journal is closed, leaves the
+ * store unchanged. Writers that wait for durability
+ * do so after releasing the lock, so they share group commits with the other writers. Locks of the underlying store,
+ * such as the index locks of an {@link IndexedPersonStore}, are released before as well, so this store must be the
+ * outermost decorator.
+ */
+public final class JournalingPersonStore implements PersonStore {
+
+    @Nonnull
+    private final PersonStore delegate;
+    @Nonnull
+    private final PersonJournal journal;
+    private final boolean syncWrites;
+    @Nonnull
+    private final Object[] locks;
+
+    /**
+     * Create a journaling store.
+     *
+     * @param delegate   Underlying store, already recovered from the journal.
+     * @param journal    Journal to append to.
+     * @param syncWrites If true, mutations return only after their record has been forced to disk. Otherwise, they
+     *                   survive a crash of the process, but records appended after the last group commit may be lost
+     *                   if the operating system crashes.
+     * @param nrLocks    Number of lock stripes.
+     */
+    public JournalingPersonStore(
+            @Nonnull final PersonStore delegate,
+            @Nonnull final PersonJournal journal,
+            final boolean syncWrites,
+            final int nrLocks) {
+        super();
+        assert delegate != null;
+        assert journal != null;
+        assert nrLocks > 0;
+        this.delegate = delegate;
+        this.journal = journal;
+        this.syncWrites = syncWrites;
+        this.locks = new Object[nrLocks];
+        for (int i = 0; i < nrLocks; ++i) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Person put(@Nonnull final Person person) {
+        assert person != null;
+        final Person previous;
+        final long ticket;
+        synchronized (lockFor(person.getId())) {
+            ticket = journal.appendPut(person);
+            previous = delegate.put(person);
+        }
+        awaitCommit(ticket);
+        return previous;
+    }
+
+    @Nullable
+    @Override
+    public Person putIfAbsent(@Nonnull final Person person) {
+        assert person != null;
+        final long ticket;
+        synchronized (lockFor(person.getId())) {
+
+            // All mutations of the ID hold the lock, so the person cannot be stored between the check and the put.
+            final Person existing = delegate.get(person.getId());
+            if (existing != null) {
+                return existing;
+            }
+            ticket = journal.appendPut(person);
+            delegate.putIfAbsent(person);
+        }
+        awaitCommit(ticket);
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Person get(@Nonnull final Uid<Person> id) {
+        return delegate.get(id);
+    }
+
+    @Nullable
+    @Override
+    public Person remove(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        final Person removed;
+        final long ticket;
+        synchronized (lockFor(id)) {
+            if (!delegate.containsKey(id)) {
+                return null;
+            }
+            ticket = journal.appendRemove(id);
+            removed = delegate.remove(id);
+        }
+        awaitCommit(ticket);
+        return removed;
+    }
+
+    @Override
+    public boolean containsKey(@Nonnull final Uid<Person> id) {
+        return delegate.containsKey(id);
+    }
+
+    @Nonnull
+    @Override
+    public Enumeration<Uid<Person>> keys() {
+        return delegate.keys();
+    }
+
+    @Nonnull
+    @Override
+    public List<Uid<Person>> keysAfter(@Nullable final Uid<Person> after, final int count) {
+        return delegate.keysAfter(after, count);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    private void awaitCommit(final long ticket) {
+        if (syncWrites) {
+            journal.awaitCommit(ticket);
+        }
+    }
+
+    @Nonnull
+    private Object lockFor(@Nonnull final Uid<Person> id) {
+        return locks[(id.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+}
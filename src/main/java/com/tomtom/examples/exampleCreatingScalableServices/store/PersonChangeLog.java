@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.store;
+
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Log of the IDs added to and removed from a {@link PersonStore}, numbered by a modification sequence which increases
+ * by one for every change. The log keeps the last changes in a ring buffer of fixed size, so clients can ask for the
+ * changes since a recent sequence number, rather than for all IDs.
+ *
+ * Clients see a version rather than the bare sequence: a random epoch, chosen when the log is created, followed by the
+ * sequence (see {@link #getVersion()}). The sequence restarts at 0 in every run, so a version of an earlier run is
+ * recognized by its epoch and rejected, rather than misinterpreted as a version of the current run.
+ *
+ * Changes are appended under a single lock. The critical section only stores a few primitives, so it hardly limits
+ * concurrency of the store.
+ */
+public final class PersonChangeLog {
+
+    // Separates the epoch from the sequence in a version.
+    private static final char SEPARATOR = '-';
+
+    private final long[] mostSigBits;
+    private final long[] leastSigBits;
+    private final boolean[] added;
+
+    // Random epoch of this log, as it appears in versions.
+    @Nonnull
+    private final String epoch;
+
+    // Sequence of the last change. Guarded by this.
+    private long seq;
+
+    /**
+     * Create a change log.
+     *
+     * @param capacity Maximum number of changes kept.
+     */
+    public PersonChangeLog(final int capacity) {
+        super();
+        assert capacity > 0;
+        this.mostSigBits = new long[capacity];
+        this.leastSigBits = new long[capacity];
+        this.added = new boolean[capacity];
+        this.epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        this.seq = 0;
+    }
+
+    /**
+     * Return whether a string has the format of a version, which does not mean it is a version of this log.
+     *
+     * @param version String.
+     * @return True if the string is "epoch-sequence", with a hexadecimal epoch and a decimal sequence.
+     */
+    public static boolean isVersion(@Nonnull final String version) {
+        assert version != null;
+        final int separator = version.indexOf(SEPARATOR);
+        if ((separator < 1) || (separator > 16) || (separator == (version.length() - 1))) {
+            return false;
+        }
+        for (int i = 0; i < version.length(); ++i) {
+            final char ch = version.charAt(i);
+            final boolean valid = (i < separator) ? (Character.digit(ch, 16) >= 0) :
+                    ((i == separator) || ((ch >= '0') && (ch <= '9')));
+            if (!valid) {
+                return false;
+            }
+        }
+        return (version.length() - separator - 1) <= 18;
+    }
+
+    /**
+     * Log that an ID was added. Must be called while the ID cannot be changed concurrently, so the changes of an ID
+     * are logged in the order in which they were made.
+     *
+     * @param id Person ID.
+     */
+    public void added(@Nonnull final Uid<Person> id) {
+        append(id, true);
+    }
+
+    /**
+     * Log that an ID was removed. See {@link #added(Uid)}.
+     *
+     * @param id Person ID.
+     */
+    public void removed(@Nonnull final Uid<Person> id) {
+        append(id, false);
+    }
+
+    /**
+     * Return the current version, which identifies the last change.
+     *
+     * @return Version, as "epoch-sequence".
+     */
+    @Nonnull
+    public String getVersion() {
+        final long last;
+        synchronized (this) {
+            last = seq;
+        }
+        return version(last);
+    }
+
+    /**
+     * Return the net changes since a version. An ID which was added and removed again since the version is not
+     * returned at all.
+     *
+     * @param since Version returned earlier. See {@link #isVersion(String)}.
+     * @return Changes, or null if the changes since the version are no longer available, or the version is not from
+     * this log, for example because it is from an earlier run.
+     */
+    @Nullable
+    public Changes changesSince(@Nonnull final String since) {
+        assert since != null;
+        assert isVersion(since);
+        final int separator = since.indexOf(SEPARATOR);
+        if (!epoch.equals(since.substring(0, separator))) {
+            return null;
+        }
+        final long sinceSeq = Long.parseLong(since.substring(separator + 1));
+        final long[] msbs;
+        final long[] lsbs;
+        final boolean[] adds;
+        final long last;
+        synchronized (this) {
+            final long oldest = Math.max(0, seq - added.length);
+            if ((sinceSeq < oldest) || (sinceSeq > seq)) {
+                return null;
+            }
+            last = seq;
+            final int n = (int) (seq - sinceSeq);
+            msbs = new long[n];
+            lsbs = new long[n];
+            adds = new boolean[n];
+            for (int i = 0; i < n; ++i) {
+                final int index = index(sinceSeq + 1 + i);
+                msbs[i] = mostSigBits[index];
+                lsbs[i] = leastSigBits[index];
+                adds[i] = added[index];
+            }
+        }
+
+        // An ID existed at "since" if its first change was a removal, and exists now if its last change was an add.
+        final Map<PersonKey, boolean[]> firstAndLast = new LinkedHashMap<>();
+        for (int i = 0; i < msbs.length; ++i) {
+            final PersonKey key = new PersonKey(msbs[i], lsbs[i]);
+            final boolean[] change = firstAndLast.get(key);
+            if (change == null) {
+                firstAndLast.put(key, new boolean[]{adds[i], adds[i]});
+            } else {
+                change[1] = adds[i];
+            }
+        }
+        final List<Uid<Person>> addedIds = new ArrayList<>();
+        final List<Uid<Person>> removedIds = new ArrayList<>();
+        for (final Map.Entry<PersonKey, boolean[]> entry : firstAndLast.entrySet()) {
+            final boolean existedBefore = !entry.getValue()[0];
+            final boolean existsNow = entry.getValue()[1];
+            if (!existedBefore && existsNow) {
+                addedIds.add(entry.getKey().toUid());
+            } else if (existedBefore && !existsNow) {
+                removedIds.add(entry.getKey().toUid());
+            }
+        }
+        return new Changes(version(last), addedIds, removedIds);
+    }
+
+    @Nonnull
+    private String version(final long s) {
+        return epoch + SEPARATOR + s;
+    }
+
+    private void append(@Nonnull final Uid<Person> id, final boolean isAdd) {
+        assert id != null;
+        final UUID uuid = PersonKeys.toUUID(id);
+        synchronized (this) {
+            ++seq;
+            final int index = index(seq);
+            mostSigBits[index] = uuid.getMostSignificantBits();
+            leastSigBits[index] = uuid.getLeastSignificantBits();
+            added[index] = isAdd;
+        }
+    }
+
+    private int index(final long s) {
+        return (int) Math.floorMod(s, (long) added.length);
+    }
+
+    /**
+     * Net changes since a version.
+     */
+    public static final class Changes {
+        @Nonnull
+        private final String version;
+        @Nonnull
+        private final List<Uid<Person>> added;
+        @Nonnull
+        private final List<Uid<Person>> removed;
+
+        Changes(
+                @Nonnull final String version,
+                @Nonnull final List<Uid<Person>> added,
+                @Nonnull final List<Uid<Person>> removed) {
+            this.version = version;
+            this.added = Collections.unmodifiableList(added);
+            this.removed = Collections.unmodifiableList(removed);
+        }
+
+        /**
+         * Return the version up to which the changes are included.
+         *
+         * @return Version.
+         */
+        @Nonnull
+        public String getVersion() {
+            return version;
+        }
+
+        @Nonnull
+        public List<Uid<Person>> getAdded() {
+            return added;
+        }
+
+        @Nonnull
+        public List<Uid<Person>> getRemoved() {
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,585 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.store;
+
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log for a {@link PersonStore}, with periodic compacted snapshots.
+ * <p>
+ * Mutations are appended to memory-mapped journal segments. Copying a record into the mapping makes it survive a crash
+ * of the process, as the pages belong to the operating system. A background thread forces the mapping to disk every
+ * group commit interval, which makes all records appended since the previous commit durable at once. Writers that need
+ * durability can wait for the commit covering their record with {@link #awaitCommit(long)}.
+ * <p>
+ * A snapshot first rolls the journal over to a new segment and then writes all entries of the store to a new snapshot
+ * file, which replaces the previous one atomically. Older segments are deleted afterwards. Recovery loads the snapshot
+ * and replays all segments from the one the snapshot started. Replaying is idempotent, so records that are both in the
+ * snapshot and in a replayed segment do no harm, provided records for the same ID are appended in the order the store
+ * was modified (see {@link JournalingPersonStore}).
+ * <p>
+ * Every record is framed as: payload length (int), CRC32 of the payload (int), payload. The payload is: operation
+ * (byte), most and least significant bits of the ID (2 longs), age (int) and the UTF-8 encoded name (remaining bytes).
+ * A length of 0 marks the end of a segment.
+ * <p>
+ * The journal has a single writer: appends are serialized by one lock, which keeps the records of a segment in the
+ * order the store was modified without any coordination between writers. Records are encoded and checksummed before
+ * the lock is taken, so it is only held to copy a record into the mapping. The journal is not striped, as the
+ * throughput of a single memory copy per record is far above what the simulated database can produce.
+ * <p>
+ * A segment is unmapped as soon as it is retired, rather than when its buffer happens to be garbage collected, so the
+ * address space and page cache of old segments are released right away. This is done through the internal
+ * {@code sun.misc.Unsafe.invokeCleaner} of Java 9 and later; on older Java versions, the mapping is released by the
+ * garbage collector.
+ */
+public final class PersonJournal implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(PersonJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String SNAPSHOT_TMP_FILE = "snapshot.dat.tmp";
+    private static final int SNAPSHOT_MAGIC = 0x50534e31;   // "PSN1".
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int NO_AGE = Integer.MIN_VALUE;
+
+    // Maximum time to wait on close for a group commit or snapshot in progress.
+    private static final int CLOSE_TIMEOUT_SECS = 60;
+
+    private static final int FRAME_HEADER_SIZE = 4 + 4;
+    private static final int PAYLOAD_HEADER_SIZE = 1 + 8 + 8 + 4;
+
+    // Unsafe instance and its invokeCleaner method, to unmap retired segments, or null if not available.
+    @Nullable
+    private static final Object UNSAFE;
+    @Nullable
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("PersonJournal: Cannot unmap journal segments, leaving it to the garbage collector", e);
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    @Nonnull
+    private final File directory;
+    private final int segmentSize;
+    private final int groupCommitMsecs;
+    @Nonnull
+    private final ScheduledExecutorService executor;
+
+    // Guards the current segment and the append counter.
+    @Nonnull
+    private final Object appendLock = new Object();
+    @Nullable
+    private FileChannel channel;
+    @Nullable
+    private MappedByteBuffer buffer;
+    private long segmentSeq;
+    private long appended;
+    private boolean closed;
+
+    // Guards forcing and unmapping of segments, so a segment is never forced after it was unmapped. The buffer of the
+    // current segment is only replaced while both this lock and the append lock are held. Taken after the append lock.
+    @Nonnull
+    private final Object forceLock = new Object();
+
+    // Guards the commit counter.
+    @Nonnull
+    private final Object commitMonitor = new Object();
+    private long committed;
+
+    /**
+     * Create a journal. Call {@link #recover(PersonStore)} before appending records.
+     *
+     * @param directory        Directory for journal segments and snapshots. Created if it does not exist.
+     * @param segmentSize      Size of a journal segment, in bytes.
+     * @param groupCommitMsecs Interval between forcing the journal to disk, in milliseconds.
+     */
+    public PersonJournal(
+            @Nonnull final File directory,
+            final int segmentSize,
+            final int groupCommitMsecs) {
+        super();
+        assert directory != null;
+        assert segmentSize > (FRAME_HEADER_SIZE + PAYLOAD_HEADER_SIZE);
+        assert groupCommitMsecs > 0;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.groupCommitMsecs = groupCommitMsecs;
+        this.executor = Executors.newScheduledThreadPool(2, runnable -> {
+            final Thread thread = new Thread(runnable, "PersonJournal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Restore the contents of a store from the latest snapshot and journal segments, and open a new segment for
+     * appending. The time taken is logged.
+     *
+     * @param target Store to restore into; normally empty.
+     * @throws UncheckedIOException If the journal could not be read.
+     */
+    public void recover(@Nonnull final PersonStore target) {
+        assert target != null;
+        final long start = System.nanoTime();
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create journal directory " + directory);
+            }
+
+            // Load snapshot, if any.
+            long firstSeq = 0;
+            long nrSnapshotRecords = 0;
+            final File snapshotFile = new File(directory, SNAPSHOT_FILE);
+            if (snapshotFile.isFile()) {
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                    if (in.readInt() != SNAPSHOT_MAGIC) {
+                        throw new IOException("Not a snapshot file: " + snapshotFile);
+                    }
+                    firstSeq = in.readLong();
+                    int length = in.readInt();
+                    while (length > 0) {
+                        final int crc = in.readInt();
+                        final byte[] payload = new byte[length];
+                        in.readFully(payload);
+                        if (crc != crc(payload)) {
+                            throw new IOException("Snapshot is corrupt: " + snapshotFile);
+                        }
+                        apply(ByteBuffer.wrap(payload), target);
+                        ++nrSnapshotRecords;
+                        length = in.readInt();
+                    }
+                }
+            }
+
+            // Replay segments.
+            long nrJournalRecords = 0;
+            long lastSeq = firstSeq - 1;
+            for (final long seq : listSegments()) {
+                if (seq >= firstSeq) {
+                    nrJournalRecords += replay(segmentFile(seq), target);
+                }
+                lastSeq = Math.max(lastSeq, seq);
+            }
+
+            // Never append to a recovered segment; its tail may be torn.
+            synchronized (appendLock) {
+                openSegment(lastSeq + 1);
+            }
+            LOG.info("recover: Recovered {} persons ({} snapshot records, {} journal records) from {} in {} ms",
+                    target.size(), nrSnapshotRecords, nrJournalRecords, directory,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Cannot recover journal from " + directory, e);
+        }
+    }
+
+    /**
+     * Start group commits and periodic snapshots.
+     *
+     * @param source               Store to snapshot.
+     * @param snapshotIntervalSecs Interval between snapshots, in seconds.
+     */
+    public void start(@Nonnull final PersonStore source, final int snapshotIntervalSecs) {
+        assert source != null;
+        assert snapshotIntervalSecs > 0;
+        executor.scheduleWithFixedDelay(this::commit, groupCommitMsecs, groupCommitMsecs, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(source);
+            } catch (final RuntimeException e) {
+                LOG.error("start: Snapshot failed", e);
+            }
+        }, snapshotIntervalSecs, snapshotIntervalSecs, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Append a put record.
+     *
+     * @param person Person that was stored.
+     * @return Ticket to pass to {@link #awaitCommit(long)}.
+     */
+    public long appendPut(@Nonnull final Person person) {
+        assert person != null;
+        final UUID uuid = PersonKeys.toUUID(person.getId());
+        final Integer age = person.getAge();
+        return append(encode(OP_PUT, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                (age == null) ? NO_AGE : age, person.getName()));
+    }
+
+    /**
+     * Append a remove record.
+     *
+     * @param id ID of the person that was removed.
+     * @return Ticket to pass to {@link #awaitCommit(long)}.
+     */
+    public long appendRemove(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        final UUID uuid = PersonKeys.toUUID(id);
+        return append(encode(OP_REMOVE, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), 0, ""));
+    }
+
+    /**
+     * Wait until a record has been forced to disk.
+     *
+     * @param ticket Ticket returned when the record was appended.
+     */
+    public void awaitCommit(final long ticket) {
+        synchronized (commitMonitor) {
+            while ((committed < ticket) && !closed) {
+                try {
+                    commitMonitor.wait();
+                } catch (final InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a compacted snapshot of a store and delete the journal segments it makes obsolete.
+     *
+     * @param source Store to snapshot.
+     * @throws UncheckedIOException  If the snapshot could not be written.
+     * @throws IllegalStateException If the journal is closed.
+     */
+    public void snapshot(@Nonnull final PersonStore source) {
+        assert source != null;
+        final long start = System.nanoTime();
+        final long firstSeq;
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            firstSeq = segmentSeq + 1;
+            openSegment(firstSeq);
+        }
+
+        final File tmpFile = new File(directory, SNAPSHOT_TMP_FILE);
+        long nrRecords = 0;
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tmpFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(firstSeq);
+                final Enumeration<Uid<Person>> keys = source.keys();
+                while (keys.hasMoreElements()) {
+                    final Person person = source.get(keys.nextElement());
+                    if (person != null) {
+                        final UUID uuid = PersonKeys.toUUID(person.getId());
+                        final Integer age = person.getAge();
+                        final byte[] payload = encode(OP_PUT, uuid.getMostSignificantBits(),
+                                uuid.getLeastSignificantBits(), (age == null) ? NO_AGE : age, person.getName());
+                        out.writeInt(payload.length);
+                        out.writeInt(crc(payload));
+                        out.write(payload);
+                        ++nrRecords;
+                    }
+                }
+                out.writeInt(0);
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            Files.move(tmpFile.toPath(), new File(directory, SNAPSHOT_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot to " + directory, e);
+        }
+
+        for (final long seq : listSegments()) {
+            if ((seq < firstSeq) && !segmentFile(seq).delete()) {
+                LOG.warn("snapshot: Cannot delete obsolete journal segment {}", segmentFile(seq));
+            }
+        }
+        LOG.info("snapshot: Wrote {} persons to snapshot in {} ms",
+                nrRecords, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Stop background tasks and force the journal to disk. A group commit or snapshot in progress is finished first.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+                LOG.warn("close: Group commit or snapshot in progress did not finish");
+            }
+        } catch (final InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            synchronized (forceLock) {
+                if (buffer != null) {
+                    buffer.force();
+                    unmap(buffer);
+                    buffer = null;
+                }
+            }
+            closeChannel();
+            closed = true;
+        }
+        synchronized (commitMonitor) {
+            committed = appended;
+            commitMonitor.notifyAll();
+        }
+        LOG.info("close: Journal closed");
+    }
+
+    private long append(@Nonnull final byte[] payload) {
+        final int frameSize = FRAME_HEADER_SIZE + payload.length;
+        if (frameSize >= segmentSize) {
+            throw new IllegalArgumentException("Journal record too large: " + frameSize + " bytes");
+        }
+        final int crc = crc(payload);
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            assert buffer != null;
+
+            // Always leave room for the end-of-segment marker (which is 0 already).
+            if (buffer.remaining() < (frameSize + 4)) {
+                openSegment(segmentSeq + 1);
+                assert buffer != null;
+            }
+            buffer.putInt(payload.length);
+            buffer.putInt(crc);
+            buffer.put(payload);
+            ++appended;
+            return appended;
+        }
+    }
+
+    /**
+     * Force all appended records to disk. Executed every group commit interval.
+     */
+    private void commit() {
+        final MappedByteBuffer current;
+        final long ticket;
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            current = buffer;
+            ticket = appended;
+        }
+        if ((current != null) && (ticket > committed)) {
+            synchronized (forceLock) {
+
+                // If the segment was retired in the meantime, it was forced and committed when it was retired.
+                if (current != buffer) {
+                    return;
+                }
+                current.force();
+            }
+            synchronized (commitMonitor) {
+                committed = Math.max(committed, ticket);
+                commitMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Switch to a new segment, and force and unmap the retired one. Must be called with the append lock held.
+     */
+    private void openSegment(final long seq) {
+        assert Thread.holdsLock(appendLock);
+        try {
+            synchronized (forceLock) {
+                if (buffer != null) {
+                    buffer.force();
+                    synchronized (commitMonitor) {
+                        committed = appended;
+                        commitMonitor.notifyAll();
+                    }
+                    unmap(buffer);
+                    buffer = null;
+                }
+                closeChannel();
+                final RandomAccessFile file = new RandomAccessFile(segmentFile(seq), "rw");
+                file.setLength(segmentSize);
+                channel = file.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                segmentSeq = seq;
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Cannot create journal segment " + segmentFile(seq), e);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                LOG.warn("closeChannel: Cannot close journal segment", e);
+            }
+            channel = null;
+        }
+    }
+
+    private static long replay(@Nonnull final File file, @Nonnull final PersonStore target) throws IOException {
+        try (FileChannel in = new RandomAccessFile(file, "r").getChannel()) {
+            final MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            try {
+                return replay(file, mapped, target);
+            } finally {
+                unmap(mapped);
+            }
+        }
+    }
+
+    private static long replay(
+            @Nonnull final File file,
+            @Nonnull final MappedByteBuffer mapped,
+            @Nonnull final PersonStore target) {
+        long nrRecords = 0;
+        while (mapped.remaining() >= FRAME_HEADER_SIZE) {
+            final int length = mapped.getInt();
+            if ((length <= 0) || (length > (mapped.remaining() - 4))) {
+                break;
+            }
+            final int crc = mapped.getInt();
+            final byte[] payload = new byte[length];
+            mapped.get(payload);
+            if (crc != crc(payload)) {
+                LOG.warn("replay: Torn record in {}, ignoring remainder of segment", file);
+                break;
+            }
+            apply(ByteBuffer.wrap(payload), target);
+            ++nrRecords;
+        }
+        return nrRecords;
+    }
+
+    /**
+     * Release a mapping right away. The buffer must not be used afterwards, as that would access unmapped memory. If
+     * this is not supported, the mapping is released when the buffer is garbage collected.
+     */
+    private static void unmap(@Nonnull final MappedByteBuffer buffer) {
+        if ((UNSAFE == null) || (INVOKE_CLEANER == null)) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (final ReflectiveOperationException e) {
+            LOG.warn("unmap: Cannot unmap journal segment", e);
+        }
+    }
+
+    private static void apply(@Nonnull final ByteBuffer payload, @Nonnull final PersonStore target) {
+        final byte op = payload.get();
+        final long msb = payload.getLong();
+        final long lsb = payload.getLong();
+        final int age = payload.getInt();
+        final Uid<Person> id = PersonKeys.toUid(msb, lsb);
+        if (op == OP_PUT) {
+            final String name = new String(payload.array(), payload.position(), payload.remaining(),
+                    StandardCharsets.UTF_8);
+            target.put(new Person(id, name, (age == NO_AGE) ? null : age));
+        } else if (op == OP_REMOVE) {
+            target.remove(id);
+        } else {
+            throw new IllegalStateException("Unknown journal operation: " + op);
+        }
+    }
+
+    @Nonnull
+    private static byte[] encode(final byte op, final long msb, final long lsb, final int age,
+                                 @Nonnull final String name) {
+        final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_HEADER_SIZE + nameBytes.length);
+        payload.put(op);
+        payload.putLong(msb);
+        payload.putLong(lsb);
+        payload.putInt(age);
+        payload.put(nameBytes);
+        return payload.array();
+    }
+
+    private static int crc(@Nonnull final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    @Nonnull
+    private File segmentFile(final long seq) {
+        return new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+    }
+
+    @Nonnull
+    private List<Long> listSegments() {
+        final List<Long> seqs = new ArrayList<>();
+        final String[] names = directory.list();
+        if (names != null) {
+            for (final String name : names) {
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        seqs.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (final NumberFormatException ignored) {
+                        LOG.warn("listSegments: Ignoring file {}", name);
+                    }
+                }
+            }
+        }
+        Collections.sort(seqs);
+        return seqs;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.store;
+
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.UUID;
+
+/**
+ * Raw person ID, ordered by hash value (see {@link PersonKeys#hash(long, long)}), with the raw bits as tie-breaker.
+ * This is the order in which {@link PersonStore#keysAfter(Uid, int)} returns IDs. The order is arbitrary, but stable,
+ * so it can be used for keyset pagination.
+ */
+public final class PersonKey implements Comparable<PersonKey> {
+    private final long mostSigBits;
+    private final long leastSigBits;
+    private final long hash;
+
+    public PersonKey(final long mostSigBits, final long leastSigBits) {
+        super();
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+        this.hash = PersonKeys.hash(mostSigBits, leastSigBits);
+    }
+
+    @Nonnull
+    public static PersonKey of(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        final UUID uuid = PersonKeys.toUUID(id);
+        return new PersonKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    @Nonnull
+    public Uid<Person> toUid() {
+        return PersonKeys.toUid(mostSigBits, leastSigBits);
+    }
+
+    public long getMostSigBits() {
+        return mostSigBits;
+    }
+
+    public long getLeastSigBits() {
+        return leastSigBits;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public int compareTo(@Nonnull final PersonKey other) {
+        assert other != null;
+
+        // Compare hashes unsigned, so the order matches the order of stripes and slots in StripedPersonStore.
+        int result = Long.compareUnsigned(hash, other.hash);
+        if (result == 0) {
+            result = Long.compare(mostSigBits, other.mostSigBits);
+            if (result == 0) {
+                result = Long.compare(leastSigBits, other.leastSigBits);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PersonKey)) {
+            return false;
+        }
+        final PersonKey that = (PersonKey) obj;
+        return (mostSigBits == that.mostSigBits) && (leastSigBits == that.leastSigBits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+}
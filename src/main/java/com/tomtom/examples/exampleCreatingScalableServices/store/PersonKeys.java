@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.store;
+
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+
+/**
+ * Utility functions to convert person IDs from and to the two raw 64-bit halves of their UUID, and to hash those
+ * halves.
+ */
+public final class PersonKeys {
+
+    // Number of dash-separated groups of hex digits in the string form of a UUID.
+    private static final int UUID_GROUPS = 5;
+
+    // Prevent instantiation.
+    private PersonKeys() {
+        assert false;
+    }
+
+    /**
+     * Get the raw UUID of an ID. The value of a {@link Uid} is only available as its string form, so this parses the
+     * hex digits of that string into the two halves directly. This is the same as {@link UUID#fromString(String)},
+     * without splitting the string into substrings and parsing each of them.
+     *
+     * @param id ID.
+     * @return UUID with the same value.
+     */
+    @Nonnull
+    public static UUID toUUID(@Nonnull final Uid<?> id) {
+        assert id != null;
+        final String value = id.toString();
+        final long[] groups = new long[UUID_GROUPS];
+        int group = 0;
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            if (c == '-') {
+                ++group;
+                assert group < UUID_GROUPS : value;
+            } else {
+                final int digit = Character.digit(c, 16);
+                assert digit >= 0 : value;
+                groups[group] = (groups[group] << 4) | digit;
+            }
+        }
+        assert group == (UUID_GROUPS - 1) : value;
+        final long mostSigBits = ((groups[0] & 0xffffffffL) << 32) | ((groups[1] & 0xffffL) << 16) |
+                (groups[2] & 0xffffL);
+        final long leastSigBits = ((groups[3] & 0xffffL) << 48) | (groups[4] & 0xffffffffffffL);
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Create an ID from the two raw halves of its UUID.
+     *
+     * @param mostSigBits  Most significant 64 bits.
+     * @param leastSigBits Least significant 64 bits.
+     * @return Person ID.
+     */
+    @Nonnull
+    public static Uid<Person> toUid(final long mostSigBits, final long leastSigBits) {
+        return Uid.fromString(new UUID(mostSigBits, leastSigBits).toString()).as(Person.class);
+    }
+
+    /**
+     * Hash the two halves of a UUID into 64 bits. All bits of the result are well mixed, so the high bits of the hash
+     * can be used to select a stripe and a slot.
+     *
+     * @param mostSigBits  Most significant 64 bits.
+     * @param leastSigBits Least significant 64 bits.
+     * @return Hash value.
+     */
+    public static long hash(final long mostSigBits, final long leastSigBits) {
+        return mix(mostSigBits ^ mix(leastSigBits));
+    }
+
+    /**
+     * 64-bit finalizer of MurmurHash3.
+     */
+    private static long mix(final long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
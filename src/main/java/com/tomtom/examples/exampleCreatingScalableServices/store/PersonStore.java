@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.store;
+
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * This interface defines the in-memory storage used by the simulated database. All implementations must be thread-safe
+ * and follow the semantics of {@link java.util.concurrent.ConcurrentMap}: operations on a single key are atomic and
+ * the enumeration of keys is weakly consistent.
+ */
+public interface PersonStore {
+
+    /**
+     * Store a person, replacing any existing person with the same ID.
+     *
+     * @param person Person to store.
+     * @return Previous person with the same ID, or null if there was none.
+     */
+    @Nullable
+    Person put(@Nonnull Person person);
+
+    /**
+     * Store a person, unless a person with the same ID already exists.
+     *
+     * @param person Person to store.
+     * @return Existing person with the same ID (in which case nothing was stored), or null if the person was stored.
+     */
+    @Nullable
+    Person putIfAbsent(@Nonnull Person person);
+
+    /**
+     * Get a person.
+     *
+     * @param id Person ID.
+     * @return Person, or null if not found.
+     */
+    @Nullable
+    Person get(@Nonnull Uid<Person> id);
+
+    /**
+     * Remove a person.
+     *
+     * @param id Person ID.
+     * @return Removed person, or null if not found.
+     */
+    @Nullable
+    Person remove(@Nonnull Uid<Person> id);
+
+    /**
+     * Check whether a person exists.
+     *
+     * @param id Person ID.
+     * @return True if the person exists.
+     */
+    boolean containsKey(@Nonnull Uid<Person> id);
+
+    /**
+     * Get all person IDs. The enumeration is weakly consistent: it never throws a concurrent modification exception,
+     * but may or may not reflect modifications made after it was created.
+     *
+     * @return Enumeration of person IDs.
+     */
+    @Nonnull
+    Enumeration<Uid<Person>> keys();
+
+    /**
+     * Get a page of person IDs, in the order defined by {@link PersonKey}. Use the last ID of a page to get the next
+     * page (keyset pagination). Like {@link #keys()}, this is weakly consistent.
+     *
+     * @param after Return IDs after this ID only. If null, start at the first ID.
+     * @param count Maximum number of IDs to return.
+     * @return Person IDs, at most count.
+     */
+    @Nonnull
+    List<Uid<Person>> keysAfter(@Nullable Uid<Person> after, int count);
+
+    /**
+     * Get the number of persons in the store. This value may be an estimate if the store is modified concurrently.
+     *
+     * @return Number of persons.
+     */
+    int size();
+}
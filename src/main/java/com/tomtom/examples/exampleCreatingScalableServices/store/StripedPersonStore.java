@@ -0,0 +1,474 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleCreatingScalableServices.store;
+
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact {@link PersonStore} which does not keep a {@link Person} or {@link Uid} object per entry. Persons are
+ * decomposed into the two raw halves of their UUID, their name and their age, which are stored in parallel primitive
+ * arrays. The arrays form an open-addressing hash table with linear probing.
+ * <p>
+ * The table is split into a fixed number of stripes, each with its own read/write lock, so writers to different
+ * stripes never block each other and readers never block other readers. A stripe grows independently of the others.
+ * <p>
+ * Both the stripe and the home slot of an entry are taken from the high bits of its hash. Probing never wraps around
+ * the end of a stripe, so within a stripe entries are (nearly) ordered by hash value. This is used for efficient keyset
+ * pagination in {@link #keysAfter(Uid, int)}.
+ * <p>
+ * A slot costs 2 longs, 1 int and 1 reference (24 bytes with compressed references). With a load factor between 0.375
+ * and 0.75 this amounts to 32-64 bytes per person, plus the name string, compared to roughly 100-120 bytes per person
+ * for a {@link java.util.concurrent.ConcurrentHashMap} (node, table slot, key, person and boxed age), plus the name.
+ * Objects returned by this store are created on-the-fly and are never identical to the ones passed in.
+ */
+public final class StripedPersonStore implements PersonStore {
+
+    // Value in ages array for persons without an age.
+    private static final int NO_AGE = Integer.MIN_VALUE;
+
+    // Minimum and maximum stripe sizes, as number of bits of the slot index.
+    private static final int MIN_SLOT_BITS = 4;
+    private static final int MAX_SLOT_BITS = 30;
+
+    // Extra slots at the end of a stripe, so probing does not need to wrap around.
+    private static final int PROBE_SLACK = 64;
+
+    // Grow a stripe when it is more than this fraction full.
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    private final int stripeBits;
+    @Nonnull
+    private final Segment[] segments;
+
+    /**
+     * Create a store.
+     *
+     * @param expectedSize     Expected number of persons. The stripes are pre-sized for this number.
+     * @param concurrencyLevel Expected number of concurrent writers. This is rounded up to a power of 2 to get the
+     *                         number of stripes.
+     */
+    public StripedPersonStore(final int expectedSize, final int concurrencyLevel) {
+        super();
+        assert expectedSize >= 0;
+        assert concurrencyLevel >= 1;
+
+        // Use at least 2 stripes; the stripe is selected by shifting, and a shift by 64 is a no-op in Java.
+        this.stripeBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(concurrencyLevel - 1));
+        final int nrStripes = 1 << stripeBits;
+        final long slotsPerStripe = (long) Math.ceil((expectedSize / (double) nrStripes) / MAX_LOAD_FACTOR);
+        final int slotBits = Math.min(MAX_SLOT_BITS, Math.max(MIN_SLOT_BITS,
+                64 - Long.numberOfLeadingZeros(Math.max(1L, slotsPerStripe - 1))));
+
+        this.segments = new Segment[nrStripes];
+        for (int i = 0; i < nrStripes; ++i) {
+            segments[i] = new Segment(slotBits);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Person put(@Nonnull final Person person) {
+        assert person != null;
+        return store(person, false);
+    }
+
+    @Nullable
+    @Override
+    public Person putIfAbsent(@Nonnull final Person person) {
+        assert person != null;
+        return store(person, true);
+    }
+
+    @Nullable
+    @Override
+    public Person get(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        final UUID uuid = PersonKeys.toUUID(id);
+        final long msb = uuid.getMostSignificantBits();
+        final long lsb = uuid.getLeastSignificantBits();
+        final long hash = PersonKeys.hash(msb, lsb);
+        return segmentFor(hash).get(id, msb, lsb, hash);
+    }
+
+    @Nullable
+    @Override
+    public Person remove(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        final UUID uuid = PersonKeys.toUUID(id);
+        final long msb = uuid.getMostSignificantBits();
+        final long lsb = uuid.getLeastSignificantBits();
+        final long hash = PersonKeys.hash(msb, lsb);
+        return segmentFor(hash).remove(id, msb, lsb, hash);
+    }
+
+    @Override
+    public boolean containsKey(@Nonnull final Uid<Person> id) {
+        assert id != null;
+        final UUID uuid = PersonKeys.toUUID(id);
+        final long msb = uuid.getMostSignificantBits();
+        final long lsb = uuid.getLeastSignificantBits();
+        final long hash = PersonKeys.hash(msb, lsb);
+        return segmentFor(hash).contains(msb, lsb, hash);
+    }
+
+    @Nonnull
+    @Override
+    public Enumeration<Uid<Person>> keys() {
+        return new KeyEnumeration();
+    }
+
+    /**
+     * The high bits of the hash select the stripe and the home slot, and probing never wraps around, so a page can be
+     * found by starting at the home slot of the last ID of the previous page. The time this takes depends on the page
+     * size only, not on the position of the page.
+     */
+    @Nonnull
+    @Override
+    public List<Uid<Person>> keysAfter(@Nullable final Uid<Person> after, final int count) {
+        assert count >= 0;
+        final PersonKey afterKey = (after == null) ? null : PersonKey.of(after);
+        final List<Uid<Person>> result = new ArrayList<>(Math.min(count, 1024));
+        int index = (afterKey == null) ? 0 : segmentIndex(afterKey.getHash());
+        PersonKey from = afterKey;
+        while ((result.size() < count) && (index < segments.length)) {
+            for (final PersonKey key : segments[index].keysAfter(from, count - result.size())) {
+                result.add(key.toUid());
+            }
+
+            // Subsequent stripes only contain larger keys.
+            from = null;
+            ++index;
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (final Segment segment : segments) {
+            size += segment.count;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Nullable
+    private Person store(@Nonnull final Person person, final boolean onlyIfAbsent) {
+        final UUID uuid = PersonKeys.toUUID(person.getId());
+        final long msb = uuid.getMostSignificantBits();
+        final long lsb = uuid.getLeastSignificantBits();
+        final long hash = PersonKeys.hash(msb, lsb);
+        final Integer age = person.getAge();
+        return segmentFor(hash).put(person.getId(), msb, lsb, hash, person.getName(),
+                (age == null) ? NO_AGE : age, onlyIfAbsent);
+    }
+
+    @Nonnull
+    private Segment segmentFor(final long hash) {
+        return segments[segmentIndex(hash)];
+    }
+
+    private int segmentIndex(final long hash) {
+        return (int) (hash >>> (64 - stripeBits));
+    }
+
+    /**
+     * A single stripe of the table. All array access is guarded by the lock. The last slot of the arrays is always
+     * empty, which guarantees that probing terminates within the arrays.
+     */
+    private final class Segment {
+
+        @Nonnull
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private int slotBits;
+        private int maxCount;
+        private volatile int count;
+
+        @Nonnull
+        private long[] msbs;
+        @Nonnull
+        private long[] lsbs;
+        @Nonnull
+        private int[] ages;
+        @Nonnull
+        private String[] names;    // A slot is empty if and only if its name is null.
+
+        Segment(final int slotBits) {
+            final int length = (1 << slotBits) + PROBE_SLACK;
+            this.slotBits = slotBits;
+            this.maxCount = (int) ((1 << slotBits) * MAX_LOAD_FACTOR);
+            this.count = 0;
+            this.msbs = new long[length];
+            this.lsbs = new long[length];
+            this.ages = new int[length];
+            this.names = new String[length];
+        }
+
+        @Nullable
+        Person get(@Nonnull final Uid<Person> id, final long msb, final long lsb, final long hash) {
+            lock.readLock().lock();
+            try {
+                final int index = find(msb, lsb, hash);
+                return (index < 0) ? null : createPerson(id, index);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        boolean contains(final long msb, final long lsb, final long hash) {
+            lock.readLock().lock();
+            try {
+                return find(msb, lsb, hash) >= 0;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Nullable
+        Person put(@Nonnull final Uid<Person> id, final long msb, final long lsb, final long hash,
+                   @Nonnull final String name, final int age, final boolean onlyIfAbsent) {
+            lock.writeLock().lock();
+            try {
+                final int index = find(msb, lsb, hash);
+                if (index >= 0) {
+                    final Person previous = createPerson(id, index);
+                    if (!onlyIfAbsent) {
+                        names[index] = name;
+                        ages[index] = age;
+                    }
+                    return previous;
+                }
+                if (count >= maxCount) {
+                    grow();
+                }
+                while (!insert(msb, lsb, hash, name, age)) {
+                    grow();
+                }
+                count = count + 1;
+                return null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Nullable
+        Person remove(@Nonnull final Uid<Person> id, final long msb, final long lsb, final long hash) {
+            lock.writeLock().lock();
+            try {
+                final int index = find(msb, lsb, hash);
+                if (index < 0) {
+                    return null;
+                }
+                final Person previous = createPerson(id, index);
+                removeAt(index);
+                count = count - 1;
+                return previous;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Return the raw IDs in this stripe, as pairs of most and least significant bits.
+         */
+        @Nonnull
+        long[] copyKeys() {
+            lock.readLock().lock();
+            try {
+                final long[] keys = new long[count * 2];
+                int n = 0;
+                for (int i = 0; i < names.length; ++i) {
+                    if (names[i] != null) {
+                        keys[n] = msbs[i];
+                        keys[n + 1] = lsbs[i];
+                        n = n + 2;
+                    }
+                }
+                assert n == keys.length;
+                return keys;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Return the smallest keys in this stripe larger than a given key, in order.
+         * <p>
+         * Entries with a larger hash than the given key have a home slot at or after the home slot of that key, so
+         * scanning starts there. Entries are found at or after their home slot, so entries may be found out of order.
+         * Scanning continues after enough keys have been found until an empty slot is reached: every entry after
+         * that slot has a larger home slot, and hence a larger hash, than every entry before it.
+         */
+        @Nonnull
+        List<PersonKey> keysAfter(@Nullable final PersonKey after, final int limit) {
+            final List<PersonKey> keys = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                int i = (after == null) ? 0 : home(after.getHash(), slotBits);
+                while ((i < names.length) && ((keys.size() < limit) || (names[i] != null))) {
+                    if (names[i] != null) {
+                        final PersonKey key = new PersonKey(msbs[i], lsbs[i]);
+                        if ((after == null) || (key.compareTo(after) > 0)) {
+                            keys.add(key);
+                        }
+                    }
+                    ++i;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            Collections.sort(keys);
+            return (keys.size() > limit) ? keys.subList(0, limit) : keys;
+        }
+
+        private int home(final long hash, final int bits) {
+            return (int) ((hash << stripeBits) >>> (64 - bits));
+        }
+
+        private int find(final long msb, final long lsb, final long hash) {
+            int i = home(hash, slotBits);
+            while (names[i] != null) {
+                if ((msbs[i] == msb) && (lsbs[i] == lsb)) {
+                    return i;
+                }
+                ++i;
+            }
+            return -1;
+        }
+
+        /**
+         * Insert a new entry. Returns false if the entry does not fit in the probe range.
+         */
+        private boolean insert(final long msb, final long lsb, final long hash,
+                               @Nonnull final String name, final int age) {
+            int i = home(hash, slotBits);
+            while (names[i] != null) {
+                ++i;
+            }
+            if (i >= (names.length - 1)) {
+                return false;
+            }
+            msbs[i] = msb;
+            lsbs[i] = lsb;
+            names[i] = name;
+            ages[i] = age;
+            return true;
+        }
+
+        /**
+         * Remove an entry, shifting back subsequent entries of the same cluster, so no tombstones are needed.
+         */
+        private void removeAt(final int index) {
+            int hole = index;
+            int i = index + 1;
+            while (names[i] != null) {
+                if (home(PersonKeys.hash(msbs[i], lsbs[i]), slotBits) <= hole) {
+                    msbs[hole] = msbs[i];
+                    lsbs[hole] = lsbs[i];
+                    names[hole] = names[i];
+                    ages[hole] = ages[i];
+                    hole = i;
+                }
+                ++i;
+            }
+            names[hole] = null;
+        }
+
+        private void grow() {
+            int newSlotBits = slotBits + 1;
+            while (!rehash(newSlotBits)) {
+                ++newSlotBits;
+            }
+        }
+
+        private boolean rehash(final int newSlotBits) {
+            if (newSlotBits > MAX_SLOT_BITS) {
+                throw new IllegalStateException("Store stripe cannot grow beyond 2^" + MAX_SLOT_BITS + " slots");
+            }
+            final int length = (1 << newSlotBits) + PROBE_SLACK;
+            final long[] newMsbs = new long[length];
+            final long[] newLsbs = new long[length];
+            final int[] newAges = new int[length];
+            final String[] newNames = new String[length];
+            for (int i = 0; i < names.length; ++i) {
+                if (names[i] != null) {
+                    int j = home(PersonKeys.hash(msbs[i], lsbs[i]), newSlotBits);
+                    while (newNames[j] != null) {
+                        ++j;
+                    }
+                    if (j >= (length - 1)) {
+                        return false;
+                    }
+                    newMsbs[j] = msbs[i];
+                    newLsbs[j] = lsbs[i];
+                    newNames[j] = names[i];
+                    newAges[j] = ages[i];
+                }
+            }
+            slotBits = newSlotBits;
+            maxCount = (int) ((1 << newSlotBits) * MAX_LOAD_FACTOR);
+            msbs = newMsbs;
+            lsbs = newLsbs;
+            ages = newAges;
+            names = newNames;
+            return true;
+        }
+
+        @Nonnull
+        private Person createPerson(@Nonnull final Uid<Person> id, final int index) {
+            final int age = ages[index];
+            return new Person(id, names[index], (age == NO_AGE) ? null : age);
+        }
+    }
+
+    /**
+     * Enumeration over all keys. Keys are copied one stripe at a time, so the enumeration is weakly consistent.
+     */
+    private final class KeyEnumeration implements Enumeration<Uid<Person>> {
+        private int nextSegment = 0;
+        @Nonnull
+        private long[] keys = new long[0];
+        private int index = 0;
+
+        @Override
+        public boolean hasMoreElements() {
+            while ((index >= keys.length) && (nextSegment < segments.length)) {
+                keys = segments[nextSegment].copyKeys();
+                index = 0;
+                ++nextSegment;
+            }
+            return index < keys.length;
+        }
+
+        @Nonnull
+        @Override
+        public Uid<Person> nextElement() {
+            if (!hasMoreElements()) {
+                throw new NoSuchElementException();
+            }
+            final Uid<Person> id = PersonKeys.toUid(keys[index], keys[index + 1]);
+            index = index + 2;
+            return id;
+        }
+    }
+}
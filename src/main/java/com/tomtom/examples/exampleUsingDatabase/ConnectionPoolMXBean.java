@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase;
+
+/**
+ * Management interface of {@link ConnectionPoolStats}. The counts are summed over the pools of all servers.
+ */
+public interface ConnectionPoolMXBean {
+
+    /**
+     * Return the configured maximum number of connections of the pool of a single server.
+     *
+     * @return Maximum pool size.
+     */
+    int getMaxSize();
+
+    /**
+     * Return the number of open connections, in use or idle.
+     *
+     * @return Number of connections.
+     */
+    int getSize();
+
+    /**
+     * Return the number of connections currently in use. If this equals the maximum size, requests have to wait.
+     *
+     * @return Number of checked out connections.
+     */
+    int getCheckedOutCount();
+
+    /**
+     * Return the number of requests currently waiting for a connection.
+     *
+     * @return Wait queue depth.
+     */
+    int getWaitQueueSize();
+
+    long getCheckOutCount();
+
+    /**
+     * Return the average time requests waited for a connection, including requests which did not have to wait. Wait
+     * times are only measured for the pool of the synchronous driver, so this is always 0 for the asynchronous one.
+     *
+     * @return Average wait time in milliseconds, or 0 if no connections were checked out.
+     */
+    double getAverageWaitMsecs();
+
+    long getMaxWaitMsecs();
+
+    /**
+     * Reset the check out count and the wait times.
+     */
+    void resetWaitTimes();
+}
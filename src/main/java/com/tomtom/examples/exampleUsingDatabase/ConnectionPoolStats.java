@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase;
+
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+import com.tomtom.examples.common.MBeans;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class listens to the events of a MongoDB connection pool and keeps live statistics of it, so pool starvation is
+ * visible under load. The statistics are available through JMX, under the name given to the constructor.
+ *
+ * The wait time of a request is measured from entering to leaving the wait queue. It is only measured for the
+ * synchronous driver, where both happen on the same thread. The asynchronous driver may leave the wait queue on
+ * another thread, or not at all on the thread which entered it, so its wait times are not measured; the other
+ * statistics are kept for both.
+ */
+@SuppressWarnings("deprecation")
+public final class ConnectionPoolStats extends ConnectionPoolListenerAdapter implements ConnectionPoolMXBean {
+    @Nonnull
+    private final ThreadLocal<Long> waitStartNanos = new ThreadLocal<>();
+    private final int maxSize;
+    private final boolean measureWaitTimes;
+    @Nonnull
+    private final AtomicInteger size = new AtomicInteger();
+    @Nonnull
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    @Nonnull
+    private final AtomicInteger waitQueueSize = new AtomicInteger();
+    @Nonnull
+    private final LongAdder checkOuts = new LongAdder();
+    @Nonnull
+    private final LongAdder waits = new LongAdder();
+    @Nonnull
+    private final LongAdder totalWaitNanos = new LongAdder();
+    @Nonnull
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Create the statistics and register them with the platform MBean server.
+     *
+     * @param name             Name of the pool, used as the JMX name.
+     * @param maxSize          Configured maximum size of the pool of a single server.
+     * @param measureWaitTimes True if the pool enters and leaves the wait queue on the same thread, as the pool of
+     *                         the synchronous driver does, so wait times can be measured.
+     */
+    public ConnectionPoolStats(@Nonnull final String name, final int maxSize, final boolean measureWaitTimes) {
+        super();
+        assert name != null;
+        this.maxSize = maxSize;
+        this.measureWaitTimes = measureWaitTimes;
+        MBeans.register(this, "ConnectionPool", name);
+    }
+
+    @Override
+    public void connectionAdded(@Nonnull final ConnectionAddedEvent event) {
+        size.incrementAndGet();
+    }
+
+    @Override
+    public void connectionRemoved(@Nonnull final ConnectionRemovedEvent event) {
+        size.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(@Nonnull final ConnectionCheckedOutEvent event) {
+        checkedOut.incrementAndGet();
+        checkOuts.increment();
+    }
+
+    @Override
+    public void connectionCheckedIn(@Nonnull final ConnectionCheckedInEvent event) {
+        checkedOut.decrementAndGet();
+    }
+
+    @Override
+    public void waitQueueEntered(@Nonnull final ConnectionPoolWaitQueueEnteredEvent event) {
+        waitQueueSize.incrementAndGet();
+        if (measureWaitTimes) {
+            waitStartNanos.set(System.nanoTime());
+        }
+    }
+
+    @Override
+    public void waitQueueExited(@Nonnull final ConnectionPoolWaitQueueExitedEvent event) {
+        waitQueueSize.decrementAndGet();
+        if (!measureWaitTimes) {
+            return;
+        }
+        final Long startNanos = waitStartNanos.get();
+        if (startNanos != null) {
+            waitStartNanos.remove();
+            final long waitNanos = System.nanoTime() - startNanos;
+            waits.increment();
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulate(waitNanos);
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public int getSize() {
+        return size.get();
+    }
+
+    @Override
+    public int getCheckedOutCount() {
+        return checkedOut.get();
+    }
+
+    @Override
+    public int getWaitQueueSize() {
+        return waitQueueSize.get();
+    }
+
+    @Override
+    public long getCheckOutCount() {
+        return checkOuts.sum();
+    }
+
+    @Override
+    public double getAverageWaitMsecs() {
+        final long count = waits.sum();
+        return (count == 0) ? 0.0 : ((double) totalWaitNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Override
+    public long getMaxWaitMsecs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    @Override
+    public void resetWaitTimes() {
+        checkOuts.reset();
+        waits.reset();
+        totalWaitNanos.reset();
+        maxWaitNanos.reset();
+    }
+}
@@ -16,15 +16,28 @@
 
 package com.tomtom.examples.exampleUsingDatabase;
 
+import akka.actor.ActorSystem;
 import com.google.inject.Binder;
 import com.google.inject.Module;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.mongodb.Mongo;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ServerAddress;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoDatabase;
+import com.tomtom.examples.exampleUsingDatabase.dao.AsyncPersonDao;
+import com.tomtom.examples.exampleUsingDatabase.dao.BlockingAsyncPersonDao;
+import com.tomtom.examples.exampleUsingDatabase.dao.CachingPersonDao;
 import com.tomtom.examples.exampleUsingDatabase.dao.PersonDao;
+import com.tomtom.examples.exampleUsingDatabase.dao.WriteBehindPersonDao;
+import com.tomtom.examples.exampleUsingDatabase.dao.memory.PersonDaoMemoryImpl;
+import com.tomtom.examples.exampleUsingDatabase.dao.mongodb.AsyncPersonDaoMongoDBImpl;
 import com.tomtom.examples.exampleUsingDatabase.dao.mongodb.PersonDaoMongoDBImpl;
 import com.tomtom.examples.exampleUsingDatabase.dao.mongodb.mappers.MyMapperRegistry;
-import com.tomtom.speedtools.mongodb.MongoConnectionCache;
 import com.tomtom.speedtools.mongodb.MongoDB;
 import com.tomtom.speedtools.mongodb.MongoDBConnectionException;
 import com.tomtom.speedtools.mongodb.mappers.MapperRegistry;
@@ -32,7 +45,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is an example Guice module of how to bind service implementations to their interfaces. This examples binds a
@@ -49,8 +63,14 @@ public class ExampleDatabaseModule implements Module {
         // Bind APIs to their implementation.
         binder.bind(ExampleDatabaseResource.class).to(ExampleDatabaseResourceImpl.class).in(Singleton.class);
 
-        // Bind DAOs.
-        binder.bind(PersonDao.class).to(PersonDaoMongoDBImpl.class).in(Singleton.class);
+        // Bind DAOs. The PersonDao and AsyncPersonDao are provided by providePersonDao() and provideAsyncPersonDao().
+        binder.bind(PersonDaoMongoDBImpl.class).in(Singleton.class);
+        binder.bind(AsyncPersonDaoMongoDBImpl.class).in(Singleton.class);
+        binder.bind(PersonDaoMemoryImpl.class).in(Singleton.class);
+        binder.bind(PersonDaoProperties.class).in(Singleton.class);
+        binder.bind(PersonCacheProperties.class).in(Singleton.class);
+        binder.bind(PersonWriteBehindProperties.class).in(Singleton.class);
+        binder.bind(MongoDBProperties.class).in(Singleton.class);
 
         // Bind mapper registry.
         binder.bind(MapperRegistry.class).to(MyMapperRegistry.class).in(Singleton.class);
@@ -60,23 +80,155 @@ public class ExampleDatabaseModule implements Module {
          */
         LOG.info("configure:");
         LOG.info("configure: GET /example/3/x       Same as /example/1/x using MongoDB");
+        LOG.info("configure: POST /example/3/x      Same as /example/2/x using MongoDB (batch calls)");
     }
 
     @Nonnull
     @Provides
     @Singleton
-    public MongoDB provideMongoDB() {
+    public PersonDao providePersonDao(
+            @Nonnull final Provider<PersonDaoMongoDBImpl> mongoPersonDao,
+            @Nonnull final Provider<PersonDaoMemoryImpl> memoryPersonDao,
+            @Nonnull final PersonDaoProperties daoProperties,
+            @Nonnull final PersonWriteBehindProperties writeBehindProperties,
+            @Nonnull final PersonCacheProperties properties,
+            @Nonnull final ActorSystem system) {
+        assert mongoPersonDao != null;
+        assert memoryPersonDao != null;
+        assert daoProperties != null;
+        assert writeBehindProperties != null;
+        assert properties != null;
+        assert system != null;
+
+        // Keep the persons in memory, if configured. A cache in front of it would not make reads any faster.
+        if (daoProperties.getStoreType() == PersonDaoProperties.StoreType.MEMORY) {
+            LOG.info("providePersonDao: Keeping persons in memory, properties={}", daoProperties);
+            final PersonDaoMemoryImpl personDao = memoryPersonDao.get();
+            system.registerOnTermination(personDao::close);
+            return personDao;
+        }
+
+        // Store persons write-behind, if configured. The queue is flushed when the actor system terminates, which
+        // happens before the MongoDB client is closed, as termination callbacks run in reverse order.
+        PersonDao personDao = mongoPersonDao.get();
+        if (writeBehindProperties.isEnabled()) {
+            LOG.info("providePersonDao: Storing persons write-behind, properties={}", writeBehindProperties);
+            final WriteBehindPersonDao writeBehindPersonDao = new WriteBehindPersonDao(personDao,
+                    writeBehindProperties.getQueueSize(), writeBehindProperties.getFlushSize(),
+                    writeBehindProperties.getFlushIntervalMsecs(), writeBehindProperties.getMaxWaitMsecs());
+            system.registerOnTermination(writeBehindPersonDao::close);
+            personDao = writeBehindPersonDao;
+        }
+
+        // Put a read-through cache in front of MongoDB, if configured.
+        if (!properties.isEnabled()) {
+            return personDao;
+        }
+        LOG.info("providePersonDao: Caching persons, properties={}", properties);
+        return new CachingPersonDao(personDao, properties.getMaximumSize(), properties.getExpireAfterSecs());
+    }
+
+    @Nonnull
+    @Provides
+    @Singleton
+    public AsyncPersonDao provideAsyncPersonDao(
+            @Nonnull final Provider<AsyncPersonDaoMongoDBImpl> asyncPersonDao,
+            @Nonnull final Provider<PersonDao> personDao,
+            @Nonnull final PersonDaoProperties properties,
+            @Nonnull final PersonWriteBehindProperties writeBehindProperties,
+            @Nonnull final ActorSystem system) {
+        assert asyncPersonDao != null;
+        assert personDao != null;
+        assert properties != null;
+        assert writeBehindProperties != null;
+        assert system != null;
+
+        // The in-memory DAO never blocks, so it is called directly.
+        if (properties.getStoreType() == PersonDaoProperties.StoreType.MEMORY) {
+            LOG.info("provideAsyncPersonDao: Using the in-memory DAO, properties={}", properties);
+            return new BlockingAsyncPersonDao(personDao.get());
+        }
+
+        // Use the asynchronous driver, or call the (cached) synchronous DAO on a thread pool. Only the selected DAO
+        // is created, so only one MongoDB client is connected.
+        if (properties.isAsync()) {
+            LOG.info("provideAsyncPersonDao: Using the asynchronous MongoDB driver, properties={}", properties);
+            if (writeBehindProperties.isEnabled()) {
+                LOG.warn("provideAsyncPersonDao: The asynchronous MongoDB driver does not store persons " +
+                        "write-behind; PersonWriteBehind.enabled is ignored");
+            }
+            return asyncPersonDao.get();
+        }
+        LOG.info("provideAsyncPersonDao: Using the synchronous MongoDB driver, properties={}", properties);
+        final BlockingAsyncPersonDao blockingPersonDao = new BlockingAsyncPersonDao(personDao.get(),
+                properties.getBlockingThreads());
+        system.registerOnTermination(blockingPersonDao::close);
+        return blockingPersonDao;
+    }
+
+    @Nonnull
+    @Provides
+    @Singleton
+    public MongoDatabase provideAsyncMongoDatabase(
+            @Nonnull final MongoDBProperties properties,
+            @Nonnull final ActorSystem system) {
+        assert properties != null;
+        assert system != null;
 
         /**
-         * This method provides the database connection. Normally you would probably inject the hostname,
-         * database, username and password from a properties file in this method.
+         * This method provides the database connection of the asynchronous driver, to the same database and with the
+         * same pool settings as provideMongoDB(). The driver connects in the background.
          */
-        try {
-            final Mongo mongo = MongoConnectionCache.getMongoDB("localhost:27017", 5000, "example", "", "");
-            return getDB(mongo, "example", "");
-        } catch (final UnknownHostException e) {
-            throw new MongoDBConnectionException("Cannot find MongoDB servers", e);
-        }
+        final ConnectionPoolStats stats = new ConnectionPoolStats("async", properties.getConnectionsPerHost(), false);
+        final com.mongodb.async.client.MongoClient mongoClient = MongoClients.create(MongoClientSettings.builder().
+                applyToClusterSettings(builder -> builder.hosts(properties.getServers())).
+                applyToConnectionPoolSettings(builder -> builder.
+                        maxSize(properties.getConnectionsPerHost()).
+                        maxWaitQueueSize(properties.getThreadsAllowedToBlockForConnectionMultiplier() *
+                                properties.getConnectionsPerHost()).
+                        maxWaitTime(properties.getMaxWaitTimeMsecs(), TimeUnit.MILLISECONDS).
+                        addConnectionPoolListener(stats)).
+                applyToSocketSettings(builder -> builder.
+                        connectTimeout(properties.getConnectionTimeoutMsecs(), TimeUnit.MILLISECONDS).
+                        readTimeout(properties.getSocketTimeoutMsecs(), TimeUnit.MILLISECONDS)).
+                writeConcern(properties.getWriteConcern()).
+                build());
+        system.registerOnTermination(mongoClient::close);
+        LOG.info("provideAsyncMongoDatabase: properties={}", properties);
+        return mongoClient.getDatabase(properties.getDatabase());
+    }
+
+    @Nonnull
+    @Provides
+    @Singleton
+    public MongoDB provideMongoDB(
+            @Nonnull final MongoDBProperties properties,
+            @Nonnull final ActorSystem system) {
+        assert properties != null;
+        assert system != null;
+
+        /**
+         * This method provides the database connection. The servers, database, pool size, timeouts and write concern
+         * are read from example.properties. The pool statistics are available through JMX.
+         */
+        final ConnectionPoolStats stats = new ConnectionPoolStats("sync", properties.getConnectionsPerHost(), true);
+        final MongoClientOptions options = MongoClientOptions.builder().
+                connectionsPerHost(properties.getConnectionsPerHost()).
+                threadsAllowedToBlockForConnectionMultiplier(
+                        properties.getThreadsAllowedToBlockForConnectionMultiplier()).
+                maxWaitTime(properties.getMaxWaitTimeMsecs()).
+                connectTimeout(properties.getConnectionTimeoutMsecs()).
+                socketTimeout(properties.getSocketTimeoutMsecs()).
+                writeConcern(properties.getWriteConcern()).
+                addConnectionPoolListener(stats).
+                build();
+        final List<ServerAddress> servers = properties.getServers();
+        final MongoClient mongo = (servers.size() == 1) ?
+                new MongoClient(servers.get(0), options) :
+                new MongoClient(servers, options);
+        system.registerOnTermination(mongo::close);
+        LOG.info("provideMongoDB: properties={}", properties);
+        return getDB(mongo, properties.getDatabase(), "");
     }
 
     /**
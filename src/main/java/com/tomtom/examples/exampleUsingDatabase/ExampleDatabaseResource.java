@@ -16,6 +16,7 @@
 
 package com.tomtom.examples.exampleUsingDatabase;
 
+import com.tomtom.examples.exampleCreatingScalableServices.BatchResource;
 import com.tomtom.examples.exampleCreatingScalableServices.SimpleThreadBasedResource;
 
 import javax.ws.rs.Consumes;
@@ -31,7 +32,7 @@ import javax.ws.rs.core.MediaType;
 @Path("/example/3")
 @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
 @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
-public interface ExampleDatabaseResource extends SimpleThreadBasedResource {
+public interface ExampleDatabaseResource extends SimpleThreadBasedResource, BatchResource {
 
     // Re-use the existing API. The base URL is different though (new version).
 }
@@ -17,29 +17,41 @@
 package com.tomtom.examples.exampleUsingDatabase;
 
 import akka.dispatch.Futures;
+import akka.dispatch.Mapper;
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.common.JsonStreaming;
+import com.tomtom.examples.common.SingleFlight;
+import com.tomtom.examples.exampleCreatingScalableServices.BatchRequests;
+import com.tomtom.examples.exampleCreatingScalableServices.PageRequest;
+import com.tomtom.examples.exampleCreatingScalableServices.PersonFilter;
+import com.tomtom.examples.exampleCreatingScalableServices.PersonResponseCache;
 import com.tomtom.examples.exampleCreatingScalableServices.converters.PersonConverter;
 import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
-import com.tomtom.examples.exampleCreatingScalableServices.dto.PersonDTO;
-import com.tomtom.examples.exampleUsingDatabase.dao.PersonDao;
+import com.tomtom.examples.exampleCreatingScalableServices.dto.*;
+import com.tomtom.examples.exampleUsingDatabase.dao.AsyncPersonDao;
+import com.tomtom.examples.exampleUsingDatabase.dao.BulkStatus;
 import com.tomtom.speedtools.apivalidation.exceptions.ApiInvalidParameterCombinationException;
 import com.tomtom.speedtools.apivalidation.exceptions.ApiNotFoundException;
 import com.tomtom.speedtools.apivalidation.exceptions.ApiParameterMissingException;
 import com.tomtom.speedtools.apivalidation.exceptions.ApiUidSyntaxException;
 import com.tomtom.speedtools.domain.Uid;
-import com.tomtom.speedtools.mongodb.EntityStoreException;
+import com.tomtom.speedtools.rest.Reactor;
 import com.tomtom.speedtools.rest.ResourceProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.concurrent.Future;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import static com.tomtom.speedtools.loghelper.LogHelper.logId;
 
@@ -51,6 +63,9 @@ import static com.tomtom.speedtools.loghelper.LogHelper.logId;
  * file together with a human readable name. The method logId() keeps a limited size cache to map IDs to name. It is
  * often much more readable to see something like "Mr. Jones[cb17ffb0-adcf-11e3-a5e2-0800200c9a66]" than just the UUID
  * itself.
+ * <p>
+ * The database is accessed through an {@link AsyncPersonDao}: every method composes on the futures of the DAO, so no
+ * dispatcher thread waits for the database. The DAO is selected by "PersonDao.async" in example.properties.
  */
 @SuppressWarnings({"OverlyBroadThrowsClause", "ProhibitedExceptionDeclared"})
 public class ExampleDatabaseResourceImpl implements ExampleDatabaseResource {
@@ -59,55 +74,120 @@ public class ExampleDatabaseResourceImpl implements ExampleDatabaseResource {
     @Nonnull
     private final ResourceProcessor processor;
     @Nonnull
-    private final PersonDao personDao;
+    private final AsyncPersonDao personDao;
+    @Nonnull
+    private final Reactor reactor;
+    @Nonnull
+    private final SingleFlight<Uid<Person>, Person> getPersonFlight = new SingleFlight<>("example3.getPerson");
+    @Nonnull
+    private final PersonResponseCache responseCache = new PersonResponseCache(PersonResponseCache.DEFAULT_MAXIMUM_SIZE);
 
     @Inject
     public ExampleDatabaseResourceImpl(
+            @Nonnull final Reactor reactor,
             @Nonnull final ResourceProcessor processor,
-            @Nonnull final PersonDao personDao) {
+            @Nonnull final AsyncPersonDao personDao) {
+        assert reactor != null;
         assert processor != null;
         assert personDao != null;
 
         // Store the injected values.
+        this.reactor = reactor;
         this.processor = processor;
         this.personDao = personDao;
 
-        // Create a sample data store with entries. Note that this class is a singleton.
-        try {
-            personDao.storePerson(new Person(Uid.fromString("1-1-1-1-1").as(Person.class), "User 1", 30));
-            personDao.storePerson(new Person(Uid.fromString("1-1-1-1-2").as(Person.class), "User 2", 42));
-        } catch (final EntityStoreException ignored) {
-            // Ignore.
-        }
+        // Create a sample data store with entries. Note that this class is a singleton. Failures are ignored.
+        personDao.storePersons(Arrays.asList(
+                new Person(Uid.fromString("1-1-1-1-1").as(Person.class), "User 1", 30),
+                new Person(Uid.fromString("1-1-1-1-2").as(Person.class), "User 2", 42)));
     }
 
 
     @Override
     public void getPersons(
+            @Nullable @QueryParam(PARAM_COUNT) final Integer count,
+            @Nullable @QueryParam(PARAM_CURSOR) final String cursor,
+            @Nullable @QueryParam(PARAM_MIN_AGE) final Integer minAge,
+            @Nullable @QueryParam(PARAM_MAX_AGE) final Integer maxAge,
+            @Nullable @QueryParam(PARAM_NAME_PREFIX) final String namePrefix,
+            @Nullable @QueryParam(PARAM_SINCE) final String since,
+            @Context @Nonnull final Request request,
             @Suspended @Nonnull final AsyncResponse response) {
+        assert request != null;
         assert response != null;
 
         processor.process("getPersons", LOG, response, () -> {
 
-            final List<Person> list = personDao.getPersons();
-            final List<PersonDTO> result = new ArrayList<>();
-            for (final Person p : list) {
-                final PersonDTO binder = PersonConverter.fromDomain(p);
-                binder.validate();
-                result.add(binder);
+            // Check input. Listing changes is only supported by /example/2.
+            if (since != null) {
+                throw new ApiInvalidParameterCombinationException(PARAM_SINCE);
+            }
+            @Nonnull final PageRequest page = PageRequest.fromParameters(count, cursor);
+            @Nonnull final PersonFilter filter = PersonFilter.fromParameters(minAge, maxAge, namePrefix, page);
+
+            // Stream all persons from the database cursor as they are read, unless the client asks for XML. The
+            // cursor is read by the thread which writes the response body, not by a dispatcher thread.
+            @Nullable final JsonStreaming.Format format = JsonStreaming.selectFormat(request);
+            if ((format != null) && filter.isEmpty() && !page.isPaged()) {
+                return personDao.streamPersons().map(new Mapper<CloseableIterator<Person>, Void>() {
+                    @Nullable
+                    @Override
+                    public Void checkedApply(@Nonnull final CloseableIterator<Person> persons) {
+                        JsonStreaming.resume(response, JsonStreaming.ok("getPersons", format, null, persons,
+                                PersonConverter::fromDomain).build(), persons);
+                        return null;
+                    }
+                }, reactor.getExecutionContext());
             }
-            response.resume(Response.ok(result).build());
 
-            // The response is already set within this method body.
-            return Futures.successful(null);
+            final Future<List<Person>> futurePersons;
+            if (!filter.isEmpty()) {
+                futurePersons = personDao.findPersons(filter.getMinAge(), filter.getMaxAge(), filter.getNamePrefix(),
+                        page.getCount());
+            } else if (page.isPaged()) {
+                futurePersons = personDao.getPersons(page.getAfter(), page.getCount());
+            } else {
+                futurePersons = personDao.getPersons();
+            }
+            return futurePersons.map(new Mapper<List<Person>, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nonnull final List<Person> list) {
+                    final Response.ResponseBuilder builder;
+                    if (format == JsonStreaming.Format.NDJSON) {
+                        builder = JsonStreaming.ok("getPersons", format, null, CloseableIterator.of(list.iterator()),
+                                PersonConverter::fromDomain);
+                    } else {
+                        final List<PersonDTO> result = new ArrayList<>();
+                        for (final Person p : list) {
+                            final PersonDTO binder = PersonConverter.fromDomain(p);
+                            binder.validate();
+                            result.add(binder);
+                        }
+                        builder = Response.ok(result);
+                    }
+
+                    // The body is still a plain list, so the cursor for the next page is returned in a header.
+                    @Nullable final String nextCursor = filter.isEmpty() ?
+                            page.nextCursor(list.isEmpty() ? null : list.get(list.size() - 1).getId(), list.size()) :
+                            null;
+                    if (nextCursor != null) {
+                        builder.header(HEADER_NEXT_CURSOR, nextCursor);
+                    }
+                    response.resume(builder.build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
         });
     }
 
     @Override
     public void getPerson(
             @Nonnull @PathParam(PARAM_PERSON_ID) final String personId,
+            @Context @Nonnull final Request request,
             @Suspended @Nonnull final AsyncResponse response) {
         assert personId != null;
+        assert request != null;
         assert response != null;
 
         processor.process("getPerson", LOG, response, () -> {
@@ -117,20 +197,42 @@ public class ExampleDatabaseResourceImpl implements ExampleDatabaseResource {
                 throw new ApiUidSyntaxException("personId", personId);
             }
             final Uid<Person> personUid = new Uid<>(personId);
-            @Nullable final Person person = personDao.getPerson(personUid);
 
-            if (person == null) {
-                throw new ApiNotFoundException();
+            // Return the serialized person if it is cached; this may be a 304 (Not Modified).
+            @Nullable final Response cached = responseCache.get(personUid, request);
+            if (cached != null) {
+                response.resume(cached);
+                return Futures.successful(null);
             }
-            LOG.debug("getPerson: personId={}, person={}", personId, person);
 
-            // Build response.
-            final PersonDTO binder = PersonConverter.fromDomain(person); // Create the binder.
-            binder.validate();                                              // And validate it.
-            response.resume(Response.ok(binder).build());
-
-            // The response is already set within this method body.
-            return Futures.successful(null);
+            // Concurrent requests for the same person share a single database call: the first request reads the
+            // person and caches it, the others map the result once it is available.
+            return getPersonFlight.execute(personUid, () -> {
+                final long stamp = responseCache.getStamp(personUid);
+                return personDao.getPerson(personUid).map(new Mapper<Person, Person>() {
+                    @Nullable
+                    @Override
+                    public Person checkedApply(@Nullable final Person person) {
+                        if (person != null) {
+                            responseCache.put(person, stamp);
+                        }
+                        return person;
+                    }
+                }, reactor.getExecutionContext());
+            }).map(new Mapper<Person, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nullable final Person person) {
+                    if (person == null) {
+                        throw new ApiNotFoundException();
+                    }
+                    LOG.debug("getPerson: personId={}, person={}", personId, person);
+
+                    // Build response.
+                    response.resume(responseCache.toResponse(person, request));
+                    return null;
+                }
+            }, reactor.getExecutionContext());
         });
     }
 
@@ -157,17 +259,21 @@ public class ExampleDatabaseResourceImpl implements ExampleDatabaseResource {
 
             // Issue a log statement and store a human readable name for this new entity in logId().
             LOG.debug("createPerson: personId={}", logId(person.getId(), person.getName()));
-            personDao.storePerson(person);
-
-            // Create the response and validate it.
-            @Nonnull final PersonDTO binder = PersonConverter.fromDomain(person);    // Create binder
-            binder.validate();                                                          // And validate.
-
-            // Build the response and return it.
-            response.resume(Response.ok(binder).build());
-
-            // The response is already set within this method body.
-            return Futures.successful(null);
+            return personDao.storePerson(person).map(new Mapper<Void, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nullable final Void ignored) {
+
+                    // The person has a new ID, so it cannot be cached yet; no need to invalidate it. Create the
+                    // response and validate it.
+                    @Nonnull final PersonDTO binder = PersonConverter.fromDomain(person);    // Create binder
+                    binder.validate();                                                          // And validate.
+
+                    // Build the response and return it.
+                    response.resume(Response.ok(binder).build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
         });
     }
 
@@ -189,20 +295,153 @@ public class ExampleDatabaseResourceImpl implements ExampleDatabaseResource {
             // Output a debug log statement which uses logId() to display a human-readable name if it exists.
             LOG.debug("removePerson: personId={}", logId(personId));
 
+            // Find and remove the person in a single, atomic operation. Of concurrent deletes, only one finds it.
+            return personDao.removeAndReturn(personUid).map(new Mapper<Person, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nullable final Person person) {
+                    responseCache.invalidate(personUid);
+                    LOG.debug("removePerson: personId={}, person={}", personId, person);
+                    if (person == null) {
+                        throw new ApiNotFoundException();
+                    }
+
+                    // Build a "204 (NO CONTENT)" response. No binders required.
+                    response.resume(Response.noContent().build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
+        });
+    }
 
-            @Nullable final Person person = personDao.getPerson(personUid);
-            personDao.removePerson(personUid);
+    /**
+     * The persons are validated in one go, and are stored in bulk, with a status per person.
+     */
+    @Override
+    public void createPersons(
+            @Nullable final PersonsDTO personsDTO,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert response != null;
 
-            LOG.debug("removePerson: personId={}, person={}", personId, person);
-            if (person == null) {
-                throw new ApiNotFoundException();
-            }
+        processor.process("createPersons", LOG, response, () -> {
+
+            // Check input; this validates all persons in one go.
+            @Nonnull final List<Person> persons = BatchRequests.toNewPersons(personsDTO);
+            LOG.debug("createPersons: count={}", persons.size());
+
+            // Store all persons in bulk writes, with a status per person.
+            return personDao.storePersons(persons).map(new Mapper<List<BulkStatus>, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nonnull final List<BulkStatus> statuses) {
+
+                    // The persons have new IDs, so they cannot be cached yet; no need to invalidate them.
+                    final List<BatchItemDTO> results = new ArrayList<>(persons.size());
+                    for (int i = 0; i < persons.size(); ++i) {
+                        final Person person = persons.get(i);
+                        results.add((statuses.get(i) == BulkStatus.DONE) ?
+                                new BatchItemDTO(person.getId().toString(), Response.Status.OK.getStatusCode(),
+                                        PersonConverter.fromDomain(person)) :
+                                new BatchItemDTO(person.getId().toString(),
+                                        Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), null));
+                    }
+
+                    // Build the response and return it.
+                    @Nonnull final BatchResultDTO binder = new BatchResultDTO(results);
+                    binder.validate();
+                    response.resume(Response.ok(binder).build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
+        });
+    }
+
+    @Override
+    public void getPersonsById(
+            @Nullable final IdsDTO idsDTO,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert response != null;
+
+        processor.process("getPersonsById", LOG, response, () -> {
+
+            // Check input.
+            @Nonnull final List<Uid<Person>> ids = BatchRequests.toIds(idsDTO);
+            LOG.debug("getPersonsById: count={}", ids.size());
+
+            // Get all persons in a single query.
+            return personDao.getPersonsById(ids).map(new Mapper<List<Person>, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nonnull final List<Person> persons) {
+                    final Map<Uid<Person>, Person> found = new HashMap<>();
+                    for (final Person person : persons) {
+                        found.put(person.getId(), person);
+                    }
+                    final List<BatchItemDTO> results = new ArrayList<>(ids.size());
+                    for (final Uid<Person> id : ids) {
+                        final Person person = found.get(id);
+                        results.add((person != null) ?
+                                new BatchItemDTO(id.toString(), Response.Status.OK.getStatusCode(),
+                                        PersonConverter.fromDomain(person)) :
+                                new BatchItemDTO(id.toString(), Response.Status.NOT_FOUND.getStatusCode(), null));
+                    }
+
+                    // Build the response and return it.
+                    @Nonnull final BatchResultDTO binder = new BatchResultDTO(results);
+                    binder.validate();
+                    response.resume(Response.ok(binder).build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
+        });
+    }
+
+    /**
+     * The existing persons are found and removed in bulk, with a status per person.
+     */
+    @Override
+    public void removePersons(
+            @Nullable final IdsDTO idsDTO,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert response != null;
 
-            // Build a "204 (NO CONTENT)" response. No binders required.
-            response.resume(Response.noContent().build());
+        processor.process("removePersons", LOG, response, () -> {
 
-            // The response is already set within this method body.
-            return Futures.successful(null);
+            // Check input.
+            @Nonnull final List<Uid<Person>> ids = BatchRequests.toIds(idsDTO);
+            LOG.debug("removePersons: count={}", ids.size());
+
+            return personDao.removePersons(ids).map(new Mapper<List<BulkStatus>, Void>() {
+                @Nullable
+                @Override
+                public Void checkedApply(@Nonnull final List<BulkStatus> statuses) {
+                    final List<BatchItemDTO> results = new ArrayList<>(ids.size());
+                    for (int i = 0; i < ids.size(); ++i) {
+                        responseCache.invalidate(ids.get(i));
+                        final int status;
+                        switch (statuses.get(i)) {
+
+                            case DONE:
+                                status = Response.Status.NO_CONTENT.getStatusCode();
+                                break;
+
+                            case NOT_FOUND:
+                                status = Response.Status.NOT_FOUND.getStatusCode();
+                                break;
+
+                            default:
+                                status = Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+                        }
+                        results.add(new BatchItemDTO(ids.get(i).toString(), status, null));
+                    }
+
+                    // Build the response and return it.
+                    @Nonnull final BatchResultDTO binder = new BatchResultDTO(results);
+                    binder.validate();
+                    response.resume(Response.ok(binder).build());
+                    return null;
+                }
+            }, reactor.getExecutionContext());
         });
     }
 }
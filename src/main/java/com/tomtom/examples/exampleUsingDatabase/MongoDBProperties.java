@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Properties of the MongoDB connection of {@link ExampleDatabaseModule}, used by both the synchronous and the
+ * asynchronous driver. The values are read from the property files listed in the deployment module (see
+ * example.properties).
+ */
+public final class MongoDBProperties {
+
+    @Nonnull
+    private final List<ServerAddress> servers;
+    @Nonnull
+    private final String database;
+    private final int connectionsPerHost;
+    private final int waitQueueSize;
+    private final int maxWaitTimeMsecs;
+    private final int connectionTimeoutMsecs;
+    private final int socketTimeoutMsecs;
+    @Nonnull
+    private final WriteConcern writeConcern;
+
+    /**
+     * Create the properties.
+     *
+     * @param servers                Comma-separated list of "host:port" of the MongoDB servers.
+     * @param database               Database name.
+     * @param connectionsPerHost     Maximum number of connections in the pool of every server.
+     * @param waitQueueSize          Maximum number of requests waiting for a connection of a server, at least 1. It is
+     *                               rounded up to a multiple of connectionsPerHost, as the synchronous driver
+     *                               configures it per connection. Requests beyond this limit fail immediately.
+     * @param maxWaitTimeMsecs       Maximum time a request waits for a connection, in milliseconds.
+     * @param connectionTimeoutMsecs Connect timeout, in milliseconds. 0 means none.
+     * @param socketTimeoutMsecs     Socket read timeout, in milliseconds. 0 means none.
+     * @param writeConcern           Name of the write concern, such as "ACKNOWLEDGED", "JOURNALED" or "MAJORITY".
+     */
+    @Inject
+    public MongoDBProperties(
+            @Named("MongoDBExample.servers") @Nonnull final String servers,
+            @Named("MongoDBExample.database") @Nonnull final String database,
+            @Named("MongoDBExample.connectionsPerHost") final int connectionsPerHost,
+            @Named("MongoDBExample.waitQueueSize") final int waitQueueSize,
+            @Named("MongoDBExample.maxWaitTimeMsecs") final int maxWaitTimeMsecs,
+            @Named("MongoDBExample.connectionTimeoutMsecs") final int connectionTimeoutMsecs,
+            @Named("MongoDBExample.socketTimeoutMsecs") final int socketTimeoutMsecs,
+            @Named("MongoDBExample.writeConcern") @Nonnull final String writeConcern) {
+        assert servers != null;
+        assert database != null;
+        assert connectionsPerHost > 0;
+        assert maxWaitTimeMsecs >= 0;
+        assert connectionTimeoutMsecs >= 0;
+        assert socketTimeoutMsecs >= 0;
+        assert writeConcern != null;
+        if (waitQueueSize < 1) {
+            throw new IllegalArgumentException("MongoDBExample.waitQueueSize must be at least 1, the synchronous " +
+                    "driver cannot be configured without a wait queue: " + waitQueueSize);
+        }
+        this.servers = parseServers(servers);
+        this.database = database;
+        this.connectionsPerHost = connectionsPerHost;
+        this.waitQueueSize = waitQueueSize;
+        this.maxWaitTimeMsecs = maxWaitTimeMsecs;
+        this.connectionTimeoutMsecs = connectionTimeoutMsecs;
+        this.socketTimeoutMsecs = socketTimeoutMsecs;
+        final WriteConcern namedWriteConcern = WriteConcern.valueOf(writeConcern.trim());
+        if (namedWriteConcern == null) {
+            throw new IllegalArgumentException("Unknown write concern: " + writeConcern);
+        }
+        this.writeConcern = namedWriteConcern;
+    }
+
+    @Nonnull
+    public List<ServerAddress> getServers() {
+        return servers;
+    }
+
+    @Nonnull
+    public String getDatabase() {
+        return database;
+    }
+
+    public int getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    public int getWaitQueueSize() {
+        return waitQueueSize;
+    }
+
+    /**
+     * Return the wait queue size as a multiple of the pool size, as the synchronous driver expects it.
+     *
+     * @return Number of requests per connection that may wait for a connection, at least 1.
+     */
+    public int getThreadsAllowedToBlockForConnectionMultiplier() {
+        return (waitQueueSize + connectionsPerHost - 1) / connectionsPerHost;
+    }
+
+    public int getMaxWaitTimeMsecs() {
+        return maxWaitTimeMsecs;
+    }
+
+    public int getConnectionTimeoutMsecs() {
+        return connectionTimeoutMsecs;
+    }
+
+    public int getSocketTimeoutMsecs() {
+        return socketTimeoutMsecs;
+    }
+
+    @Nonnull
+    public WriteConcern getWriteConcern() {
+        return writeConcern;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+
+    @Nonnull
+    private static List<ServerAddress> parseServers(@Nonnull final String servers) {
+        assert servers != null;
+        final List<ServerAddress> result = new ArrayList<>();
+        for (final String server : servers.split(",")) {
+            final String trimmed = server.trim();
+            if (!trimmed.isEmpty()) {
+                final int colon = trimmed.lastIndexOf(':');
+                result.add((colon < 0) ? new ServerAddress(trimmed) :
+                        new ServerAddress(trimmed.substring(0, colon), Integer.parseInt(trimmed.substring(colon + 1))));
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("No MongoDB servers: " + servers);
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
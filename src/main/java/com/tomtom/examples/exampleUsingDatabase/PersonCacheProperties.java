@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase;
+
+import com.tomtom.examples.exampleUsingDatabase.dao.CachingPersonDao;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Properties for the {@link CachingPersonDao}. The values are read from the property files listed in the deployment
+ * module (see example.properties).
+ */
+public final class PersonCacheProperties {
+
+    private final boolean enabled;
+    private final long maximumSize;
+    private final long expireAfterSecs;
+
+    /**
+     * Create the properties.
+     *
+     * @param enabled         If true, persons read by ID are cached in front of MongoDB.
+     * @param maximumSize     Maximum number of cached persons.
+     * @param expireAfterSecs Time after which a cached person expires, in seconds. 0 means never.
+     */
+    @Inject
+    public PersonCacheProperties(
+            @Named("PersonCache.enabled") final boolean enabled,
+            @Named("PersonCache.maximumSize") final long maximumSize,
+            @Named("PersonCache.expireAfterSecs") final long expireAfterSecs) {
+        assert maximumSize >= 0;
+        assert expireAfterSecs >= 0;
+        this.enabled = enabled;
+        this.maximumSize = maximumSize;
+        this.expireAfterSecs = expireAfterSecs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getExpireAfterSecs() {
+        return expireAfterSecs;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase;
+
+import com.tomtom.examples.exampleUsingDatabase.dao.memory.PersonDaoMemoryImpl;
+import com.tomtom.examples.exampleUsingDatabase.dao.mongodb.AsyncPersonDaoMongoDBImpl;
+import com.tomtom.examples.exampleUsingDatabase.dao.mongodb.PersonDaoMongoDBImpl;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Locale;
+
+/**
+ * Properties for the {@link PersonDaoMongoDBImpl}, {@link AsyncPersonDaoMongoDBImpl} and {@link PersonDaoMemoryImpl}.
+ * The values are read from the property files listed in the deployment module (see example.properties).
+ */
+public final class PersonDaoProperties {
+
+    /**
+     * Implementation of the DAO.
+     */
+    public enum StoreType {
+        MONGODB,    // MongoDB, through the synchronous or asynchronous driver.
+        MEMORY      // In-memory, optionally with snapshots on disk.
+    }
+
+    @Nonnull
+    private final StoreType storeType;
+    private final int batchSize;
+    private final int bulkWriteSize;
+    private final boolean async;
+    private final int blockingThreads;
+    @Nonnull
+    private final String snapshotFile;
+    private final int snapshotIntervalSecs;
+
+    /**
+     * Create the properties.
+     *
+     * @param storeType            Implementation of the DAO: "mongodb" or "memory".
+     * @param batchSize            Number of documents a cursor gets from MongoDB in a single round trip. 0 means the
+     *                             server default.
+     * @param bulkWriteSize        Maximum number of documents written in a single bulk write.
+     * @param async                If true, use the asynchronous MongoDB driver. Otherwise, the synchronous driver is
+     *                             called on a thread pool.
+     * @param blockingThreads      Size of the thread pool for the synchronous driver.
+     * @param snapshotFile         Snapshot file of the in-memory DAO. If empty, the persons are not persisted.
+     * @param snapshotIntervalSecs Interval between snapshots of the in-memory DAO, in seconds.
+     */
+    @Inject
+    public PersonDaoProperties(
+            @Named("PersonDao.store") @Nonnull final String storeType,
+            @Named("PersonDao.batchSize") final int batchSize,
+            @Named("PersonDao.bulkWriteSize") final int bulkWriteSize,
+            @Named("PersonDao.async") final boolean async,
+            @Named("PersonDao.blockingThreads") final int blockingThreads,
+            @Named("PersonDao.snapshotFile") @Nonnull final String snapshotFile,
+            @Named("PersonDao.snapshotIntervalSecs") final int snapshotIntervalSecs) {
+        assert storeType != null;
+        assert batchSize >= 0;
+        assert bulkWriteSize > 0;
+        assert blockingThreads > 0;
+        assert snapshotFile != null;
+        assert snapshotIntervalSecs > 0;
+        this.storeType = StoreType.valueOf(storeType.trim().toUpperCase(Locale.US));
+        this.batchSize = batchSize;
+        this.bulkWriteSize = bulkWriteSize;
+        this.async = async;
+        this.blockingThreads = blockingThreads;
+        this.snapshotFile = snapshotFile.trim();
+        this.snapshotIntervalSecs = snapshotIntervalSecs;
+    }
+
+    @Nonnull
+    public StoreType getStoreType() {
+        return storeType;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getBulkWriteSize() {
+        return bulkWriteSize;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getBlockingThreads() {
+        return blockingThreads;
+    }
+
+    public boolean isSnapshotEnabled() {
+        return !snapshotFile.isEmpty();
+    }
+
+    @Nonnull
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public int getSnapshotIntervalSecs() {
+        return snapshotIntervalSecs;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
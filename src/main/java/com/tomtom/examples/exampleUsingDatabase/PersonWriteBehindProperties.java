@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase;
+
+import com.tomtom.examples.exampleUsingDatabase.dao.WriteBehindPersonDao;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Properties for the {@link WriteBehindPersonDao}. The values are read from the property files listed in the
+ * deployment module (see example.properties).
+ */
+public final class PersonWriteBehindProperties {
+
+    private final boolean enabled;
+    private final int queueSize;
+    private final int flushSize;
+    private final long flushIntervalMsecs;
+    private final long maxWaitMsecs;
+
+    /**
+     * Create the properties.
+     *
+     * @param enabled            If true, persons are stored write-behind, in front of MongoDB.
+     * @param queueSize          Maximum number of queued persons.
+     * @param flushSize          Number of queued persons which triggers a flush.
+     * @param flushIntervalMsecs Maximum time between flushes, in milliseconds.
+     * @param maxWaitMsecs       Maximum time a store waits for room in a full queue, in milliseconds.
+     */
+    @Inject
+    public PersonWriteBehindProperties(
+            @Named("PersonWriteBehind.enabled") final boolean enabled,
+            @Named("PersonWriteBehind.queueSize") final int queueSize,
+            @Named("PersonWriteBehind.flushSize") final int flushSize,
+            @Named("PersonWriteBehind.flushIntervalMsecs") final long flushIntervalMsecs,
+            @Named("PersonWriteBehind.maxWaitMsecs") final long maxWaitMsecs) {
+        assert queueSize > 0;
+        assert (flushSize > 0) && (flushSize <= queueSize);
+        assert flushIntervalMsecs > 0;
+        assert maxWaitMsecs >= 0;
+        this.enabled = enabled;
+        this.queueSize = queueSize;
+        this.flushSize = flushSize;
+        this.flushIntervalMsecs = flushIntervalMsecs;
+        this.maxWaitMsecs = maxWaitMsecs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    public long getFlushIntervalMsecs() {
+        return flushIntervalMsecs;
+    }
+
+    public long getMaxWaitMsecs() {
+        return maxWaitMsecs;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao;
+
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+import scala.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Non-blocking variant of {@link PersonDao}. The methods return immediately with a future, which is completed when the
+ * database operation has finished, so no thread waits for the database. If an operation fails, its future fails with
+ * a DAO exception, such as {@link com.tomtom.speedtools.mongodb.InternalDaoException}.
+ *
+ * For a description of the methods, see {@link PersonDao}.
+ */
+public interface AsyncPersonDao {
+
+    @Nonnull
+    Future<Void> storePerson(@Nonnull Person person);
+
+    /**
+     * Unlike {@link PersonDao#getPerson(Uid)}, a person which does not exist is not an error.
+     *
+     * @param personId Id of the {@link Person}.
+     * @return Future {@link Person}, or future null if it does not exist.
+     */
+    @Nonnull
+    Future<Person> getPerson(@Nonnull Uid<Person> personId);
+
+    @Nonnull
+    Future<Person> removeAndReturn(@Nonnull Uid<Person> personId);
+
+    @Nonnull
+    Future<List<Person>> getPersons();
+
+    /**
+     * The future is completed when the first batch of persons is available. Iterating may block while the next batch
+     * is read, so do not iterate on a dispatcher thread.
+     *
+     * @return Future iterator over all {@link Person} instances, which must be closed after use.
+     */
+    @Nonnull
+    Future<CloseableIterator<Person>> streamPersons();
+
+    @Nonnull
+    Future<List<Person>> getPersons(@Nullable Uid<Person> after, int count);
+
+    @Nonnull
+    Future<List<Person>> getPersonsById(@Nonnull Collection<Uid<Person>> personIds);
+
+    @Nonnull
+    Future<List<Person>> findPersons(
+            @Nullable Integer minAge,
+            @Nullable Integer maxAge,
+            @Nullable String namePrefix,
+            int count);
+
+    @Nonnull
+    Future<List<BulkStatus>> storePersons(@Nonnull List<Person> persons);
+
+    @Nonnull
+    Future<List<BulkStatus>> removePersons(@Nonnull List<Uid<Person>> personIds);
+}
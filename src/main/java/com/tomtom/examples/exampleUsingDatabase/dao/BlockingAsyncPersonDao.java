@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao;
+
+import akka.dispatch.ExecutionContexts;
+import akka.dispatch.Futures;
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+import com.tomtom.speedtools.mongodb.EntityNotFoundException;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Adapter which offers a blocking {@link PersonDao} as an {@link AsyncPersonDao}. The blocking calls are executed on a
+ * dedicated, fixed-size thread pool, so they do not tie up the threads of the Akka dispatcher or the servlet container,
+ * but every database round trip still ties up a thread of this pool. The size of the pool limits the number of
+ * concurrent database calls.
+ *
+ * A DAO which never blocks, such as the in-memory DAO, can be called on the calling thread instead, without a pool.
+ */
+public final class BlockingAsyncPersonDao implements AsyncPersonDao, AutoCloseable {
+
+    @Nonnull
+    private final PersonDao delegate;
+    @Nonnull
+    private final ExecutionContext executionContext;
+    @Nullable
+    private final ExecutorService executor;
+
+    /**
+     * Create the adapter.
+     *
+     * @param delegate  Blocking DAO.
+     * @param nrThreads Number of threads to execute blocking calls on.
+     */
+    public BlockingAsyncPersonDao(@Nonnull final PersonDao delegate, final int nrThreads) {
+        super();
+        assert delegate != null;
+        assert nrThreads > 0;
+        this.delegate = delegate;
+        this.executor = Executors.newFixedThreadPool(nrThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "BlockingAsyncPersonDao");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executionContext = ExecutionContexts.fromExecutorService(executor);
+    }
+
+    /**
+     * Create the adapter for a DAO which never blocks. The calls are executed on the calling thread, so the futures
+     * are completed when they are returned.
+     *
+     * @param delegate Non-blocking DAO.
+     */
+    public BlockingAsyncPersonDao(@Nonnull final PersonDao delegate) {
+        super();
+        assert delegate != null;
+        this.delegate = delegate;
+        this.executor = null;
+        this.executionContext = ExecutionContexts.parasitic();
+    }
+
+    @Nonnull
+    @Override
+    public Future<Void> storePerson(@Nonnull final Person person) {
+        assert person != null;
+        return Futures.future(() -> {
+            delegate.storePerson(person);
+            return null;
+        }, executionContext);
+    }
+
+    @Nonnull
+    @Override
+    public Future<Person> getPerson(@Nonnull final Uid<Person> personId) {
+        assert personId != null;
+        return Futures.future(() -> {
+            try {
+                return delegate.getPerson(personId);
+            } catch (final EntityNotFoundException ignored) {
+                return null;
+            }
+        }, executionContext);
+    }
+
+    @Nonnull
+    @Override
+    public Future<Person> removeAndReturn(@Nonnull final Uid<Person> personId) {
+        assert personId != null;
+        return Futures.future(() -> delegate.removeAndReturn(personId), executionContext);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<Person>> getPersons() {
+        return Futures.future(delegate::getPersons, executionContext);
+    }
+
+    @Nonnull
+    @Override
+    public Future<CloseableIterator<Person>> streamPersons() {
+        return Futures.future(delegate::streamPersons, executionContext);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<Person>> getPersons(@Nullable final Uid<Person> after, final int count) {
+        return Futures.future(() -> delegate.getPersons(after, count), executionContext);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<Person>> getPersonsById(@Nonnull final Collection<Uid<Person>> personIds) {
+        assert personIds != null;
+        return Futures.future(() -> delegate.getPersonsById(personIds), executionContext);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<Person>> findPersons(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            final int count) {
+        return Futures.future(() -> delegate.findPersons(minAge, maxAge, namePrefix, count), executionContext);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<BulkStatus>> storePersons(@Nonnull final List<Person> persons) {
+        assert persons != null;
+        return Futures.future(() -> delegate.storePersons(persons), executionContext);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<BulkStatus>> removePersons(@Nonnull final List<Uid<Person>> personIds) {
+        assert personIds != null;
+        return Futures.future(() -> delegate.removePersons(personIds), executionContext);
+    }
+
+    /**
+     * Shut down the thread pool, if any. Calls which have been started are completed.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
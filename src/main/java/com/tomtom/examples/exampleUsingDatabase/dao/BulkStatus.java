@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao;
+
+/**
+ * Outcome of a single entity of a bulk write, such as {@link PersonDao#storePersons(java.util.List)}.
+ */
+public enum BulkStatus {
+
+    /**
+     * The entity was stored or removed.
+     */
+    DONE,
+
+    /**
+     * The entity to remove does not exist.
+     */
+    NOT_FOUND,
+
+    /**
+     * The entity could not be stored or removed. The cause is logged.
+     */
+    FAILED
+}
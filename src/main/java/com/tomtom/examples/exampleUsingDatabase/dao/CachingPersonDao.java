@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.common.MBeans;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+import com.tomtom.speedtools.mongodb.EntityNotFoundException;
+import com.tomtom.speedtools.mongodb.EntityRemoveException;
+import com.tomtom.speedtools.mongodb.EntityStoreException;
+import com.tomtom.speedtools.mongodb.InternalDaoException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link PersonDao} decorator which caches persons read by ID, in front of another DAO.
+ *
+ * The cache is a Caffeine cache, which is bounded in size and evicts with the W-TinyLFU policy: persons which are
+ * read often stay in the cache, even if many other persons are read only once. Optionally, persons expire a fixed
+ * time after they were loaded into the cache; reading a cached person does not extend its lifetime.
+ *
+ * The cache holds futures. Concurrent reads of a person which is not cached share a single read of the underlying DAO:
+ * the first read adds a future to the cache and reads the person, and the others wait for the future. The underlying
+ * DAO is read after the future was added to the cache, rather than inside the atomic load of the cache, which would
+ * block reads and invalidations of unrelated persons which happen to share a lock of the underlying map.
+ *
+ * Storing or removing a person invalidates its entry after the underlying DAO has been updated, and increments an
+ * invalidation stamp for the ID, taken from a fixed set of stamps. A read keeps its result in the cache only if the
+ * stamp of the ID did not change while the person was read, so a person read before an update never stays in the cache
+ * after the update. Updates made to the database by other processes are only seen when the entry is evicted or
+ * expires.
+ *
+ * Queries for lists of persons are not cached, except that {@link #getPersonsById(Collection)} serves the persons it
+ * finds in the cache from the cache.
+ */
+public final class CachingPersonDao implements PersonDao, PersonCacheMXBean {
+
+    // Number of invalidation stamps. IDs which share a stamp only cause an occasional extra read.
+    private static final int NR_STAMPS = 1024;
+
+    @Nonnull
+    private final PersonDao delegate;
+    @Nonnull
+    private final AsyncCache<Uid<Person>, Person> cache;
+    @Nonnull
+    private final AtomicLongArray stamps = new AtomicLongArray(NR_STAMPS);
+
+    /**
+     * Create a caching DAO. Its statistics are registered with the platform MBean server.
+     *
+     * @param delegate        Underlying DAO.
+     * @param maximumSize     Maximum number of cached persons.
+     * @param expireAfterSecs Time after which a cached person expires, in seconds. 0 means never.
+     */
+    public CachingPersonDao(
+            @Nonnull final PersonDao delegate,
+            final long maximumSize,
+            final long expireAfterSecs) {
+        super();
+        assert delegate != null;
+        assert maximumSize >= 0;
+        assert expireAfterSecs >= 0;
+        this.delegate = delegate;
+
+        final Caffeine<Object, Object> builder = Caffeine.newBuilder().
+                maximumSize(maximumSize).
+                recordStats();
+        if (expireAfterSecs > 0) {
+            builder.expireAfterWrite(expireAfterSecs, TimeUnit.SECONDS);
+        }
+        this.cache = builder.buildAsync();
+        MBeans.register(this, "PersonCache", "personDao");
+    }
+
+    @Override
+    public void storePerson(@Nonnull final Person person) throws EntityStoreException {
+        assert person != null;
+        try {
+            delegate.storePerson(person);
+        } finally {
+            invalidate(person.getId());
+        }
+    }
+
+    @Override
+    public void removePerson(@Nonnull final Uid<Person> personId) throws EntityRemoveException {
+        assert personId != null;
+        try {
+            delegate.removePerson(personId);
+        } finally {
+            invalidate(personId);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Person removeAndReturn(@Nonnull final Uid<Person> personId) throws InternalDaoException {
+        assert personId != null;
+        try {
+            return delegate.removeAndReturn(personId);
+        } finally {
+            invalidate(personId);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<BulkStatus> storePersons(@Nonnull final List<Person> persons) {
+        assert persons != null;
+        try {
+            return delegate.storePersons(persons);
+        } finally {
+            for (final Person person : persons) {
+                invalidate(person.getId());
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<BulkStatus> removePersons(@Nonnull final List<Uid<Person>> personIds) {
+        assert personIds != null;
+        try {
+            return delegate.removePersons(personIds);
+        } finally {
+            for (final Uid<Person> personId : personIds) {
+                invalidate(personId);
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Person getPerson(@Nonnull final Uid<Person> personId)
+            throws InternalDaoException, EntityNotFoundException {
+        assert personId != null;
+        final CompletableFuture<Person> load = new CompletableFuture<>();
+        final CompletableFuture<Person> future = cache.get(personId,
+                (final Uid<Person> key, final Executor executor) -> load);
+        if (future == load) {
+
+            // This read added the entry, so it reads the person; a failed read is removed from the cache.
+            final long stamp = stamps.get(stampIndex(personId));
+            try {
+                load.complete(delegate.getPerson(personId));
+            } catch (final Throwable e) {
+                load.completeExceptionally(e);
+            }
+
+            // If the person was updated during the read, the result may be stale: return it, but do not cache it.
+            if (stamps.get(stampIndex(personId)) != stamp) {
+                cache.asMap().remove(personId, load);
+            }
+        }
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            final Throwable cause = e.getCause();
+
+            // Persons which are not found are not cached.
+            if (cause instanceof EntityNotFoundException) {
+                throw (EntityNotFoundException) cause;
+            }
+            if (cause instanceof InternalDaoException) {
+                throw (InternalDaoException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> getPersons() throws InternalDaoException {
+        return delegate.getPersons();
+    }
+
+    @Nonnull
+    @Override
+    public CloseableIterator<Person> streamPersons() throws InternalDaoException {
+        return delegate.streamPersons();
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> getPersons(@Nullable final Uid<Person> after, final int count) throws InternalDaoException {
+        return delegate.getPersons(after, count);
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> getPersonsById(@Nonnull final Collection<Uid<Person>> personIds)
+            throws InternalDaoException {
+        assert personIds != null;
+
+        // Remove duplicate IDs, so a request which is fully cached is recognized as such.
+        final Set<Uid<Person>> uniqueIds = new LinkedHashSet<>(personIds);
+        final Map<Uid<Person>, Person> cached = cache.synchronous().getAllPresent(uniqueIds);
+        if (cached.size() == uniqueIds.size()) {
+            return new ArrayList<>(cached.values());
+        }
+        final List<Uid<Person>> missing = new ArrayList<>(uniqueIds.size() - cached.size());
+        for (final Uid<Person> personId : uniqueIds) {
+            if (!cached.containsKey(personId)) {
+                missing.add(personId);
+            }
+        }
+        final List<Person> result = new ArrayList<>(cached.values());
+        result.addAll(delegate.getPersonsById(missing));
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public List<Uid<Person>> getPersonIds(@Nonnull final Collection<Uid<Person>> personIds)
+            throws InternalDaoException {
+        return delegate.getPersonIds(personIds);
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> findPersons(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            final int count) throws InternalDaoException {
+        return delegate.findPersons(minAge, maxAge, namePrefix, count);
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.synchronous().stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.synchronous().stats().missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.synchronous().stats().evictionCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return cache.synchronous().stats().hitRate();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    /**
+     * Invalidate the cached person of an ID, after the person was updated in the underlying DAO.
+     *
+     * @param personId Person ID.
+     */
+    private void invalidate(@Nonnull final Uid<Person> personId) {
+        stamps.incrementAndGet(stampIndex(personId));
+        cache.synchronous().invalidate(personId);
+    }
+
+    private static int stampIndex(@Nonnull final Uid<Person> personId) {
+        return (personId.hashCode() & Integer.MAX_VALUE) % NR_STAMPS;
+    }
+}
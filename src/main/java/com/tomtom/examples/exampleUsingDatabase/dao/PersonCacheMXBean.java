@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao;
+
+/**
+ * Management interface of {@link CachingPersonDao}.
+ */
+public interface PersonCacheMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    /**
+     * Return the fraction of lookups which were served from the cache.
+     *
+     * @return Hits divided by lookups, or 1 if there were no lookups.
+     */
+    double getHitRate();
+
+    /**
+     * Return the approximate number of cached persons.
+     *
+     * @return Number of cached persons.
+     */
+    long getSize();
+}
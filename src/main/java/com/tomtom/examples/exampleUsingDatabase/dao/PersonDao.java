@@ -17,6 +17,7 @@
 package com.tomtom.examples.exampleUsingDatabase.dao;
 
 
+import com.tomtom.examples.common.CloseableIterator;
 import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
 import com.tomtom.speedtools.domain.Uid;
 import com.tomtom.speedtools.mongodb.EntityNotFoundException;
@@ -25,6 +26,8 @@ import com.tomtom.speedtools.mongodb.EntityStoreException;
 import com.tomtom.speedtools.mongodb.InternalDaoException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.List;
 
 public interface PersonDao {
@@ -46,6 +49,39 @@ public interface PersonDao {
      */
     void removePerson(@Nonnull Uid<Person> personId) throws EntityRemoveException;
 
+    /**
+     * Removes the {@link Person} represented by the given ID and returns it, in a single atomic operation. Of
+     * concurrent removals of the same person, only one returns the person.
+     *
+     * @param personId ID of {@link Person} to remove.
+     * @return The removed {@link Person}, or null if it does not exist.
+     * @throws InternalDaoException When the entity could not be removed.
+     */
+    @Nullable
+    Person removeAndReturn(@Nonnull Uid<Person> personId) throws InternalDaoException;
+
+    /**
+     * Stores the given persons, replacing existing persons with the same IDs, in unordered bulk writes. This is much
+     * faster than storing them one by one, as a single write is sent for many persons at a time. As the writes are
+     * unordered, a person which cannot be stored does not stop the others from being stored.
+     *
+     * @param persons Persons to store.
+     * @return For every person, in the same order, {@link BulkStatus#DONE} or {@link BulkStatus#FAILED}.
+     */
+    @Nonnull
+    List<BulkStatus> storePersons(@Nonnull List<Person> persons);
+
+    /**
+     * Removes the persons with the given IDs in unordered bulk writes. Persons are found to exist before they are
+     * removed, so a person which is removed concurrently may be reported as removed by both removals.
+     *
+     * @param personIds IDs of the persons to remove.
+     * @return For every ID, in the same order, {@link BulkStatus#DONE}, {@link BulkStatus#NOT_FOUND} or
+     * {@link BulkStatus#FAILED}.
+     */
+    @Nonnull
+    List<BulkStatus> removePersons(@Nonnull List<Uid<Person>> personIds);
+
     /**
      * Gets the {@link Person} with given ID.
      *
@@ -65,4 +101,64 @@ public interface PersonDao {
      */
     @Nonnull
     List<Person> getPersons() throws InternalDaoException;
+
+    /**
+     * Streams all persons, reading them from the database while iterating, so they do not need to fit in memory at
+     * once. The iterator must be closed after use. Errors while iterating are thrown as {@link IllegalStateException}.
+     *
+     * @return Iterator over all {@link Person} instances.
+     * @throws InternalDaoException When the persons could not be read.
+     */
+    @Nonnull
+    CloseableIterator<Person> streamPersons() throws InternalDaoException;
+
+    /**
+     * Gets a page of persons, ordered by ID. Use the ID of the last person of a page to get the next page, so the
+     * cost of getting a page does not depend on the number of pages before it.
+     *
+     * @param after Only return persons with an ID after this ID. If null, start at the first person.
+     * @param count Maximum number of persons to return.
+     * @return List of {@link Person} instances, at most count.
+     * @throws InternalDaoException When entity could not be read.
+     */
+    @Nonnull
+    List<Person> getPersons(@Nullable Uid<Person> after, int count) throws InternalDaoException;
+
+    /**
+     * Gets the persons with the given IDs, in a single query. Persons which are not found are not returned.
+     *
+     * @param personIds IDs of the persons.
+     * @return List of {@link Person} instances found, in no particular order.
+     * @throws InternalDaoException When entity could not be read.
+     */
+    @Nonnull
+    List<Person> getPersonsById(@Nonnull Collection<Uid<Person>> personIds) throws InternalDaoException;
+
+    /**
+     * Gets which of the given person IDs exist, in a single query. Only the IDs are read, not the persons.
+     *
+     * @param personIds IDs of the persons.
+     * @return List of IDs found, in no particular order.
+     * @throws InternalDaoException When entity could not be read.
+     */
+    @Nonnull
+    List<Uid<Person>> getPersonIds(@Nonnull Collection<Uid<Person>> personIds) throws InternalDaoException;
+
+    /**
+     * Finds persons by age range and/or name prefix, using secondary indexes on name and age. Persons match if they
+     * match all given parameters.
+     *
+     * @param minAge     Minimum age, inclusive, or null.
+     * @param maxAge     Maximum age, inclusive, or null.
+     * @param namePrefix Prefix of the name, case-sensitive, or null.
+     * @param count      Maximum number of persons to return.
+     * @return List of {@link Person} instances, at most count.
+     * @throws InternalDaoException When entity could not be read.
+     */
+    @Nonnull
+    List<Person> findPersons(
+            @Nullable Integer minAge,
+            @Nullable Integer maxAge,
+            @Nullable String namePrefix,
+            int count) throws InternalDaoException;
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao;
+
+/**
+ * Management interface of {@link WriteBehindPersonDao}.
+ */
+public interface WriteBehindMXBean {
+
+    /**
+     * Return the number of persons waiting to be written.
+     *
+     * @return Number of pending persons.
+     */
+    int getPendingCount();
+
+    long getFlushCount();
+
+    long getWrittenCount();
+
+    /**
+     * Return the number of writes which replaced a pending write of the same person, and were not written separately.
+     *
+     * @return Number of collapsed writes.
+     */
+    long getCollapsedCount();
+
+    /**
+     * Return the number of writes which were rejected because the queue stayed full for the maximum wait time.
+     *
+     * @return Number of rejected writes.
+     */
+    long getRejectedCount();
+
+    /**
+     * Return the number of persons which could not be written by a flush, and were dropped.
+     *
+     * @return Number of failed writes.
+     */
+    long getFailedCount();
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao;
+
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.common.MBeans;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.speedtools.domain.Uid;
+import com.tomtom.speedtools.mongodb.EntityNotFoundException;
+import com.tomtom.speedtools.mongodb.EntityRemoveException;
+import com.tomtom.speedtools.mongodb.EntityStoreException;
+import com.tomtom.speedtools.mongodb.InternalDaoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.tomtom.speedtools.loghelper.LogHelper.logId;
+
+/**
+ * {@link PersonDao} decorator which stores persons write-behind: a stored person is put in a queue and the call
+ * returns immediately. The queue is flushed to the underlying DAO in bulk writes, every flush interval or as soon as
+ * it holds a flush size of persons, whichever comes first.
+ *
+ * The queue is a concurrent map from person ID to the person to write, so storing a person which is still queued
+ * replaces the queued person and only the last one is written. The number of queued persons is bounded: if the queue
+ * is full, a store waits for a flush to make room, up to a maximum wait time, after which the store fails. Storing
+ * persons does not lock.
+ *
+ * {@link #getPerson(Uid)}, {@link #getPersonsById(Collection)} and {@link #getPersonIds(Collection)} read queued
+ * persons from the queue, so a client always reads its own writes. The other queries only see persons after they
+ * have been flushed. Removals are written through: they drop the queued person and, if the person is being written
+ * by a flush in progress, wait for that write, so a removed person is never written afterwards. Removals of persons
+ * which are not being written do not wait at all.
+ *
+ * Persons which cannot be written by a flush are logged and dropped. Closing the DAO flushes the queue; stores after
+ * that are written through. A store which queues a person while the DAO is being closed flushes the queue itself, as
+ * the final flush may have run before the person was queued.
+ */
+public final class WriteBehindPersonDao implements PersonDao, WriteBehindMXBean, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindPersonDao.class);
+
+    @Nonnull
+    private final PersonDao delegate;
+    private final int flushSize;
+    private final long maxWaitMsecs;
+
+    // Queued persons, by ID. An entry is only removed once it is written or superseded by a removal.
+    @Nonnull
+    private final ConcurrentHashMap<Uid<Person>, Person> queue = new ConcurrentHashMap<>();
+    @Nonnull
+    private final Semaphore room;
+    @Nonnull
+    private final ScheduledExecutorService executor;
+    @Nonnull
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean closed;
+
+    // IDs of the persons being written by a flush, with the future completion of their write. A removal of such a
+    // person waits for the write, so it never overtakes it.
+    @Nonnull
+    private final ConcurrentHashMap<Uid<Person>, CompletableFuture<Void>> writing = new ConcurrentHashMap<>();
+
+    // Held during a flush, so flushes of the periodic task, a full queue and close() do not run concurrently.
+    @Nonnull
+    private final Object flushLock = new Object();
+
+    @Nonnull
+    private final LongAdder flushes = new LongAdder();
+    @Nonnull
+    private final LongAdder written = new LongAdder();
+    @Nonnull
+    private final LongAdder collapsed = new LongAdder();
+    @Nonnull
+    private final LongAdder rejected = new LongAdder();
+    @Nonnull
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Create a write-behind DAO. Its statistics are registered with the platform MBean server.
+     *
+     * @param delegate           Underlying DAO.
+     * @param queueSize          Maximum number of queued persons.
+     * @param flushSize          Number of queued persons which triggers a flush.
+     * @param flushIntervalMsecs Maximum time between flushes, in milliseconds.
+     * @param maxWaitMsecs       Maximum time a store waits for room in a full queue, in milliseconds.
+     */
+    public WriteBehindPersonDao(
+            @Nonnull final PersonDao delegate,
+            final int queueSize,
+            final int flushSize,
+            final long flushIntervalMsecs,
+            final long maxWaitMsecs) {
+        super();
+        assert delegate != null;
+        assert queueSize > 0;
+        assert (flushSize > 0) && (flushSize <= queueSize);
+        assert flushIntervalMsecs > 0;
+        assert maxWaitMsecs >= 0;
+        this.delegate = delegate;
+        this.flushSize = flushSize;
+        this.maxWaitMsecs = maxWaitMsecs;
+        this.room = new Semaphore(queueSize);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "WriteBehindPersonDao");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMsecs, flushIntervalMsecs, TimeUnit.MILLISECONDS);
+        MBeans.register(this, "WriteBehind", "personDao");
+    }
+
+    @Override
+    public void storePerson(@Nonnull final Person person) throws EntityStoreException {
+        assert person != null;
+        if (closed) {
+            delegate.storePerson(person);
+            return;
+        }
+        if (!enqueue(person)) {
+            throw new EntityStoreException("Write-behind queue is full: personId=" + person.getId());
+        }
+        flushIfClosed();
+    }
+
+    /**
+     * The persons are queued one by one. A person for which the queue stays full is reported as failed.
+     */
+    @Nonnull
+    @Override
+    public List<BulkStatus> storePersons(@Nonnull final List<Person> persons) {
+        assert persons != null;
+        if (closed) {
+            return delegate.storePersons(persons);
+        }
+        final List<BulkStatus> result = new ArrayList<>(persons.size());
+        for (final Person person : persons) {
+            result.add(enqueue(person) ? BulkStatus.DONE : BulkStatus.FAILED);
+        }
+        flushIfClosed();
+        return result;
+    }
+
+    @Override
+    public void removePerson(@Nonnull final Uid<Person> personId) throws EntityRemoveException {
+        assert personId != null;
+        dequeue(personId);
+        awaitWrite(personId);
+        delegate.removePerson(personId);
+    }
+
+    /**
+     * A queued person is more recent than the stored person, so it is returned if it was queued.
+     */
+    @Nullable
+    @Override
+    public Person removeAndReturn(@Nonnull final Uid<Person> personId) throws InternalDaoException {
+        assert personId != null;
+        @Nullable final Person queued = dequeue(personId);
+        awaitWrite(personId);
+        @Nullable final Person removed = delegate.removeAndReturn(personId);
+        return (queued != null) ? queued : removed;
+    }
+
+    @Nonnull
+    @Override
+    public List<BulkStatus> removePersons(@Nonnull final List<Uid<Person>> personIds) {
+        assert personIds != null;
+        final List<Boolean> queued = new ArrayList<>(personIds.size());
+        for (final Uid<Person> personId : personIds) {
+            queued.add(dequeue(personId) != null);
+        }
+        for (final Uid<Person> personId : personIds) {
+            awaitWrite(personId);
+        }
+        final List<BulkStatus> result = new ArrayList<>(delegate.removePersons(personIds));
+        for (int i = 0; i < result.size(); ++i) {
+            if (queued.get(i) && (result.get(i) == BulkStatus.NOT_FOUND)) {
+                result.set(i, BulkStatus.DONE);
+            }
+        }
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public Person getPerson(@Nonnull final Uid<Person> personId) throws InternalDaoException, EntityNotFoundException {
+        assert personId != null;
+        @Nullable final Person queued = queue.get(personId);
+        return (queued != null) ? queued : delegate.getPerson(personId);
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> getPersons() throws InternalDaoException {
+        return delegate.getPersons();
+    }
+
+    @Nonnull
+    @Override
+    public CloseableIterator<Person> streamPersons() throws InternalDaoException {
+        return delegate.streamPersons();
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> getPersons(@Nullable final Uid<Person> after, final int count) throws InternalDaoException {
+        return delegate.getPersons(after, count);
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> getPersonsById(@Nonnull final Collection<Uid<Person>> personIds) throws InternalDaoException {
+        assert personIds != null;
+        final List<Person> result = new ArrayList<>(personIds.size());
+        final List<Uid<Person>> remaining = new ArrayList<>(personIds.size());
+        for (final Uid<Person> personId : new LinkedHashSet<>(personIds)) {
+            @Nullable final Person queued = queue.get(personId);
+            if (queued != null) {
+                result.add(queued);
+            } else {
+                remaining.add(personId);
+            }
+        }
+        if (!remaining.isEmpty()) {
+            result.addAll(delegate.getPersonsById(remaining));
+        }
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public List<Uid<Person>> getPersonIds(@Nonnull final Collection<Uid<Person>> personIds)
+            throws InternalDaoException {
+        assert personIds != null;
+        final List<Uid<Person>> result = new ArrayList<>(personIds.size());
+        final List<Uid<Person>> remaining = new ArrayList<>(personIds.size());
+        for (final Uid<Person> personId : new LinkedHashSet<>(personIds)) {
+            if (queue.containsKey(personId)) {
+                result.add(personId);
+            } else {
+                remaining.add(personId);
+            }
+        }
+        if (!remaining.isEmpty()) {
+            result.addAll(delegate.getPersonIds(remaining));
+        }
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> findPersons(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            final int count) throws InternalDaoException {
+        return delegate.findPersons(minAge, maxAge, namePrefix, count);
+    }
+
+    /**
+     * Stop the periodic flushes and flush the queue. Stores after this are written through.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(maxWaitMsecs + 1000, TimeUnit.MILLISECONDS)) {
+                LOG.warn("close: Flush in progress did not finish");
+            }
+        } catch (final InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        LOG.info("close: Flushed write-behind queue, written={}, failed={}", written.sum(), failed.sum());
+    }
+
+    @Override
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    @Override
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    @Override
+    public long getCollapsedCount() {
+        return collapsed.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Queue a person. A queued person with the same ID is replaced, which takes no room. Otherwise, this waits for
+     * room in the queue, if needed.
+     *
+     * @param person Person to queue.
+     * @return False if there was no room in the queue within the maximum wait time.
+     */
+    private boolean enqueue(@Nonnull final Person person) {
+        final Uid<Person> personId = person.getId();
+        while (true) {
+            @Nullable final Person current = queue.get(personId);
+            if (current != null) {
+                if (queue.replace(personId, current, person)) {
+                    collapsed.increment();
+                    return true;
+                }
+                continue;
+            }
+            if (!room.tryAcquire()) {
+                requestFlush();
+                try {
+                    if (!room.tryAcquire(maxWaitMsecs, TimeUnit.MILLISECONDS)) {
+                        LOG.warn("enqueue: Write-behind queue is full, person={}", logId(personId));
+                        rejected.increment();
+                        return false;
+                    }
+                } catch (final InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                    rejected.increment();
+                    return false;
+                }
+            }
+            if (queue.putIfAbsent(personId, person) == null) {
+                if (queue.size() >= flushSize) {
+                    requestFlush();
+                }
+                return true;
+            }
+
+            // Another store queued the same person in the meantime; replace it instead.
+            room.release();
+        }
+    }
+
+    /**
+     * Drop a queued person. A flush in progress may already be writing it; see {@link #awaitWrite(Uid)}.
+     *
+     * @param personId Person ID.
+     * @return The queued person, or null if it was not queued.
+     */
+    @Nullable
+    private Person dequeue(@Nonnull final Uid<Person> personId) {
+        @Nullable final Person queued = queue.remove(personId);
+        if (queued != null) {
+            room.release();
+        }
+        return queued;
+    }
+
+    /**
+     * Wait until a flush in progress has written a person, if it is writing it. Must be called after the person was
+     * dropped from the queue: a flush marks a person as being written before it takes it from the queue, so either the
+     * flush no longer finds the person, or this method sees the mark.
+     *
+     * @param personId Person ID.
+     */
+    private void awaitWrite(@Nonnull final Uid<Person> personId) {
+        @Nullable final CompletableFuture<Void> write = writing.get(personId);
+        if (write != null) {
+            write.join();
+        }
+    }
+
+    /**
+     * Flush the queue if the DAO was closed while persons were queued. The flag is set before the final flush in
+     * {@link #close()} reads the queue, so either that flush sees the queued persons or this method sees the flag.
+     */
+    private void flushIfClosed() {
+        if (closed) {
+            flush();
+        }
+    }
+
+    private void requestFlush() {
+        if (!closed && flushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flush);
+            } catch (final RejectedExecutionException ignored) {
+                // Closed in the meantime; close() flushes the queue.
+            }
+        }
+    }
+
+    /**
+     * Write all queued persons in bulk writes of at most the flush size. A person is only dropped from the queue if it
+     * was not replaced while it was written; otherwise, the replacing person is written by the next flush. If the
+     * underlying DAO throws an exception, the persons stay queued for the next flush.
+     */
+    private void flush() {
+        flushRequested.set(false);
+        while (!queue.isEmpty()) {
+            synchronized (flushLock) {
+
+                // Mark every person as being written before taking it from the queue; see awaitWrite().
+                final CompletableFuture<Void> write = new CompletableFuture<>();
+                final List<Person> batch = new ArrayList<>(Math.min(flushSize, queue.size()));
+                try {
+                    for (final Uid<Person> personId : queue.keySet()) {
+                        writing.put(personId, write);
+                        @Nullable final Person person = queue.get(personId);
+                        if (person != null) {
+                            batch.add(person);
+                        } else {
+                            writing.remove(personId, write);
+                        }
+                        if (batch.size() >= flushSize) {
+                            break;
+                        }
+                    }
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+                    if (!writeBatch(batch)) {
+                        return;
+                    }
+                } finally {
+                    for (final Person person : batch) {
+                        writing.remove(person.getId(), write);
+                    }
+                    write.complete(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a batch of queued persons and drop them from the queue, unless they were replaced in the meantime.
+     *
+     * @param batch Persons.
+     * @return False if the underlying DAO threw an exception; the persons stay queued.
+     */
+    private boolean writeBatch(@Nonnull final List<Person> batch) {
+        final List<BulkStatus> statuses;
+        try {
+            statuses = delegate.storePersons(batch);
+        } catch (final RuntimeException e) {
+            LOG.error("flush: Cannot write persons, count={}", batch.size(), e);
+            return false;
+        }
+        for (int i = 0; i < batch.size(); ++i) {
+            final Person person = batch.get(i);
+            if (statuses.get(i) == BulkStatus.DONE) {
+                written.increment();
+            } else {
+                LOG.error("flush: Cannot write person, dropped, person={}", logId(person.getId()));
+                failed.increment();
+            }
+            if (queue.remove(person.getId(), person)) {
+                room.release();
+            }
+        }
+        flushes.increment();
+        LOG.debug("flush: count={}, pending={}", batch.size(), queue.size());
+        return true;
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao.memory;
+
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.examples.exampleUsingDatabase.PersonDaoProperties;
+import com.tomtom.examples.exampleUsingDatabase.dao.BulkStatus;
+import com.tomtom.examples.exampleUsingDatabase.dao.PersonDao;
+import com.tomtom.speedtools.domain.Uid;
+import com.tomtom.speedtools.mongodb.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.tomtom.speedtools.loghelper.LogHelper.logId;
+
+/**
+ * In-memory implementation of {@link PersonDao}, with the same semantics as the MongoDB implementation, but without
+ * any database latency. Use it to measure the overhead of the REST API, serialization and the resource processor, or
+ * to run /example/3 without a MongoDB server.
+ *
+ * The persons are kept in concurrent skip lists: by ID, in the order in which MongoDB sorts the string IDs; in
+ * insertion order, the natural order in which MongoDB returns them; and in the order of the secondary indexes used by
+ * {@link #findPersons}. Reads never lock and are weakly consistent, like reads from MongoDB. Writes of a person are
+ * serialized by a lock striped by ID, so the skip lists are always updated together for a person, while writes of
+ * different persons do not wait for each other.
+ *
+ * If a snapshot file is configured, the persons are loaded from it at start-up and written to it periodically and
+ * when the DAO is closed. A snapshot is written to a temporary file first, which then replaces the snapshot
+ * atomically.
+ */
+public final class PersonDaoMemoryImpl implements PersonDao, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(PersonDaoMemoryImpl.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x50444d31;   // "PDM1".
+    private static final int NO_AGE = Integer.MIN_VALUE;
+    private static final int NR_LOCKS = 256;
+
+    /**
+     * Persons without an age are sorted first, as MongoDB sorts missing fields first.
+     */
+    private static final Comparator<Entry> AGE_ORDER = Comparator.
+            comparing((Entry entry) -> entry.age, Comparator.nullsFirst(Comparator.naturalOrder())).
+            thenComparing(entry -> entry.id);
+
+    private static final Comparator<Entry> NAME_AGE_ORDER = Comparator.
+            comparing((Entry entry) -> entry.name).
+            thenComparing(AGE_ORDER);
+
+    @Nonnull
+    private final ConcurrentSkipListMap<String, Entry> byId = new ConcurrentSkipListMap<>();
+    @Nonnull
+    private final ConcurrentSkipListMap<Long, Person> byInsertion = new ConcurrentSkipListMap<>();
+    @Nonnull
+    private final ConcurrentSkipListSet<Entry> byNameAge = new ConcurrentSkipListSet<>(NAME_AGE_ORDER);
+    @Nonnull
+    private final ConcurrentSkipListSet<Entry> byAge = new ConcurrentSkipListSet<>(AGE_ORDER);
+
+    // Guard the modifications of the persons, striped by ID.
+    @Nonnull
+    private final Object[] locks = new Object[NR_LOCKS];
+    @Nonnull
+    private final AtomicLong lastSeq = new AtomicLong();
+
+    // Counts all modifications, so a snapshot is only written if the persons were modified.
+    @Nonnull
+    private final AtomicLong modifications = new AtomicLong();
+
+    // Serializes snapshots, which all write the same temporary file, and guards snapshotModifications.
+    @Nonnull
+    private final Object snapshotLock = new Object();
+    private long snapshotModifications;
+
+    @Nullable
+    private final File snapshotFile;
+    @Nullable
+    private final ScheduledExecutorService executor;
+
+    @Inject
+    public PersonDaoMemoryImpl(@Nonnull final PersonDaoProperties properties) {
+        super();
+        assert properties != null;
+        for (int i = 0; i < NR_LOCKS; ++i) {
+            locks[i] = new Object();
+        }
+
+        // Load the persons from the snapshot and write snapshots periodically, if configured.
+        if (properties.isSnapshotEnabled()) {
+            this.snapshotFile = new File(properties.getSnapshotFile());
+            if (snapshotFile.exists()) {
+                loadSnapshot(snapshotFile);
+            }
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "PersonDaoMemoryImpl");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::snapshotIfModified, properties.getSnapshotIntervalSecs(),
+                    properties.getSnapshotIntervalSecs(), TimeUnit.SECONDS);
+        } else {
+            this.snapshotFile = null;
+            this.executor = null;
+        }
+        LOG.debug("PersonDaoMemoryImpl: Using memory, snapshotFile={}, count={}", snapshotFile, byId.size());
+    }
+
+    @Override
+    public void storePerson(@Nonnull final Person person) {
+        assert person != null;
+        LOG.debug("storePerson: person={}", logId(person.getId()));
+        put(person);
+    }
+
+    @Override
+    public void removePerson(@Nonnull final Uid<Person> personId) {
+        assert personId != null;
+        LOG.debug("removePerson: person={}", logId(personId));
+        remove(personId);
+    }
+
+    @Nullable
+    @Override
+    public Person removeAndReturn(@Nonnull final Uid<Person> personId) {
+        assert personId != null;
+        final Person result = remove(personId);
+        LOG.debug("removeAndReturn: person={}, result={}", logId(personId), result);
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public List<BulkStatus> storePersons(@Nonnull final List<Person> persons) {
+        assert persons != null;
+        final List<BulkStatus> result = new ArrayList<>(persons.size());
+        for (final Person person : persons) {
+            put(person);
+            result.add(BulkStatus.DONE);
+        }
+        LOG.debug("storePersons: count={}", persons.size());
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public List<BulkStatus> removePersons(@Nonnull final List<Uid<Person>> personIds) {
+        assert personIds != null;
+        final List<BulkStatus> result = new ArrayList<>(personIds.size());
+        for (final Uid<Person> personId : personIds) {
+            result.add((remove(personId) != null) ? BulkStatus.DONE : BulkStatus.NOT_FOUND);
+        }
+        LOG.debug("removePersons: count={}", personIds.size());
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public Person getPerson(@Nonnull final Uid<Person> personId) throws EntityNotFoundException {
+        assert personId != null;
+        @Nullable final Entry entry = byId.get(personId.toString());
+        if (entry == null) {
+            throw new EntityNotFoundException("Person not found: personId=" + personId);
+        }
+        LOG.debug("getPerson: person={}, result={}", logId(personId), entry.person);
+        return entry.person;
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> getPersons() {
+        final List<Person> result = new ArrayList<>(byInsertion.values());
+        LOG.debug("getPersons: count={}", result.size());
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public CloseableIterator<Person> streamPersons() {
+        return CloseableIterator.of(byInsertion.values().iterator());
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> getPersons(@Nullable final Uid<Person> after, final int count) {
+        assert count >= 0;
+        final Collection<Entry> entries = (after == null) ? byId.values() :
+                byId.tailMap(after.toString(), false).values();
+        final List<Person> result = new ArrayList<>(Math.min(count, 1024));
+        for (final Iterator<Entry> it = entries.iterator(); it.hasNext() && (result.size() < count); ) {
+            result.add(it.next().person);
+        }
+        LOG.debug("getPersons: after={}, count={}, result={}", after, count, result);
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public List<Person> getPersonsById(@Nonnull final Collection<Uid<Person>> personIds) {
+        assert personIds != null;
+        final List<Person> result = new ArrayList<>(personIds.size());
+        for (final Uid<Person> personId : new LinkedHashSet<>(personIds)) {
+            @Nullable final Entry entry = byId.get(personId.toString());
+            if (entry != null) {
+                result.add(entry.person);
+            }
+        }
+        LOG.debug("getPersonsById: count={}, found={}", personIds.size(), result.size());
+        return result;
+    }
+
+    @Nonnull
+    @Override
+    public List<Uid<Person>> getPersonIds(@Nonnull final Collection<Uid<Person>> personIds) {
+        assert personIds != null;
+        final List<Uid<Person>> result = new ArrayList<>(personIds.size());
+        for (final Uid<Person> personId : new LinkedHashSet<>(personIds)) {
+            if (byId.containsKey(personId.toString())) {
+                result.add(personId);
+            }
+        }
+        LOG.debug("getPersonIds: count={}, found={}", personIds.size(), result.size());
+        return result;
+    }
+
+    /**
+     * A name prefix is looked up as a range of the (name, age) order, and an age range as a range of the age order,
+     * just like MongoDB scans its secondary indexes. Persons without an age never match an age range.
+     */
+    @Nonnull
+    @Override
+    public List<Person> findPersons(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            final int count) {
+        assert count >= 0;
+        final boolean ageRange = (minAge != null) || (maxAge != null);
+        final List<Person> result = new ArrayList<>(Math.min(count, 1024));
+        if (namePrefix != null) {
+            for (final Entry entry : byNameAge.tailSet(new Entry(namePrefix, null, ""))) {
+                if (!entry.name.startsWith(namePrefix) || (result.size() >= count)) {
+                    break;
+                }
+                if (!ageRange || entry.isInAgeRange(minAge, maxAge)) {
+                    result.add(entry.person);
+                }
+            }
+        } else {
+            final Set<Entry> entries = (minAge == null) ? byAge : byAge.tailSet(new Entry("", minAge, ""));
+            for (final Entry entry : entries) {
+                if (result.size() >= count) {
+                    break;
+                }
+                if (!ageRange) {
+                    result.add(entry.person);
+                } else if (entry.isInAgeRange(minAge, maxAge)) {
+                    result.add(entry.person);
+                } else if ((entry.age != null) && (maxAge != null) && (entry.age > maxAge)) {
+                    break;
+                }
+            }
+        }
+        LOG.debug("findPersons: minAge={}, maxAge={}, namePrefix={}, count={}, result={}",
+                minAge, maxAge, namePrefix, count, result);
+        return result;
+    }
+
+    /**
+     * Stop writing snapshots and write a final snapshot, if configured. A periodic snapshot which is still being
+     * written is finished first.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+            snapshotIfModified();
+        }
+    }
+
+    /**
+     * Store a person. A person which replaces a person with the same ID keeps its position in the insertion order, as
+     * a replaced document does in MongoDB.
+     */
+    private void put(@Nonnull final Person person) {
+        final String id = person.getId().toString();
+        synchronized (lockFor(id)) {
+            @Nullable final Entry previous = byId.get(id);
+            final Entry entry;
+            if (previous == null) {
+                entry = new Entry(lastSeq.incrementAndGet(), id, person);
+            } else {
+                entry = new Entry(previous.seq, id, person);
+                byNameAge.remove(previous);
+                byAge.remove(previous);
+            }
+            byId.put(id, entry);
+            byInsertion.put(entry.seq, person);
+            byNameAge.add(entry);
+            byAge.add(entry);
+            modifications.incrementAndGet();
+        }
+    }
+
+    @Nullable
+    private Person remove(@Nonnull final Uid<Person> personId) {
+        final String id = personId.toString();
+        synchronized (lockFor(id)) {
+            @Nullable final Entry entry = byId.remove(id);
+            if (entry == null) {
+                return null;
+            }
+            byInsertion.remove(entry.seq);
+            byNameAge.remove(entry);
+            byAge.remove(entry);
+            modifications.incrementAndGet();
+            return entry.person;
+        }
+    }
+
+    @Nonnull
+    private Object lockFor(@Nonnull final String id) {
+        return locks[(id.hashCode() & Integer.MAX_VALUE) % NR_LOCKS];
+    }
+
+    /**
+     * Write a snapshot if the persons were modified since the previous snapshot. The persons are written in insertion
+     * order, so the order is restored when the snapshot is loaded. Writes are not blocked while the snapshot is
+     * written, so it may or may not contain the modifications made while it is written. Those are counted after the
+     * skip lists are updated, so they are always included in the next snapshot.
+     */
+    private void snapshotIfModified() {
+        assert snapshotFile != null;
+        synchronized (snapshotLock) {
+            writeSnapshotIfModified();
+        }
+    }
+
+    private void writeSnapshotIfModified() {
+        assert snapshotFile != null;
+        final long modificationsBefore = modifications.get();
+        if (modificationsBefore == snapshotModifications) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+        long nrPersons = 0;
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tmpFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                for (final Person person : byInsertion.values()) {
+                    final Integer age = person.getAge();
+                    out.writeBoolean(true);
+                    out.writeUTF(person.getId().toString());
+                    out.writeUTF(person.getName());
+                    out.writeInt((age == null) ? NO_AGE : age);
+                    ++nrPersons;
+                }
+                out.writeBoolean(false);
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            Files.move(tmpFile.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            LOG.error("snapshotIfModified: Cannot write snapshot, file={}", snapshotFile, e);
+            return;
+        }
+        snapshotModifications = modificationsBefore;
+        LOG.info("snapshotIfModified: Wrote {} persons to snapshot in {} ms",
+                nrPersons, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void loadSnapshot(@Nonnull final File file) {
+        final long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IllegalStateException("Not a person snapshot: " + file);
+            }
+            while (in.readBoolean()) {
+                final Uid<Person> id = Uid.fromString(in.readUTF()).as(Person.class);
+                final String name = in.readUTF();
+                final int age = in.readInt();
+                put(new Person(id, name, (age == NO_AGE) ? null : age));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot from " + file, e);
+        }
+        synchronized (snapshotLock) {
+            snapshotModifications = modifications.get();
+        }
+        LOG.info("loadSnapshot: Read {} persons from snapshot in {} ms",
+                byId.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Stored person, with its position in the insertion order and the fields of the sort orders. An entry with a null
+     * person is only used to look up a position in a sort order.
+     */
+    private static final class Entry {
+        private final long seq;
+        @Nonnull
+        private final String id;
+        @Nonnull
+        private final String name;
+        @Nullable
+        private final Integer age;
+        private final Person person;
+
+        Entry(final long seq, @Nonnull final String id, @Nonnull final Person person) {
+            this.seq = seq;
+            this.id = id;
+            this.name = person.getName();
+            this.age = person.getAge();
+            this.person = person;
+        }
+
+        Entry(@Nonnull final String name, @Nullable final Integer age, @Nonnull final String id) {
+            this.seq = 0;
+            this.id = id;
+            this.name = name;
+            this.age = age;
+            this.person = null;
+        }
+
+        boolean isInAgeRange(@Nullable final Integer minAge, @Nullable final Integer maxAge) {
+            return (age != null) && ((minAge == null) || (age >= minAge)) && ((maxAge == null) || (age <= maxAge));
+        }
+    }
+}
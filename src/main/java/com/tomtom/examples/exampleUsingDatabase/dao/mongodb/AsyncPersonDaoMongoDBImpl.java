@@ -0,0 +1,532 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao.mongodb;
+
+import akka.dispatch.Futures;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.DBObjectCodecProvider;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.AsyncBatchCursor;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.async.client.MongoDatabase;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.examples.exampleUsingDatabase.PersonDaoProperties;
+import com.tomtom.examples.exampleUsingDatabase.dao.AsyncPersonDao;
+import com.tomtom.examples.exampleUsingDatabase.dao.BulkStatus;
+import com.tomtom.examples.exampleUsingDatabase.dao.mongodb.mappers.PersonMapper;
+import com.tomtom.speedtools.domain.Uid;
+import com.tomtom.speedtools.mongodb.InternalDaoException;
+import com.tomtom.speedtools.mongodb.mappers.MapperException;
+import com.tomtom.speedtools.mongodb.mappers.MapperRegistry;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.Future;
+import scala.concurrent.Promise;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import static com.tomtom.speedtools.loghelper.LogHelper.logId;
+
+/**
+ * Implementation of {@link AsyncPersonDao} on the asynchronous MongoDB driver. Every operation is started on the
+ * calling thread and returns immediately; its future is completed by a callback of the driver, so no thread waits for
+ * the database.
+ *
+ * The documents are read and written as {@link DBObject}s, so the same {@link PersonMapper} is used as by the
+ * synchronous {@link PersonDaoMongoDBImpl}, on the same collection.
+ */
+public final class AsyncPersonDaoMongoDBImpl implements AsyncPersonDao {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncPersonDaoMongoDBImpl.class);
+
+    private static final String PERSON_COLLECTION_NAME = "person";
+
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    @Nonnull
+    private final MongoCollection<DBObject> collection;
+    @Nonnull
+    private final PersonMapper personMapper;
+    private final int batchSize;
+    private final int bulkWriteSize;
+
+    @Inject
+    public AsyncPersonDaoMongoDBImpl(
+            @Nonnull final MongoDatabase db,
+            @Nonnull final MapperRegistry mapperRegistry,
+            @Nonnull final PersonDaoProperties properties) {
+        super();
+        assert db != null;
+        assert mapperRegistry != null;
+        assert properties != null;
+        this.batchSize = properties.getBatchSize();
+        this.bulkWriteSize = properties.getBulkWriteSize();
+
+        // Read and write DBObjects, which the person mapper maps.
+        this.collection = db.getCollection(PERSON_COLLECTION_NAME, DBObject.class).withCodecRegistry(
+                CodecRegistries.fromRegistries(db.getCodecRegistry(),
+                        CodecRegistries.fromProviders(new DBObjectCodecProvider())));
+        this.personMapper = mapperRegistry.findMapper(PersonMapper.class);
+
+        // Create the secondary indexes used by findPersons(). This is a no-op if they already exist.
+        final SingleResultCallback<String> onIndexCreated = (name, t) -> {
+            if (t != null) {
+                LOG.warn("AsyncPersonDaoMongoDBImpl: Cannot create index, collection={}", PERSON_COLLECTION_NAME, t);
+            }
+        };
+        collection.createIndex(new BasicDBObject(personMapper.name.getFieldName(), 1).
+                append(personMapper.age.getFieldName(), 1), onIndexCreated);
+        collection.createIndex(new BasicDBObject(personMapper.age.getFieldName(), 1), onIndexCreated);
+
+        LOG.debug("AsyncPersonDaoMongoDBImpl: Using database collection: {}, batchSize={}, bulkWriteSize={}",
+                PERSON_COLLECTION_NAME, batchSize, bulkWriteSize);
+    }
+
+    @Nonnull
+    @Override
+    public Future<Void> storePerson(@Nonnull final Person person) {
+        assert person != null;
+        LOG.debug("storePerson: person={}", logId(person.getId()));
+        final DBObject dbObject;
+        try {
+            dbObject = (DBObject) personMapper.toDb(person);
+        } catch (final MapperException e) {
+            return Futures.failed(failure("storePerson", "Cannot map person: personId=" + person.getId(), e));
+        }
+        return execute("storePerson", "Cannot store person: personId=" + person.getId(),
+                (final SingleResultCallback<UpdateResult> callback) ->
+                        collection.replaceOne(PersonQueries.byId(personMapper, person.getId()), dbObject, UPSERT,
+                                callback),
+                result -> null);
+    }
+
+    @Nonnull
+    @Override
+    public Future<Person> getPerson(@Nonnull final Uid<Person> personId) {
+        assert personId != null;
+        return execute("getPerson", "Cannot get person: personId=" + personId,
+                (final SingleResultCallback<DBObject> callback) ->
+                        collection.find(PersonQueries.byId(personMapper, personId)).first(callback),
+                this::personFromDb);
+    }
+
+    /**
+     * The person is found and removed with a single "findAndModify" command, which MongoDB executes atomically.
+     */
+    @Nonnull
+    @Override
+    public Future<Person> removeAndReturn(@Nonnull final Uid<Person> personId) {
+        assert personId != null;
+        LOG.debug("removeAndReturn: person={}", logId(personId));
+        return execute("removeAndReturn", "Cannot remove person: personId=" + personId,
+                (final SingleResultCallback<DBObject> callback) ->
+                        collection.findOneAndDelete(PersonQueries.byId(personMapper, personId), callback),
+                this::personFromDb);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<Person>> getPersons() {
+        return execute("getPersons", "Cannot get persons",
+                (final SingleResultCallback<List<DBObject>> callback) ->
+                        collection.find().batchSize(batchSize).into(new ArrayList<>(), callback),
+                this::personsFromDb);
+    }
+
+    /**
+     * Every batch is read asynchronously, but the iterator waits for it; the next batch is requested when the current
+     * batch is exhausted.
+     */
+    @Nonnull
+    @Override
+    public Future<CloseableIterator<Person>> streamPersons() {
+        return execute("streamPersons", "Cannot stream persons",
+                (final SingleResultCallback<AsyncBatchCursor<DBObject>> callback) ->
+                        collection.find().batchSize(batchSize).batchCursor(callback),
+                BatchCursorIterator::new);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<Person>> getPersons(@Nullable final Uid<Person> after, final int count) {
+        assert count >= 0;
+        return execute("getPersons", "Cannot get persons: after=" + after + ", count=" + count,
+                (final SingleResultCallback<List<DBObject>> callback) ->
+                        collection.find(PersonQueries.after(personMapper, after)).
+                                sort(PersonQueries.orderById(personMapper)).limit(count).
+                                into(new ArrayList<>(), callback),
+                this::personsFromDb);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<Person>> getPersonsById(@Nonnull final Collection<Uid<Person>> personIds) {
+        assert personIds != null;
+        return execute("getPersonsById", "Cannot get persons: count=" + personIds.size(),
+                (final SingleResultCallback<List<DBObject>> callback) ->
+                        collection.find(PersonQueries.byIds(personMapper, personIds)).
+                                into(new ArrayList<>(), callback),
+                this::personsFromDb);
+    }
+
+    @Nonnull
+    @Override
+    public Future<List<Person>> findPersons(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            final int count) {
+        assert count >= 0;
+        return execute("findPersons", "Cannot find persons: minAge=" + minAge + ", maxAge=" + maxAge +
+                        ", namePrefix=" + namePrefix + ", count=" + count,
+                (final SingleResultCallback<List<DBObject>> callback) ->
+                        collection.find(PersonQueries.find(personMapper, minAge, maxAge, namePrefix)).
+                                sort(PersonQueries.findOrderBy(personMapper, namePrefix)).limit(count).
+                                into(new ArrayList<>(), callback),
+                this::personsFromDb);
+    }
+
+    /**
+     * Every chunk of "PersonDao.bulkWriteSize" persons is sent as a single unordered bulk write of upserts. The next
+     * chunk is sent when the previous one has completed.
+     */
+    @Nonnull
+    @Override
+    public Future<List<BulkStatus>> storePersons(@Nonnull final List<Person> persons) {
+        assert persons != null;
+        final List<BulkStatus> result = new ArrayList<>(Collections.nCopies(persons.size(), BulkStatus.DONE));
+        final Promise<List<BulkStatus>> promise = Futures.promise();
+        storeChunks(persons, 0, result, promise);
+        return promise.future();
+    }
+
+    /**
+     * Every chunk of "PersonDao.bulkWriteSize" IDs is checked for existence in a single query, which only reads the
+     * IDs, and the existing persons are removed in a single unordered bulk write. The next chunk is started when the
+     * previous one has completed.
+     */
+    @Nonnull
+    @Override
+    public Future<List<BulkStatus>> removePersons(@Nonnull final List<Uid<Person>> personIds) {
+        assert personIds != null;
+        final List<BulkStatus> result = new ArrayList<>(Collections.nCopies(personIds.size(), BulkStatus.DONE));
+        final Promise<List<BulkStatus>> promise = Futures.promise();
+        removeChunks(personIds, 0, result, promise);
+        return promise.future();
+    }
+
+    private void storeChunks(
+            @Nonnull final List<Person> persons,
+            final int from,
+            @Nonnull final List<BulkStatus> result,
+            @Nonnull final Promise<List<BulkStatus>> promise) {
+        if (from >= persons.size()) {
+            LOG.debug("storePersons: count={}, failed={}", persons.size(),
+                    Collections.frequency(result, BulkStatus.FAILED));
+            promise.success(result);
+            return;
+        }
+        final int to = Math.min(from + bulkWriteSize, persons.size());
+        final List<WriteModel<DBObject>> models = new ArrayList<>(to - from);
+        final List<Integer> indexes = new ArrayList<>(to - from);
+        for (int i = from; i < to; ++i) {
+            final Person person = persons.get(i);
+            try {
+                models.add(new ReplaceOneModel<>(PersonQueries.byId(personMapper, person.getId()),
+                        (DBObject) personMapper.toDb(person), UPSERT));
+                indexes.add(i);
+            } catch (final MapperException e) {
+                LOG.error("storePersons: Cannot map person, person={}", logId(person.getId()), e);
+                result.set(i, BulkStatus.FAILED);
+            }
+        }
+        bulkWrite("storePersons", models, indexes, result, () -> storeChunks(persons, to, result, promise));
+    }
+
+    private void removeChunks(
+            @Nonnull final List<Uid<Person>> personIds,
+            final int from,
+            @Nonnull final List<BulkStatus> result,
+            @Nonnull final Promise<List<BulkStatus>> promise) {
+        if (from >= personIds.size()) {
+            LOG.debug("removePersons: count={}, failed={}", personIds.size(),
+                    Collections.frequency(result, BulkStatus.FAILED));
+            promise.success(result);
+            return;
+        }
+        final int to = Math.min(from + bulkWriteSize, personIds.size());
+        final Runnable next = () -> removeChunks(personIds, to, result, promise);
+        final List<Uid<Person>> chunk = personIds.subList(from, to);
+        try {
+            collection.find(PersonQueries.byIds(personMapper, chunk)).projection(PersonQueries.idOnly(personMapper)).
+                    into(new ArrayList<>(), (dbObjects, t) -> {
+                        final Set<Uid<Person>> existing = new HashSet<>();
+                        Throwable error = t;
+                        if (error == null) {
+                            try {
+                                for (final DBObject dbObject : dbObjects) {
+                                    existing.add(PersonQueries.idFromDb(personMapper, dbObject));
+                                }
+                            } catch (final MapperException e) {
+                                error = e;
+                            }
+                        }
+                        if (error != null) {
+                            LOG.error("removePersons: Cannot get person IDs, count={}", chunk.size(), error);
+                            for (int i = from; i < to; ++i) {
+                                result.set(i, BulkStatus.FAILED);
+                            }
+                            next.run();
+                            return;
+                        }
+                        final List<WriteModel<DBObject>> models = new ArrayList<>(existing.size());
+                        final List<Integer> indexes = new ArrayList<>(existing.size());
+                        for (int i = from; i < to; ++i) {
+                            final Uid<Person> personId = personIds.get(i);
+                            if (existing.contains(personId)) {
+                                models.add(new DeleteOneModel<>(PersonQueries.byId(personMapper, personId)));
+                                indexes.add(i);
+                            } else {
+                                result.set(i, BulkStatus.NOT_FOUND);
+                            }
+                        }
+                        bulkWrite("removePersons", models, indexes, result, next);
+                    });
+        } catch (final MongoException | IllegalStateException e) {
+            LOG.error("removePersons: Cannot get person IDs, count={}", chunk.size(), e);
+            for (int i = from; i < to; ++i) {
+                result.set(i, BulkStatus.FAILED);
+            }
+            next.run();
+        }
+    }
+
+    /**
+     * Execute a bulk write and continue with the next step when it has completed. The write errors refer to the
+     * operations by their index in the bulk write, which are mapped to the index of the entity in the result. A write
+     * concern error fails all operations of the bulk write, like {@link PersonDaoMongoDBImpl} does.
+     *
+     * @param name    Name of the caller, for logging.
+     * @param models  Operations of the bulk write.
+     * @param indexes For every operation of the bulk write, the index of its entity in the result.
+     * @param result  Status of every entity; set to {@link BulkStatus#FAILED} for the failed operations.
+     * @param next    Next step, always executed.
+     */
+    private void bulkWrite(
+            @Nonnull final String name,
+            @Nonnull final List<WriteModel<DBObject>> models,
+            @Nonnull final List<Integer> indexes,
+            @Nonnull final List<BulkStatus> result,
+            @Nonnull final Runnable next) {
+        if (models.isEmpty()) {
+            next.run();     // An empty bulk write cannot be executed.
+            return;
+        }
+        try {
+            collection.bulkWrite(models, UNORDERED, (bulkWriteResult, t) -> {
+                if (t instanceof MongoBulkWriteException) {
+                    final MongoBulkWriteException e = (MongoBulkWriteException) t;
+                    for (final BulkWriteError error : e.getWriteErrors()) {
+                        final int index = indexes.get(error.getIndex());
+                        LOG.error("{}: Cannot write entity, index={}, code={}, message={}", name, index,
+                                error.getCode(), error.getMessage());
+                        result.set(index, BulkStatus.FAILED);
+                    }
+                    if (e.getWriteConcernError() != null) {
+                        LOG.error("{}: Write concern not satisfied, count={}, error={}", name, indexes.size(),
+                                e.getWriteConcernError());
+                        for (final int index : indexes) {
+                            result.set(index, BulkStatus.FAILED);
+                        }
+                    }
+                } else if (t != null) {
+                    LOG.error("{}: Cannot execute bulk write, count={}", name, indexes.size(), t);
+                    for (final int index : indexes) {
+                        result.set(index, BulkStatus.FAILED);
+                    }
+                }
+                next.run();
+            });
+        } catch (final MongoException | IllegalStateException e) {
+            LOG.error("{}: Cannot start bulk write, count={}", name, indexes.size(), e);
+            for (final int index : indexes) {
+                result.set(index, BulkStatus.FAILED);
+            }
+            next.run();
+        }
+    }
+
+    /**
+     * Maps the result of a database operation.
+     */
+    private interface ResultMapper<T, R> {
+
+        @Nullable
+        R apply(@Nullable T result) throws MapperException;
+    }
+
+    /**
+     * Start a database operation and map its result to a future. Errors are logged and the future fails with an
+     * {@link InternalDaoException}.
+     *
+     * @param name      Name of the caller, for logging.
+     * @param message   Error message.
+     * @param operation Starts the operation, which completes the given callback.
+     * @param mapper    Maps the result of the operation.
+     * @param <T>       Result type of the operation.
+     * @param <R>       Result type of the future.
+     * @return Future result.
+     */
+    @Nonnull
+    private static <T, R> Future<R> execute(
+            @Nonnull final String name,
+            @Nonnull final String message,
+            @Nonnull final Consumer<SingleResultCallback<T>> operation,
+            @Nonnull final ResultMapper<? super T, R> mapper) {
+        final Promise<R> promise = Futures.promise();
+        try {
+            operation.accept((result, t) -> {
+                if (t != null) {
+                    promise.failure(failure(name, message, t));
+                    return;
+                }
+                try {
+                    promise.success(mapper.apply(result));
+                } catch (final MapperException e) {
+                    promise.failure(failure(name, message, e));
+                }
+            });
+        } catch (final MongoException | IllegalStateException e) {
+            promise.failure(failure(name, message, e));
+        }
+        return promise.future();
+    }
+
+    @Nonnull
+    private static InternalDaoException failure(
+            @Nonnull final String name,
+            @Nonnull final String message,
+            @Nonnull final Throwable cause) {
+        LOG.error(name + ": " + message, cause);
+        return new InternalDaoException(message, cause);
+    }
+
+    @Nullable
+    private Person personFromDb(@Nullable final DBObject dbObject) throws MapperException {
+        return (dbObject == null) ? null : personMapper.fromDb(dbObject);
+    }
+
+    @Nonnull
+    private List<Person> personsFromDb(@Nonnull final List<DBObject> dbObjects) throws MapperException {
+        final List<Person> persons = new ArrayList<>(dbObjects.size());
+        for (final DBObject dbObject : dbObjects) {
+            persons.add(personMapper.fromDb(dbObject));
+        }
+        return persons;
+    }
+
+    /**
+     * Blocking iterator over an asynchronous batch cursor. Errors are thrown as {@link IllegalStateException}.
+     */
+    private final class BatchCursorIterator implements CloseableIterator<Person> {
+
+        @Nonnull
+        private final AsyncBatchCursor<DBObject> cursor;
+        @Nonnull
+        private Iterator<DBObject> batch = Collections.emptyIterator();
+        private boolean exhausted = false;
+
+        private BatchCursorIterator(@Nonnull final AsyncBatchCursor<DBObject> cursor) {
+            assert cursor != null;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!batch.hasNext() && !exhausted) {
+                @Nullable final List<DBObject> next = nextBatch();
+                if (next == null) {
+                    exhausted = true;
+                } else {
+                    batch = next.iterator();
+                }
+            }
+            return batch.hasNext();
+        }
+
+        @Nonnull
+        @Override
+        public Person next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final DBObject dbObject = batch.next();
+            try {
+                return personMapper.fromDb(dbObject);
+            } catch (final MapperException e) {
+                final String message = "Cannot map document: " + dbObject;
+                LOG.error("streamPersons: " + message, e);
+                throw new IllegalStateException(message, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            exhausted = true;
+            cursor.close();
+        }
+
+        @Nullable
+        private List<DBObject> nextBatch() {
+            final CompletableFuture<List<DBObject>> next = new CompletableFuture<>();
+            cursor.next((result, t) -> {
+                if (t == null) {
+                    next.complete(result);
+                } else {
+                    next.completeExceptionally(t);
+                }
+            });
+            try {
+                return next.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading persons", e);
+            } catch (final ExecutionException e) {
+                LOG.error("streamPersons: Cannot read persons", e.getCause());
+                throw new IllegalStateException("Cannot read persons", e.getCause());
+            }
+        }
+    }
+}
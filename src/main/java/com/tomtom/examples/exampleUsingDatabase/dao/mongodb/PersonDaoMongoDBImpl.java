@@ -16,19 +16,31 @@
 
 package com.tomtom.examples.exampleUsingDatabase.dao.mongodb;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.tomtom.examples.common.CloseableIterator;
 import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.examples.exampleUsingDatabase.PersonDaoProperties;
+import com.tomtom.examples.exampleUsingDatabase.dao.BulkStatus;
 import com.tomtom.examples.exampleUsingDatabase.dao.PersonDao;
 import com.tomtom.examples.exampleUsingDatabase.dao.mongodb.mappers.PersonMapper;
 import com.tomtom.speedtools.domain.Uid;
 import com.tomtom.speedtools.mongodb.*;
+import com.tomtom.speedtools.mongodb.mappers.MapperException;
 import com.tomtom.speedtools.mongodb.mappers.MapperRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
-import java.util.List;
+import java.util.*;
 
 import static com.tomtom.speedtools.loghelper.LogHelper.logId;
 
@@ -45,21 +57,37 @@ public final class PersonDaoMongoDBImpl implements PersonDao {
     private final DBCollection collection;
     @Nonnull
     private final PersonMapper personMapper;
+    private final int batchSize;
+    private final int bulkWriteSize;
 
 
     @Inject
     public PersonDaoMongoDBImpl(
             @Nonnull final MongoDB db,
-            @Nonnull final MapperRegistry mapperRegistry) {
+            @Nonnull final MapperRegistry mapperRegistry,
+            @Nonnull final PersonDaoProperties properties) {
         super();
         assert db != null;
         assert mapperRegistry != null;
+        assert properties != null;
+        this.batchSize = properties.getBatchSize();
+        this.bulkWriteSize = properties.getBulkWriteSize();
 
         // Get mappers from registry ans store them in appropriate scope.
         this.collection = db.getCollection(PERSON_COLLECTION_NAME);
         personMapper = mapperRegistry.findMapper(PersonMapper.class);
 
-        LOG.debug("PersonDaoMongoDBImpl: Using database collection: {}", collection.getName());
+        // Create the secondary indexes used by findPersons(). This is a no-op if they already exist.
+        try {
+            collection.createIndex(new BasicDBObject(personMapper.name.getFieldName(), 1).
+                    append(personMapper.age.getFieldName(), 1));
+            collection.createIndex(new BasicDBObject(personMapper.age.getFieldName(), 1));
+        } catch (final MongoException e) {
+            LOG.warn("PersonDaoMongoDBImpl: Cannot create indexes, collection={}", PERSON_COLLECTION_NAME, e);
+        }
+
+        LOG.debug("PersonDaoMongoDBImpl: Using database collection: {}, batchSize={}, bulkWriteSize={}",
+                collection.getName(), batchSize, bulkWriteSize);
     }
 
     @Override
@@ -76,6 +104,96 @@ public final class PersonDaoMongoDBImpl implements PersonDao {
         DaoUtils.removeEntityByField(collection, personMapper.id, personId);
     }
 
+    /**
+     * The person is found and removed with a single "findAndModify" command, which MongoDB executes atomically.
+     */
+    @Nullable
+    @Override
+    public Person removeAndReturn(@Nonnull final Uid<Person> personId) throws InternalDaoException {
+        assert personId != null;
+        final Person result;
+        try {
+            @Nullable final DBObject dbObject = collection.findAndRemove(PersonQueries.byId(personMapper, personId));
+            result = (dbObject == null) ? null : personMapper.fromDb(dbObject);
+        } catch (final MapperException | MongoException e) {
+            final String message = "Cannot remove person: personId=" + personId;
+            LOG.error("removeAndReturn: " + message, e);
+            throw new InternalDaoException(message, e);
+        }
+        LOG.debug("removeAndReturn: person={}, result={}", logId(personId), result);
+        return result;
+    }
+
+    /**
+     * Every chunk of "PersonDao.bulkWriteSize" persons is sent as a single unordered bulk write of upserts, which
+     * replace the person with the same ID, if any.
+     */
+    @Nonnull
+    @Override
+    public List<BulkStatus> storePersons(@Nonnull final List<Person> persons) {
+        assert persons != null;
+        final List<BulkStatus> result = new ArrayList<>(Collections.nCopies(persons.size(), BulkStatus.DONE));
+        for (int from = 0; from < persons.size(); from += bulkWriteSize) {
+            final int to = Math.min(from + bulkWriteSize, persons.size());
+            final BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+            final List<Integer> indexes = new ArrayList<>(to - from);
+            for (int i = from; i < to; ++i) {
+                final Person person = persons.get(i);
+                try {
+                    final DBObject dbObject = (DBObject) personMapper.toDb(person);
+                    bulk.find(PersonQueries.byId(personMapper, person.getId())).upsert().replaceOne(dbObject);
+                    indexes.add(i);
+                } catch (final MapperException e) {
+                    LOG.error("storePersons: Cannot map person, person={}", logId(person.getId()), e);
+                    result.set(i, BulkStatus.FAILED);
+                }
+            }
+            executeBulk("storePersons", bulk, indexes, result);
+        }
+        LOG.debug("storePersons: count={}, failed={}", persons.size(),
+                Collections.frequency(result, BulkStatus.FAILED));
+        return result;
+    }
+
+    /**
+     * Every chunk of "PersonDao.bulkWriteSize" IDs is checked for existence in a single query, which only reads the
+     * IDs, and the existing persons are removed in a single unordered bulk write.
+     */
+    @Nonnull
+    @Override
+    public List<BulkStatus> removePersons(@Nonnull final List<Uid<Person>> personIds) {
+        assert personIds != null;
+        final List<BulkStatus> result = new ArrayList<>(Collections.nCopies(personIds.size(), BulkStatus.DONE));
+        for (int from = 0; from < personIds.size(); from += bulkWriteSize) {
+            final int to = Math.min(from + bulkWriteSize, personIds.size());
+            final Set<Uid<Person>> existing;
+            try {
+                existing = new HashSet<>(getPersonIds(personIds.subList(from, to)));
+            } catch (final InternalDaoException ignored) {
+                // Already logged.
+                for (int i = from; i < to; ++i) {
+                    result.set(i, BulkStatus.FAILED);
+                }
+                continue;
+            }
+            final BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+            final List<Integer> indexes = new ArrayList<>(existing.size());
+            for (int i = from; i < to; ++i) {
+                final Uid<Person> personId = personIds.get(i);
+                if (existing.contains(personId)) {
+                    bulk.find(PersonQueries.byId(personMapper, personId)).removeOne();
+                    indexes.add(i);
+                } else {
+                    result.set(i, BulkStatus.NOT_FOUND);
+                }
+            }
+            executeBulk("removePersons", bulk, indexes, result);
+        }
+        LOG.debug("removePersons: count={}, failed={}", personIds.size(),
+                Collections.frequency(result, BulkStatus.FAILED));
+        return result;
+    }
+
     @Nonnull
     @Override
     public Person getPerson(@Nonnull final Uid<Person> personId) throws InternalDaoException, EntityNotFoundException {
@@ -90,12 +208,225 @@ public final class PersonDaoMongoDBImpl implements PersonDao {
         return result;
     }
 
+    /**
+     * The persons are read through a cursor, which gets them from the database in batches, rather than all at once.
+     */
     @Nonnull
     @Override
     public List<Person> getPersons() throws InternalDaoException {
-
-        final List<Person> result = DaoUtils.find(collection, personMapper, new MongoDBQuery());
+        final List<Person> result = new ArrayList<>();
+        try (final CloseableIterator<Person> persons = streamPersons()) {
+            while (persons.hasNext()) {
+                result.add(persons.next());
+            }
+        } catch (final IllegalStateException | MongoException e) {
+            final String message = "Cannot get persons";
+            LOG.error("getPersons: " + message, e);
+            throw new InternalDaoException(message, e);
+        }
         LOG.debug("getPersons: result={}", result);
         return result;
     }
+
+    /**
+     * The persons are mapped one at a time while the cursor is iterated; the cursor gets the next batch of
+     * "PersonDao.batchSize" persons from the database when the current batch is exhausted. A {@link MongoException}
+     * while iterating is not wrapped, as it is unchecked already.
+     */
+    @Nonnull
+    @Override
+    public CloseableIterator<Person> streamPersons() {
+        return stream("streamPersons", new BasicDBObject(), null, personMapper::fromDb);
+    }
+
+    /**
+     * The ID is always indexed, so the query for a page is an index range scan and takes the same time for every
+     * page. Skipping an offset instead would scan all preceding entries.
+     */
+    @Nonnull
+    @Override
+    public List<Person> getPersons(@Nullable final Uid<Person> after, final int count) throws InternalDaoException {
+        assert count >= 0;
+
+        final List<Person> result = findSorted(PersonQueries.after(personMapper, after),
+                PersonQueries.orderById(personMapper), count);
+        LOG.debug("getPersons: after={}, count={}, result={}", after, count, result);
+        return result;
+    }
+
+    /**
+     * IDs are stored as strings, so they are matched with an $in condition on their string values.
+     */
+    @Nonnull
+    @Override
+    public List<Person> getPersonsById(@Nonnull final Collection<Uid<Person>> personIds) throws InternalDaoException {
+        assert personIds != null;
+
+        final List<Person> result = findSorted(PersonQueries.byIds(personMapper, personIds), new BasicDBObject(),
+                personIds.size());
+        LOG.debug("getPersonsById: count={}, found={}", personIds.size(), result.size());
+        return result;
+    }
+
+    /**
+     * Only the ID field is projected, so the other fields are not sent by the database, nor mapped.
+     */
+    @Nonnull
+    @Override
+    public List<Uid<Person>> getPersonIds(@Nonnull final Collection<Uid<Person>> personIds)
+            throws InternalDaoException {
+        assert personIds != null;
+
+        final BasicDBObject query = PersonQueries.byIds(personMapper, personIds);
+        final List<Uid<Person>> result = new ArrayList<>(personIds.size());
+        try (final CloseableIterator<Uid<Person>> ids = stream("getPersonIds", query,
+                PersonQueries.idOnly(personMapper), dbObject -> PersonQueries.idFromDb(personMapper, dbObject))) {
+            while (ids.hasNext()) {
+                result.add(ids.next());
+            }
+        } catch (final IllegalStateException | MongoException e) {
+            final String message = "Cannot get person IDs: count=" + personIds.size();
+            LOG.error("getPersonIds: " + message, e);
+            throw new InternalDaoException(message, e);
+        }
+        LOG.debug("getPersonIds: count={}, found={}", personIds.size(), result.size());
+        return result;
+    }
+
+    /**
+     * See {@link PersonQueries#find(PersonMapper, Integer, Integer, String)} for the query used.
+     */
+    @Nonnull
+    @Override
+    public List<Person> findPersons(
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix,
+            final int count) throws InternalDaoException {
+        assert count >= 0;
+
+        final List<Person> result = findSorted(PersonQueries.find(personMapper, minAge, maxAge, namePrefix),
+                PersonQueries.findOrderBy(personMapper, namePrefix), count);
+        LOG.debug("findPersons: minAge={}, maxAge={}, namePrefix={}, count={}, result={}",
+                minAge, maxAge, namePrefix, count, result);
+        return result;
+    }
+
+    @Nonnull
+    private List<Person> findSorted(
+            @Nonnull final DBObject query,
+            @Nonnull final DBObject orderBy,
+            final int count) throws InternalDaoException {
+        final List<Person> result = new ArrayList<>();
+        try {
+            final DBCursor cursor = collection.find(query).sort(orderBy).limit(count);
+            try {
+                while (cursor.hasNext()) {
+                    result.add(personMapper.fromDb(cursor.next()));
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (final MapperException | MongoException e) {
+            final String message = "Cannot find persons: query=" + query + ", count=" + count;
+            LOG.error("findSorted: " + message, e);
+            throw new InternalDaoException(message, e);
+        }
+        return result;
+    }
+
+    /**
+     * Maps a document read from a cursor.
+     */
+    private interface DocumentMapper<T> {
+
+        @Nonnull
+        T fromDb(@Nonnull DBObject dbObject) throws MapperException;
+    }
+
+    /**
+     * Create an iterator which maps documents while the cursor is iterated. Mapping errors are thrown as
+     * {@link IllegalStateException}.
+     *
+     * @param name       Name of the caller, for logging.
+     * @param query      Query.
+     * @param projection Fields to return, or null for all fields.
+     * @param mapper     Maps a document.
+     * @param <T>        Mapped type.
+     * @return Iterator, which closes the cursor when it is closed.
+     */
+    @Nonnull
+    private <T> CloseableIterator<T> stream(
+            @Nonnull final String name,
+            @Nonnull final DBObject query,
+            @Nullable final DBObject projection,
+            @Nonnull final DocumentMapper<T> mapper) {
+        final DBCursor cursor = collection.find(query, projection).batchSize(batchSize);
+        return new CloseableIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Nonnull
+            @Override
+            public T next() {
+                final DBObject dbObject = cursor.next();
+                try {
+                    return mapper.fromDb(dbObject);
+                } catch (final MapperException e) {
+                    final String message = "Cannot map document: " + dbObject;
+                    LOG.error(name + ": " + message, e);
+                    throw new IllegalStateException(message, e);
+                }
+            }
+
+            @Override
+            public void close() {
+                cursor.close();
+            }
+        };
+    }
+
+    /**
+     * Execute a bulk write. The write errors refer to the operations by their index in the bulk write, which are
+     * mapped to the index of the entity in the result. A write concern error is not reported per operation, so it fails
+     * all operations of the bulk write, as it would fail a single write.
+     *
+     * @param name    Name of the caller, for logging.
+     * @param bulk    Bulk write.
+     * @param indexes For every operation of the bulk write, the index of its entity in the result.
+     * @param result  Status of every entity; set to {@link BulkStatus#FAILED} for the failed operations.
+     */
+    private static void executeBulk(
+            @Nonnull final String name,
+            @Nonnull final BulkWriteOperation bulk,
+            @Nonnull final List<Integer> indexes,
+            @Nonnull final List<BulkStatus> result) {
+        if (indexes.isEmpty()) {
+            return;     // An empty bulk write cannot be executed.
+        }
+        try {
+            bulk.execute();
+        } catch (final BulkWriteException e) {
+            for (final BulkWriteError error : e.getWriteErrors()) {
+                final int index = indexes.get(error.getIndex());
+                LOG.error("{}: Cannot write entity, index={}, code={}, message={}", name, index, error.getCode(),
+                        error.getMessage());
+                result.set(index, BulkStatus.FAILED);
+            }
+            if (e.getWriteConcernError() != null) {
+                LOG.error("{}: Write concern not satisfied, count={}, error={}", name, indexes.size(),
+                        e.getWriteConcernError());
+                for (final int index : indexes) {
+                    result.set(index, BulkStatus.FAILED);
+                }
+            }
+        } catch (final MongoException e) {
+            LOG.error("{}: Cannot execute bulk write, count={}", name, indexes.size(), e);
+            for (final int index : indexes) {
+                result.set(index, BulkStatus.FAILED);
+            }
+        }
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingDatabase.dao.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.tomtom.examples.exampleCreatingScalableServices.domain.Person;
+import com.tomtom.examples.exampleUsingDatabase.dao.mongodb.mappers.PersonMapper;
+import com.tomtom.speedtools.domain.Uid;
+import com.tomtom.speedtools.mongodb.mappers.MapperException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Queries on the person collection, shared by {@link PersonDaoMongoDBImpl} and {@link AsyncPersonDaoMongoDBImpl}. The
+ * queries are built as {@link BasicDBObject}s, which both the synchronous and the asynchronous driver accept.
+ *
+ * IDs are stored as strings, so they are matched on their string values.
+ */
+final class PersonQueries {
+
+    // Prevent instantiation.
+    private PersonQueries() {
+        assert false;
+    }
+
+    /**
+     * Query for a single person.
+     */
+    @Nonnull
+    static BasicDBObject byId(@Nonnull final PersonMapper mapper, @Nonnull final Uid<Person> personId) {
+        return new BasicDBObject(mapper.id.getFieldName(), personId.toString());
+    }
+
+    /**
+     * Query for the persons with the given IDs, with an $in condition.
+     */
+    @Nonnull
+    static BasicDBObject byIds(@Nonnull final PersonMapper mapper, @Nonnull final Collection<Uid<Person>> personIds) {
+        final List<String> values = new ArrayList<>(personIds.size());
+        for (final Uid<Person> personId : personIds) {
+            values.add(personId.toString());
+        }
+        return new BasicDBObject(mapper.id.getFieldName(), new BasicDBObject("$in", values));
+    }
+
+    /**
+     * Query for the persons after an ID, or for all persons if the ID is null. Sort by {@link #orderById}.
+     */
+    @Nonnull
+    static BasicDBObject after(@Nonnull final PersonMapper mapper, @Nullable final Uid<Person> after) {
+        return (after == null) ? new BasicDBObject() :
+                new BasicDBObject(mapper.id.getFieldName(), new BasicDBObject("$gt", after.toString()));
+    }
+
+    /**
+     * Sort order by ID.
+     */
+    @Nonnull
+    static BasicDBObject orderById(@Nonnull final PersonMapper mapper) {
+        return new BasicDBObject(mapper.id.getFieldName(), 1);
+    }
+
+    /**
+     * Projection on the ID only.
+     */
+    @Nonnull
+    static BasicDBObject idOnly(@Nonnull final PersonMapper mapper) {
+        return new BasicDBObject(mapper.id.getFieldName(), 1);
+    }
+
+    /**
+     * Query for persons by age range and/or name prefix. A name prefix is matched as a range of names, rather than as
+     * a regular expression, so the query is always an index range scan. The range conditions are built directly, as a
+     * field can only occur once in a query document. Sort by {@link #findOrderBy}.
+     */
+    @Nonnull
+    static BasicDBObject find(
+            @Nonnull final PersonMapper mapper,
+            @Nullable final Integer minAge,
+            @Nullable final Integer maxAge,
+            @Nullable final String namePrefix) {
+        final BasicDBObject query = new BasicDBObject();
+        if (namePrefix != null) {
+            query.append(mapper.name.getFieldName(), new BasicDBObject().
+                    append("$gte", namePrefix).
+                    append("$lt", namePrefix + Character.MAX_VALUE));
+        }
+        if ((minAge != null) || (maxAge != null)) {
+            final BasicDBObject range = new BasicDBObject();
+            if (minAge != null) {
+                range.append("$gte", minAge);
+            }
+            if (maxAge != null) {
+                range.append("$lte", maxAge);
+            }
+            query.append(mapper.age.getFieldName(), range);
+        }
+        return query;
+    }
+
+    /**
+     * Sort order of {@link #find}: on the fields of the index used, so no in-memory sort is needed.
+     */
+    @Nonnull
+    static BasicDBObject findOrderBy(@Nonnull final PersonMapper mapper, @Nullable final String namePrefix) {
+        return (namePrefix != null) ?
+                new BasicDBObject(mapper.name.getFieldName(), 1).append(mapper.age.getFieldName(), 1) :
+                new BasicDBObject(mapper.age.getFieldName(), 1);
+    }
+
+    /**
+     * Map the ID of a document.
+     */
+    @Nonnull
+    static Uid<Person> idFromDb(@Nonnull final PersonMapper mapper, @Nonnull final DBObject dbObject)
+            throws MapperException {
+        final Object value = dbObject.get(mapper.id.getFieldName());
+        if (!(value instanceof String) || !Uid.isValid((String) value)) {
+            throw new MapperException("Invalid person ID: " + value);
+        }
+        return Uid.fromString((String) value).as(Person.class);
+    }
+}
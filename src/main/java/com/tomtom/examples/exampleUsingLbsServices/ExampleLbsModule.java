@@ -39,12 +39,23 @@ public class ExampleLbsModule implements Module {
         // Bind APIs to their implementation.
         binder.bind(ExampleLbsResource.class).to(ExampleLbsResourceImpl.class).in(Singleton.class);
 
+        // Bind the caches of geocoding results and routes.
+        binder.bind(GeoCodeCache.class).in(Singleton.class);
+        binder.bind(GeoCodeCacheProperties.class).in(Singleton.class);
+        binder.bind(RouteCache.class).in(Singleton.class);
+        binder.bind(RouteCacheProperties.class).in(Singleton.class);
+
+        // Bind the bounded fan-out of batch geocoding requests.
+        binder.bind(GeoCodeBatch.class).in(Singleton.class);
+        binder.bind(GeoCodeBatchProperties.class).in(Singleton.class);
+
         /**
          * Show some start-up information about this example application.
          */
         LOG.info("configure:");
         LOG.info("configure: GET /lbs/traceme             Issue a trace event to MongoDB");
         LOG.info("configure: GET /lbs/geocode/<query>     Perform geo-coding request");
+        LOG.info("configure: POST /lbs/geocode/batch      Perform geo-coding requests of a batch of queries");
         LOG.info("configure: GET /lbs/route/<from>/<to>   Calculate route");
     }
 }
@@ -16,11 +16,17 @@
 
 package com.tomtom.examples.exampleUsingLbsServices;
 
+import com.tomtom.examples.common.JsonStreaming;
+import com.tomtom.examples.exampleUsingLbsServices.dto.GeoCodeQueriesDTO;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 
 /**
  * This example class provides a simple call to demonstrate use of the MongoDB tracer SpeedTools framework.
@@ -65,6 +71,30 @@ public interface ExampleLbsResource {
             @Nonnull @PathParam(PARAM_QUERY) String query,
             @Suspended @Nonnull AsyncResponse response);
 
+    /**
+     * This call geocodes a batch of queries with TomTom LBS. Duplicate queries are geocoded once and a limited
+     * number of queries is geocoded at the same time (see {@link GeoCodeBatch}).
+     *
+     * The results are streamed in the order of the queries, as a JSON array wrapped in a "results" field or as
+     * newline-delimited JSON. Every result is sent as soon as it and all results before it are available.
+     *
+     * HTTP 200: The request was processed. Every result has status 200, 500 if its geocoding call failed, or
+     * 504 if it was not available in time.
+     *
+     * HTTP 400: If any query is invalid, or the batch is empty or too large.
+     *
+     * @param queriesDTO Queries, at most {@link com.tomtom.examples.ApiConstants#API_GEOCODE_BATCH_SIZE_MAX}.
+     * @param request    Request, used for content negotiation.
+     * @param response   Results, {@link com.tomtom.examples.exampleUsingLbsServices.dto.GeoCodeBatchItemDTO}.
+     */
+    @POST
+    @Path("geocode/batch")
+    @Produces({MediaType.APPLICATION_JSON, JsonStreaming.APPLICATION_NDJSON})
+    void getGeoCodes(
+            @Nullable GeoCodeQueriesDTO queriesDTO,
+            @Context @Nonnull Request request,
+            @Suspended @Nonnull AsyncResponse response);
+
     /**
      * This call executes a geocoding call to TomTom LBS.
      *
@@ -18,20 +18,26 @@ package com.tomtom.examples.exampleUsingLbsServices;
 
 import akka.dispatch.Futures;
 import akka.dispatch.Mapper;
+import com.tomtom.examples.ApiConstants;
+import com.tomtom.examples.common.CloseableIterator;
+import com.tomtom.examples.common.JsonStreaming;
+import com.tomtom.examples.exampleUsingLbsServices.dto.GeoCodeBatchItemDTO;
+import com.tomtom.examples.exampleUsingLbsServices.dto.GeoCodeQueriesDTO;
 import com.tomtom.speedtools.apivalidation.exceptions.ApiForbiddenException;
+import com.tomtom.speedtools.apivalidation.exceptions.ApiIntegerOutOfRangeException;
 import com.tomtom.speedtools.apivalidation.exceptions.ApiNotFoundException;
+import com.tomtom.speedtools.apivalidation.exceptions.ApiParameterMissingException;
 import com.tomtom.speedtools.geometry.GeoPoint;
 import com.tomtom.speedtools.rest.Reactor;
 import com.tomtom.speedtools.rest.ResourceProcessor;
-import com.tomtom.speedtools.services.lbs.geocode.GeoCodeEngine;
 import com.tomtom.speedtools.services.lbs.geocode.GeoCodeEngineResponse;
 import com.tomtom.speedtools.services.lbs.geocode.GeoCodeEngineResult;
-import com.tomtom.speedtools.services.lbs.route.RouteEngine;
 import com.tomtom.speedtools.services.lbs.route.RouteEngineResponse;
 import com.tomtom.speedtools.tracer.Traceable;
 import com.tomtom.speedtools.tracer.TracerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.Tuple2;
 import scala.concurrent.Future;
 
 import javax.annotation.Nonnull;
@@ -40,7 +46,16 @@ import javax.inject.Inject;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * This class implements a REST API resource using the SpeedTools framework and includes a simple "tracer" which adds a
@@ -56,26 +71,31 @@ public class ExampleLbsResourceImpl implements ExampleLbsResource {
     @Nonnull
     private final ResourceProcessor processor;
     @Nonnull
-    private final GeoCodeEngine geoCodeEngine;
+    private final GeoCodeCache geoCodeCache;
     @Nonnull
-    private final RouteEngine routeEngine;
+    private final GeoCodeBatch geoCodeBatch;
+    @Nonnull
+    private final RouteCache routeCache;
 
     @Inject
     public ExampleLbsResourceImpl(
             @Nonnull final Reactor reactor,
-            @Nonnull final GeoCodeEngine geoCodeEngine,
-            @Nonnull final RouteEngine routeEngine,
+            @Nonnull final GeoCodeCache geoCodeCache,
+            @Nonnull final GeoCodeBatch geoCodeBatch,
+            @Nonnull final RouteCache routeCache,
             @Nonnull final ResourceProcessor processor) {
         assert reactor != null;
         assert processor != null;
-        assert geoCodeEngine != null;
-        assert routeEngine != null;
+        assert geoCodeCache != null;
+        assert geoCodeBatch != null;
+        assert routeCache != null;
 
         // Store the injected values.
         this.reactor = reactor;
         this.processor = processor;
-        this.geoCodeEngine = geoCodeEngine;
-        this.routeEngine = routeEngine;
+        this.geoCodeCache = geoCodeCache;
+        this.geoCodeBatch = geoCodeBatch;
+        this.routeCache = routeCache;
     }
 
     @Override
@@ -114,8 +134,8 @@ public class ExampleLbsResourceImpl implements ExampleLbsResource {
         processor.process("getGeoCode", LOG, response, () -> {
             LOG.info("getGeoCode: query={}", query);
 
-            // Execute geocode call. Exceptions will be handled by the 'processor'.
-            final GeoCodeEngineResponse r = geoCodeEngine.query(query);
+            // Execute geocode call, or get its result from the cache. Exceptions will be handled by the 'processor'.
+            final GeoCodeEngineResponse r = geoCodeCache.query(query);
 
             // Build the response and return it.
             response.resume(Response.ok(r).build());
@@ -125,6 +145,42 @@ public class ExampleLbsResourceImpl implements ExampleLbsResource {
         });
     }
 
+    @Override
+    public void getGeoCodes(
+            @Nullable final GeoCodeQueriesDTO queriesDTO,
+            @Context @Nonnull final Request request,
+            @Suspended @Nonnull final AsyncResponse response) {
+        assert request != null;
+        assert response != null;
+
+        processor.process("getGeoCodes", LOG, response, () -> {
+
+            // Check input.
+            if (queriesDTO == null) {
+                throw new ApiParameterMissingException("queries");
+            }
+            queriesDTO.validate();
+            final List<String> queries = queriesDTO.getQueries();
+            if (queries.isEmpty() || (queries.size() > ApiConstants.API_GEOCODE_BATCH_SIZE_MAX)) {
+                throw new ApiIntegerOutOfRangeException("queries", queries.size(), 1,
+                        ApiConstants.API_GEOCODE_BATCH_SIZE_MAX);
+            }
+            LOG.info("getGeoCodes: queries={}", queries.size());
+
+            // Start geocoding, and stream the results in order while the remaining queries are being geocoded.
+            final List<CompletableFuture<GeoCodeEngineResponse>> results = geoCodeBatch.query(queries);
+            // The remaining queries are cancelled if the response is never written.
+            @Nullable final JsonStreaming.Format format = JsonStreaming.selectFormat(request);
+            final BatchIterator batch = new BatchIterator(queries, results, geoCodeBatch.getQueryTimeoutSecs());
+            JsonStreaming.resume(response, JsonStreaming.ok("geocodes",
+                    (format == null) ? JsonStreaming.Format.JSON_ARRAY : format, "results", batch, item -> item, 1).
+                    build(), batch);
+
+            // The response is already set within this method body.
+            return Futures.successful(null);
+        });
+    }
+
     @Override
     public void getRoute(
             @Nonnull @PathParam(PARAM_FROM) final String from,
@@ -135,31 +191,31 @@ public class ExampleLbsResourceImpl implements ExampleLbsResource {
         processor.process("getRoute", LOG, response, () -> {
 
             LOG.info("getRoute: from={}, to={}", from, to);
+            final long start = System.nanoTime();
 
-            // Geocoding "from" query.
-            final GeoCodeEngineResponse listFrom = geoCodeEngine.query(from);
-            if (listFrom.getCount() <= 0) {
-                throw new ApiNotFoundException();
-            }
-            final GeoCodeEngineResult resFrom = listFrom.getGeoCodeEngineResultList().get(0);
-            final GeoPoint ptFrom = new GeoPoint((double) resFrom.getLatitude(), (double) resFrom.getLongitude());
-
-            // Geocoding "to" query.
-            final GeoCodeEngineResponse listTo = geoCodeEngine.query(to);
-            if (listTo.getCount() <= 0) {
-                throw new ApiNotFoundException();
-            }
-            final GeoCodeEngineResult resTo = listTo.getGeoCodeEngineResultList().get(0);
-            final GeoPoint ptTo = new GeoPoint((double) resTo.getLatitude(), (double) resTo.getLongitude());
+            // Geocode the "from" and "to" queries at the same time, rather than one after the other.
+            final Future<GeoPoint> futureFrom = geoCode("from", from, start);
+            final Future<GeoPoint> futureTo = geoCode("to", to, start);
 
-            // Execute routing call. Exceptions will be handled by the 'processor'.
-            final Future<RouteEngineResponse> route = routeEngine.route(ptFrom, ptTo);
+            // Execute routing call once both are available, or get the route from the cache. Exceptions will be
+            // handled by the 'processor'.
+            final Future<RouteEngineResponse> route = futureFrom.zip(futureTo).flatMap(
+                    new Mapper<Tuple2<GeoPoint, GeoPoint>, Future<RouteEngineResponse>>() {
+                        @Nonnull
+                        @Override
+                        public Future<RouteEngineResponse> checkedApply(
+                                @Nonnull final Tuple2<GeoPoint, GeoPoint> points) {
+                            LOG.debug("getRoute: geocoded, msecs={}", msecsSince(start));
+                            return routeCache.route(points._1(), points._2());
+                        }
+                    }, reactor.getExecutionContext());
 
             // Map the future once it is available.
             return route.map(new Mapper<RouteEngineResponse, Void>() {
                 @Nullable
                 @Override
                 public Void checkedApply(@Nullable final RouteEngineResponse parameter) throws Throwable {
+                    LOG.debug("getRoute: routed, msecs={}", msecsSince(start));
 
                     if (parameter == null) {
                         LOG.error("getRoute: No response received from LBS");
@@ -178,6 +234,98 @@ public class ExampleLbsResourceImpl implements ExampleLbsResource {
         });
     }
 
+    /**
+     * Geocode a query on the execution context of the reactor, and return the position of the first result.
+     *
+     * @param name  Name of the query, for logging.
+     * @param query Query.
+     * @param start Start time of the request, from {@link System#nanoTime()}, for logging.
+     * @return Future position. It fails with {@link ApiNotFoundException} if the query has no results.
+     */
+    @Nonnull
+    private Future<GeoPoint> geoCode(@Nonnull final String name, @Nonnull final String query, final long start) {
+        return Futures.future(() -> {
+            final GeoCodeEngineResponse list = geoCodeCache.query(query);
+            LOG.debug("geoCode: {}={}, count={}, msecs={}", name, query, list.getCount(), msecsSince(start));
+            if (list.getCount() <= 0) {
+                throw new ApiNotFoundException();
+            }
+            final GeoCodeEngineResult result = list.getGeoCodeEngineResultList().get(0);
+            return new GeoPoint((double) result.getLatitude(), (double) result.getLongitude());
+        }, reactor.getExecutionContext());
+    }
+
+    private static long msecsSince(final long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Iterates over the results of a batch of queries, in the order of the queries. Getting the next result waits
+     * until it is available, for at most a timeout, so the thread which writes the response is never blocked forever;
+     * a result which is not available in time gets status 504 and its query is cancelled. Closing the iterator, which
+     * happens when the response is written or the client went away, cancels the queries which were not started yet.
+     */
+    private static final class BatchIterator implements CloseableIterator<GeoCodeBatchItemDTO> {
+
+        @Nonnull
+        private final Iterator<String> queries;
+        @Nonnull
+        private final Iterator<CompletableFuture<GeoCodeEngineResponse>> results;
+        @Nonnull
+        private final List<CompletableFuture<GeoCodeEngineResponse>> allResults;
+        private final int timeoutSecs;
+
+        private BatchIterator(
+                @Nonnull final List<String> queries,
+                @Nonnull final List<CompletableFuture<GeoCodeEngineResponse>> results,
+                final int timeoutSecs) {
+            assert queries != null;
+            assert results != null;
+            assert queries.size() == results.size();
+            assert timeoutSecs > 0;
+            this.queries = queries.iterator();
+            this.results = results.iterator();
+            this.allResults = results;
+            this.timeoutSecs = timeoutSecs;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return results.hasNext();
+        }
+
+        @Nonnull
+        @Override
+        public GeoCodeBatchItemDTO next() {
+            if (!results.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String query = queries.next();
+            final CompletableFuture<GeoCodeEngineResponse> result = results.next();
+            try {
+                return new GeoCodeBatchItemDTO(query, Response.Status.OK.getStatusCode(),
+                        result.get(timeoutSecs, TimeUnit.SECONDS));
+            } catch (final ExecutionException e) {
+                LOG.warn("next: Geocoding failed, query={}", query, e.getCause());
+                return new GeoCodeBatchItemDTO(query, Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), null);
+            } catch (final TimeoutException e) {
+                LOG.warn("next: Geocoding timed out, query={}, timeoutSecs={}", query, timeoutSecs);
+                result.cancel(false);
+                return new GeoCodeBatchItemDTO(query, Response.Status.GATEWAY_TIMEOUT.getStatusCode(), null);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for query: " + query, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            for (final CompletableFuture<GeoCodeEngineResponse> result : allResults) {
+                result.cancel(false);
+            }
+        }
+    }
+
     /**
      * This local class defines the trace interface. The implementation of this class is provided by the SpeedTools
      * framework, which stores the call as a trace entry in a MongoDB database, together with its parameters and a time
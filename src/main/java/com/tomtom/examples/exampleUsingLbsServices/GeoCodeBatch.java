@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices;
+
+import akka.actor.ActorSystem;
+import com.tomtom.speedtools.services.lbs.geocode.GeoCodeEngineResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Geocodes a batch of queries through the {@link GeoCodeCache}. Queries which are equal after normalization (see
+ * {@link GeoCodeCache#normalize(String)}) are geocoded once.
+ *
+ * The fan-out is bounded twice: a single batch geocodes at most "maxConcurrency" queries at the same time, so a large
+ * batch does not flood LBS, and all batches share a pool of "nrThreads" threads, so many batches together do not
+ * either. Every query is a separate task of the pool, and the next query of a batch is only submitted when one of its
+ * queries completes. A thread is therefore held for a single query rather than for a whole batch, and the queries of
+ * concurrent batches take turns on the pool, so a few large batches cannot keep other batches waiting until they are
+ * done. The queries are taken in input order, so the first results, which are streamed first, are available first.
+ */
+public final class GeoCodeBatch {
+    private static final Logger LOG = LoggerFactory.getLogger(GeoCodeBatch.class);
+
+    @Nonnull
+    private final GeoCodeCache geoCodeCache;
+    private final int maxConcurrency;
+    private final int queryTimeoutSecs;
+    @Nonnull
+    private final ExecutorService executor;
+
+    @Inject
+    public GeoCodeBatch(
+            @Nonnull final GeoCodeCache geoCodeCache,
+            @Nonnull final GeoCodeBatchProperties properties,
+            @Nonnull final ActorSystem system) {
+        super();
+        assert geoCodeCache != null;
+        assert properties != null;
+        assert system != null;
+        this.geoCodeCache = geoCodeCache;
+        this.maxConcurrency = properties.getMaxConcurrency();
+        this.queryTimeoutSecs = properties.getQueryTimeoutSecs();
+        this.executor = Executors.newFixedThreadPool(properties.getNrThreads(), runnable -> {
+            final Thread thread = new Thread(runnable, "GeoCodeBatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        system.registerOnTermination(executor::shutdownNow);
+        LOG.info("GeoCodeBatch: properties={}", properties);
+    }
+
+    /**
+     * Start geocoding a batch of queries. The method returns immediately.
+     *
+     * Cancelling a future skips its query if it was not started yet. Duplicate queries share a future, so cancelling
+     * it cancels all of them.
+     *
+     * @param queries Queries.
+     * @return For every query, in the same order, the future geocoding response. It fails with the exception of
+     * {@link GeoCodeCache#query(String)}.
+     */
+    @Nonnull
+    public List<CompletableFuture<GeoCodeEngineResponse>> query(@Nonnull final List<String> queries) {
+        assert queries != null;
+
+        // Remove duplicates; only the first occurrence of a query is geocoded.
+        final Map<String, CompletableFuture<GeoCodeEngineResponse>> byKey = new HashMap<>();
+        final List<CompletableFuture<GeoCodeEngineResponse>> results = new ArrayList<>(queries.size());
+        final List<String> uniqueQueries = new ArrayList<>();
+        final List<CompletableFuture<GeoCodeEngineResponse>> uniqueResults = new ArrayList<>();
+        for (final String query : queries) {
+            final String key = GeoCodeCache.normalize(query);
+            @Nullable CompletableFuture<GeoCodeEngineResponse> result = byKey.get(key);
+            if (result == null) {
+                result = new CompletableFuture<>();
+                byKey.put(key, result);
+                uniqueQueries.add(query);
+                uniqueResults.add(result);
+            }
+            results.add(result);
+        }
+
+        // Start a bounded number of queries; every completed query starts the next one.
+        final Batch batch = new Batch(uniqueQueries, uniqueResults);
+        final int nrInFlight = Math.min(maxConcurrency, uniqueQueries.size());
+        LOG.debug("query: queries={}, unique={}, inFlight={}", queries.size(), uniqueQueries.size(), nrInFlight);
+        for (int i = 0; i < nrInFlight; ++i) {
+            batch.startNext();
+        }
+        return results;
+    }
+
+    /**
+     * Return the maximum time to wait for the result of a single query, once all results before it are available.
+     *
+     * @return Timeout in seconds.
+     */
+    public int getQueryTimeoutSecs() {
+        return queryTimeoutSecs;
+    }
+
+    /**
+     * Queries of a single batch which are not started yet.
+     */
+    private final class Batch {
+        @Nonnull
+        private final List<String> queries;
+        @Nonnull
+        private final List<CompletableFuture<GeoCodeEngineResponse>> results;
+        @Nonnull
+        private final AtomicInteger next = new AtomicInteger();
+
+        private Batch(
+                @Nonnull final List<String> queries,
+                @Nonnull final List<CompletableFuture<GeoCodeEngineResponse>> results) {
+            assert queries != null;
+            assert results != null;
+            assert queries.size() == results.size();
+            this.queries = queries;
+            this.results = results;
+        }
+
+        /**
+         * Submit the next query which was not cancelled, if any. When it completes, the query after it is submitted.
+         */
+        private void startNext() {
+            int index = next.getAndIncrement();
+            while ((index < queries.size()) && results.get(index).isDone()) {
+                index = next.getAndIncrement();
+            }
+            if (index >= queries.size()) {
+                return;
+            }
+            final String query = queries.get(index);
+            final CompletableFuture<GeoCodeEngineResponse> result = results.get(index);
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (!result.isDone()) {
+                            result.complete(geoCodeCache.query(query));
+                        }
+                    } catch (final Throwable e) {
+                        result.completeExceptionally(e);
+                    } finally {
+                        startNext();
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+
+                // The pool was shut down: fail this query and all queries after it.
+                LOG.warn("startNext: Cannot geocode, pool was shut down");
+                for (int i = index; i < results.size(); ++i) {
+                    results.get(i).completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Properties for {@link GeoCodeBatch}. The values are read from the property files listed in the deployment module
+ * (see example.properties).
+ */
+public final class GeoCodeBatchProperties {
+
+    private final int maxConcurrency;
+    private final int nrThreads;
+    private final int queryTimeoutSecs;
+
+    /**
+     * Create the properties.
+     *
+     * @param maxConcurrency   Maximum number of queries of a single batch which are geocoded at the same time.
+     * @param nrThreads        Number of threads shared by all batches. This bounds the number of geocoding calls of
+     *                         all batches together.
+     * @param queryTimeoutSecs Maximum time to wait for the result of a single query, in seconds, once all results
+     *                         before it were sent. A query which takes longer gets status 504.
+     */
+    @Inject
+    public GeoCodeBatchProperties(
+            @Named("GeoCodeBatch.maxConcurrency") final int maxConcurrency,
+            @Named("GeoCodeBatch.nrThreads") final int nrThreads,
+            @Named("GeoCodeBatch.queryTimeoutSecs") final int queryTimeoutSecs) {
+        assert maxConcurrency > 0;
+        assert nrThreads > 0;
+        assert queryTimeoutSecs > 0;
+        this.maxConcurrency = maxConcurrency;
+        this.nrThreads = nrThreads;
+        this.queryTimeoutSecs = queryTimeoutSecs;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getNrThreads() {
+        return nrThreads;
+    }
+
+    public int getQueryTimeoutSecs() {
+        return queryTimeoutSecs;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
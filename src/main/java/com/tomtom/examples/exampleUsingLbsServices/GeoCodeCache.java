@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.tomtom.examples.common.MBeans;
+import com.tomtom.speedtools.services.lbs.geocode.GeoCodeEngine;
+import com.tomtom.speedtools.services.lbs.geocode.GeoCodeEngineResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of geocoding results, in front of the {@link GeoCodeEngine}. Queries are cached by their normalized form (see
+ * {@link #normalize(String)}), so queries which differ only in case, whitespace or diacritics share an entry. The
+ * geocoding call of the first query of an entry is executed with that query as given.
+ *
+ * The cache is a Caffeine cache, which is bounded in size and evicts with the W-TinyLFU policy. Results expire a fixed
+ * time after they were loaded. Queries without results are cached as well, to protect the LBS from repeated queries
+ * which never match, but expire much sooner, so a fixed or newly added address is found soon. Failed calls are not
+ * cached.
+ *
+ * Concurrent queries for the same entry which is not cached yet share a single geocoding call: the first query calls
+ * the LBS and the others wait for its result. The cache holds futures, so the LBS is called after the entry was added
+ * to the cache, rather than inside the atomic load of the cache, which would block queries of unrelated entries which
+ * happen to share a lock of the underlying map.
+ *
+ * The hit rate and the LBS time saved by the cache are available through JMX.
+ */
+public final class GeoCodeCache implements GeoCodeCacheMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(GeoCodeCache.class);
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Nonnull
+    private final GeoCodeEngine geoCodeEngine;
+    @Nonnull
+    private final AsyncCache<String, Entry> cache;
+    @Nonnull
+    private final LongAdder negativeLoads = new LongAdder();
+    @Nonnull
+    private final LongAdder savedNanos = new LongAdder();
+
+    /**
+     * Create the cache. Its statistics are registered with the platform MBean server.
+     *
+     * @param geoCodeEngine Geocoding engine.
+     * @param properties    Cache properties.
+     */
+    @Inject
+    public GeoCodeCache(
+            @Nonnull final GeoCodeEngine geoCodeEngine,
+            @Nonnull final GeoCodeCacheProperties properties) {
+        super();
+        assert geoCodeEngine != null;
+        assert properties != null;
+        this.geoCodeEngine = geoCodeEngine;
+
+        final long expireAfterNanos = TimeUnit.SECONDS.toNanos(properties.getExpireAfterSecs());
+        final long negativeExpireAfterNanos = TimeUnit.SECONDS.toNanos(properties.getNegativeExpireAfterSecs());
+        this.cache = Caffeine.newBuilder().
+                maximumSize(properties.getMaximumSize()).
+                expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(
+                            @Nonnull final String key,
+                            @Nonnull final Entry value,
+                            final long currentTime) {
+                        return value.isNegative() ? negativeExpireAfterNanos : expireAfterNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(
+                            @Nonnull final String key,
+                            @Nonnull final Entry value,
+                            final long currentTime,
+                            final long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(
+                            @Nonnull final String key,
+                            @Nonnull final Entry value,
+                            final long currentTime,
+                            final long currentDuration) {
+                        return currentDuration;
+                    }
+                }).
+                recordStats().
+                buildAsync();
+        MBeans.register(this, "GeoCodeCache", "lbs");
+        LOG.info("GeoCodeCache: properties={}", properties);
+    }
+
+    /**
+     * Geocode a query, from the cache if possible.
+     *
+     * @param query Query.
+     * @return Geocoding response. It is shared between callers and must not be modified.
+     * @throws Exception If the geocoding call failed; the exception of {@link GeoCodeEngine#query(String)}.
+     */
+    @SuppressWarnings("ProhibitedExceptionDeclared")
+    @Nonnull
+    public GeoCodeEngineResponse query(@Nonnull final String query) throws Exception {
+        assert query != null;
+        final CompletableFuture<Entry> load = new CompletableFuture<>();
+        final CompletableFuture<Entry> future = cache.get(normalize(query),
+                (final String key, final Executor executor) -> load);
+        final boolean loaded = (future == load);
+        if (loaded) {
+
+            // This query added the entry, so it calls the LBS; a failed call is removed from the cache.
+            final long start = System.nanoTime();
+            try {
+                final Entry loadedEntry = new Entry(geoCodeEngine.query(query), System.nanoTime() - start);
+                if (loadedEntry.isNegative()) {
+                    negativeLoads.increment();
+                }
+                load.complete(loadedEntry);
+            } catch (final Throwable e) {
+                load.completeExceptionally(e);
+            }
+        }
+        final Entry entry;
+        try {
+            entry = future.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+        if (!loaded) {
+            savedNanos.add(entry.loadNanos);
+        }
+        return entry.response;
+    }
+
+    /**
+     * Normalize a query: decompose accented characters and remove the accents, convert to lower case, and replace
+     * every run of whitespace by a single space.
+     *
+     * @param query Query.
+     * @return Normalized query.
+     */
+    @Nonnull
+    static String normalize(@Nonnull final String query) {
+        assert query != null;
+        final String withoutDiacritics = DIACRITICS.matcher(Normalizer.normalize(query, Normalizer.Form.NFD)).
+                replaceAll("");
+        return WHITESPACE.matcher(withoutDiacritics.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.synchronous().stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.synchronous().stats().missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.synchronous().stats().evictionCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return cache.synchronous().stats().hitRate();
+    }
+
+    @Override
+    public long getNegativeLoadCount() {
+        return negativeLoads.sum();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    @Override
+    public double getAverageLbsMsecs() {
+        return cache.synchronous().stats().averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public long getSavedLbsMsecs() {
+        return TimeUnit.NANOSECONDS.toMillis(savedNanos.sum());
+    }
+
+    /**
+     * Cached geocoding response, with the time it took to get it from the LBS.
+     */
+    private static final class Entry {
+        @Nonnull
+        private final GeoCodeEngineResponse response;
+        private final long loadNanos;
+
+        Entry(@Nonnull final GeoCodeEngineResponse response, final long loadNanos) {
+            this.response = response;
+            this.loadNanos = loadNanos;
+        }
+
+        boolean isNegative() {
+            return response.getCount() <= 0;
+        }
+    }
+}
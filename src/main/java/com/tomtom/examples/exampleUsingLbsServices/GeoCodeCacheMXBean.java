@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices;
+
+/**
+ * Management interface of {@link GeoCodeCache}.
+ */
+public interface GeoCodeCacheMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    /**
+     * Return the fraction of queries which were served from the cache, including queries which waited for the same
+     * query in progress.
+     *
+     * @return Hits divided by queries, or 1 if there were no queries.
+     */
+    double getHitRate();
+
+    /**
+     * Return the number of geocoding calls without results. Each of these was cached as a negative entry, which may
+     * have expired since; this is not the number of negative entries currently cached.
+     *
+     * @return Number of negative entries loaded since start-up.
+     */
+    long getNegativeLoadCount();
+
+    /**
+     * Return the approximate number of cached queries.
+     *
+     * @return Number of cached queries.
+     */
+    long getSize();
+
+    /**
+     * Return the average time of a geocoding call to the LBS.
+     *
+     * @return Average call time in milliseconds, or 0 if there were no calls.
+     */
+    double getAverageLbsMsecs();
+
+    /**
+     * Return the total time the geocoding calls would have taken, which were served from the cache instead. For every
+     * hit, this adds the time of the call which loaded the entry.
+     *
+     * @return Saved time in milliseconds.
+     */
+    long getSavedLbsMsecs();
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Properties for the {@link GeoCodeCache}. The values are read from the property files listed in the deployment
+ * module (see example.properties).
+ */
+public final class GeoCodeCacheProperties {
+
+    private final long maximumSize;
+    private final long expireAfterSecs;
+    private final long negativeExpireAfterSecs;
+
+    /**
+     * Create the properties.
+     *
+     * @param maximumSize             Maximum number of cached queries.
+     * @param expireAfterSecs         Time after which a cached result expires, in seconds.
+     * @param negativeExpireAfterSecs Time after which a cached query without results expires, in seconds.
+     */
+    @Inject
+    public GeoCodeCacheProperties(
+            @Named("GeoCodeCache.maximumSize") final long maximumSize,
+            @Named("GeoCodeCache.expireAfterSecs") final long expireAfterSecs,
+            @Named("GeoCodeCache.negativeExpireAfterSecs") final long negativeExpireAfterSecs) {
+        assert maximumSize >= 0;
+        assert expireAfterSecs > 0;
+        assert negativeExpireAfterSecs > 0;
+        this.maximumSize = maximumSize;
+        this.expireAfterSecs = expireAfterSecs;
+        this.negativeExpireAfterSecs = negativeExpireAfterSecs;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getExpireAfterSecs() {
+        return expireAfterSecs;
+    }
+
+    public long getNegativeExpireAfterSecs() {
+        return negativeExpireAfterSecs;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
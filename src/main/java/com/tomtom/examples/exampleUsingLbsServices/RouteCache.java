@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.tomtom.examples.common.JsonMapper;
+import com.tomtom.examples.common.MBeans;
+import com.tomtom.speedtools.geometry.GeoPoint;
+import com.tomtom.speedtools.services.lbs.route.RouteEngine;
+import com.tomtom.speedtools.services.lbs.route.RouteEngineResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.Future;
+import scala.jdk.javaapi.FutureConverters;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of routes, in front of the {@link RouteEngine}. Routes are cached by their origin and destination, snapped to
+ * a grid of a configurable resolution, so routes between nearly identical points share an entry. The route of an
+ * entry is calculated between the points of the first request for it.
+ *
+ * Routes depend on traffic, so time is divided in buckets of a fixed length, and all routes calculated in a bucket
+ * expire at the end of that bucket. The cache is bounded by the estimated memory used by the routes, which is the
+ * size of their JSON representation; routes are evicted with the W-TinyLFU policy. Failed calls are not cached.
+ *
+ * Concurrent requests for the same route which is not cached yet share a single routing call.
+ *
+ * The hit rate and the estimated memory used are available through JMX.
+ */
+public final class RouteCache implements RouteCacheMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(RouteCache.class);
+
+    // Weight of a route which cannot be serialized.
+    private static final int DEFAULT_WEIGHT = 1024;
+
+    @Nonnull
+    private final RouteEngine routeEngine;
+    @Nonnull
+    private final AsyncCache<Key, RouteEngineResponse> cache;
+    private final double gridDegrees;
+    private final long timeBucketMsecs;
+    private final long maximumSizeBytes;
+
+    /**
+     * Create the cache. Its statistics are registered with the platform MBean server.
+     *
+     * @param routeEngine Route engine.
+     * @param properties  Cache properties.
+     */
+    @Inject
+    public RouteCache(
+            @Nonnull final RouteEngine routeEngine,
+            @Nonnull final RouteCacheProperties properties) {
+        super();
+        assert routeEngine != null;
+        assert properties != null;
+        this.routeEngine = routeEngine;
+        this.gridDegrees = properties.getGridDegrees();
+        this.timeBucketMsecs = TimeUnit.SECONDS.toMillis(properties.getTimeBucketSecs());
+        this.maximumSizeBytes = properties.getMaximumSizeMB() * 1024 * 1024;
+        this.cache = Caffeine.newBuilder().
+                maximumWeight(maximumSizeBytes).
+                weigher((final Key key, final RouteEngineResponse route) -> weigh(route)).
+                expireAfter(new Expiry<Key, RouteEngineResponse>() {
+                    @Override
+                    public long expireAfterCreate(
+                            @Nonnull final Key key,
+                            @Nonnull final RouteEngineResponse value,
+                            final long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(msecsToEndOfBucket());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(
+                            @Nonnull final Key key,
+                            @Nonnull final RouteEngineResponse value,
+                            final long currentTime,
+                            final long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(
+                            @Nonnull final Key key,
+                            @Nonnull final RouteEngineResponse value,
+                            final long currentTime,
+                            final long currentDuration) {
+                        return currentDuration;
+                    }
+                }).
+                recordStats().
+                buildAsync();
+        MBeans.register(this, "RouteCache", "lbs");
+        LOG.info("RouteCache: properties={}", properties);
+    }
+
+    /**
+     * Calculate a route, or get it from the cache.
+     *
+     * @param from Origin.
+     * @param to   Destination.
+     * @return Future route. It is shared between callers and must not be modified. The future fails with the
+     * exception of {@link RouteEngine#route}.
+     */
+    @Nonnull
+    public Future<RouteEngineResponse> route(@Nonnull final GeoPoint from, @Nonnull final GeoPoint to) {
+        assert from != null;
+        assert to != null;
+        final Key key = new Key(snap(from.getLat()), snap(from.getLon()), snap(to.getLat()), snap(to.getLon()));
+        return FutureConverters.asScala(cache.get(key, (final Key k, final Executor executor) ->
+                FutureConverters.asJava(routeEngine.route(from, to)).toCompletableFuture()));
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.synchronous().stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.synchronous().stats().missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.synchronous().stats().evictionCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return cache.synchronous().stats().hitRate();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return cache.synchronous().policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    @Override
+    public long getMaximumSizeBytes() {
+        return maximumSizeBytes;
+    }
+
+    /**
+     * Snap a coordinate to the grid.
+     */
+    private long snap(final double degrees) {
+        return Math.round(degrees / gridDegrees);
+    }
+
+    private long msecsToEndOfBucket() {
+        final long now = System.currentTimeMillis();
+        return timeBucketMsecs - (now % timeBucketMsecs);
+    }
+
+    private static int weigh(@Nullable final RouteEngineResponse route) {
+        try {
+            return JsonMapper.OBJECT_MAPPER.writeValueAsBytes(route).length;
+        } catch (final JsonProcessingException e) {
+            LOG.warn("weigh: Cannot serialize route", e);
+            return DEFAULT_WEIGHT;
+        }
+    }
+
+    /**
+     * Origin and destination, snapped to the grid.
+     */
+    private static final class Key {
+        private final long fromLat;
+        private final long fromLon;
+        private final long toLat;
+        private final long toLon;
+
+        Key(final long fromLat, final long fromLon, final long toLat, final long toLon) {
+            this.fromLat = fromLat;
+            this.fromLon = fromLon;
+            this.toLat = toLat;
+            this.toLon = toLon;
+        }
+
+        @Override
+        public boolean equals(@Nullable final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return (fromLat == that.fromLat) && (fromLon == that.fromLon) && (toLat == that.toLat) &&
+                    (toLon == that.toLon);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(((((fromLat * 31) + fromLon) * 31) + toLat) * 31 + toLon);
+        }
+    }
+}
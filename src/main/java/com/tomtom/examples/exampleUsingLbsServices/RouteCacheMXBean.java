@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices;
+
+/**
+ * Management interface of {@link RouteCache}.
+ */
+public interface RouteCacheMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    /**
+     * Return the fraction of routes which were served from the cache, including routes which waited for the same
+     * route in progress.
+     *
+     * @return Hits divided by requests, or 1 if there were no requests.
+     */
+    double getHitRate();
+
+    /**
+     * Return the approximate number of cached routes.
+     *
+     * @return Number of cached routes.
+     */
+    long getSize();
+
+    /**
+     * Return the estimated memory used by the cached routes: the sum of the sizes of their JSON representations.
+     *
+     * @return Size in bytes.
+     */
+    long getSizeBytes();
+
+    long getMaximumSizeBytes();
+}
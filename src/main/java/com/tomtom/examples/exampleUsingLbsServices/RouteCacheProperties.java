@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Properties for the {@link RouteCache}. The values are read from the property files listed in the deployment module
+ * (see example.properties).
+ */
+public final class RouteCacheProperties {
+
+    private final double gridDegrees;
+    private final long timeBucketSecs;
+    private final long maximumSizeMB;
+
+    /**
+     * Create the properties.
+     *
+     * @param gridDegrees    Resolution of the grid origins and destinations are snapped to, in degrees.
+     * @param timeBucketSecs Length of a time bucket, in seconds. Routes expire at the end of the bucket in which they
+     *                       were calculated.
+     * @param maximumSizeMB  Maximum estimated memory used by the cached routes, in MB.
+     */
+    @Inject
+    public RouteCacheProperties(
+            @Named("RouteCache.gridDegrees") final double gridDegrees,
+            @Named("RouteCache.timeBucketSecs") final long timeBucketSecs,
+            @Named("RouteCache.maximumSizeMB") final long maximumSizeMB) {
+        assert gridDegrees > 0.0;
+        assert timeBucketSecs > 0;
+        assert maximumSizeMB >= 0;
+        this.gridDegrees = gridDegrees;
+        this.timeBucketSecs = timeBucketSecs;
+        this.maximumSizeMB = maximumSizeMB;
+    }
+
+    public double getGridDegrees() {
+        return gridDegrees;
+    }
+
+    public long getTimeBucketSecs() {
+        return timeBucketSecs;
+    }
+
+    public long getMaximumSizeMB() {
+        return maximumSizeMB;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.tomtom.speedtools.apivalidation.ApiDTO;
+import com.tomtom.speedtools.services.lbs.geocode.GeoCodeEngineResponse;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+
+/**
+ * This class contains a binder for the result of a single query of a batch geocoding request. The status is the HTTP
+ * status code the corresponding single request would have returned, such as 200 (OK) or 500 (LBS failed).
+ */
+@JsonInclude(Include.NON_EMPTY)
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class GeoCodeBatchItemDTO extends ApiDTO {
+
+    private static final int STATUS_MIN = 100;
+    private static final int STATUS_MAX = 599;
+
+    @Nullable
+    private String query;
+    @Nullable
+    private Integer status;
+    @Nullable
+    private GeoCodeEngineResponse response;
+
+    @Override
+    public void validate() {
+        validator().start();
+        validator().checkNotNull(true, "query", query);
+        validator().checkInteger(true, "status", status, STATUS_MIN, STATUS_MAX);
+        validator().checkNotNull(false, "response", response);
+        validator().done();
+    }
+
+    public GeoCodeBatchItemDTO(
+            @Nonnull final String query,
+            final int status,
+            @Nullable final GeoCodeEngineResponse response) {
+        super();
+        setQuery(query);
+        setStatus(status);
+        setResponse(response);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    @Deprecated
+    private GeoCodeBatchItemDTO() {
+        // Default constructor required by JAX-B.
+        super();
+    }
+
+    @XmlElement(name = "query", required = true)
+    @Nonnull
+    public String getQuery() {
+        beforeGet();
+        assert query != null;
+        return query;
+    }
+
+    public void setQuery(@Nullable final String query) {
+        beforeSet();
+        this.query = query;
+    }
+
+    @XmlElement(name = "status", required = true)
+    @Nonnull
+    public Integer getStatus() {
+        beforeGet();
+        assert status != null;
+        return status;
+    }
+
+    public void setStatus(@Nullable final Integer status) {
+        beforeSet();
+        this.status = status;
+    }
+
+    @XmlElement(name = "response", required = false)
+    @Nullable
+    public GeoCodeEngineResponse getResponse() {
+        beforeGet();
+        return response;
+    }
+
+    public void setResponse(@Nullable final GeoCodeEngineResponse response) {
+        beforeSet();
+        this.response = response;
+    }
+
+    @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        return EqualsBuilder.reflectionEquals(this, obj, false);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
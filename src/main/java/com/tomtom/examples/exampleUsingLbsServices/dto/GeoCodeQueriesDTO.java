@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2012-2021, TomTom (http://tomtom.com).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tomtom.examples.exampleUsingLbsServices.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.tomtom.examples.ApiConstants;
+import com.tomtom.speedtools.apivalidation.ApiDTO;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.List;
+
+/**
+ * This class contains a binder for a batch of geocoding queries.
+ */
+@JsonInclude(Include.NON_EMPTY)
+@XmlRootElement(name = "geocodeBatch")
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class GeoCodeQueriesDTO extends ApiDTO {
+
+    @Nullable
+    private List<String> queries;
+
+    @Override
+    public void validate() {
+        validator().start();
+        validator().checkNotNull(true, "queries", queries);
+        if (queries != null) {
+            for (final String query : queries) {
+                validator().checkString(true, "query", query,
+                        ApiConstants.API_QUERY_LEN_MIN, ApiConstants.API_QUERY_LEN_MAX);
+            }
+        }
+        validator().done();
+    }
+
+    public GeoCodeQueriesDTO(
+            @Nullable final List<String> queries) {
+        super();
+        setQueries(queries);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    @Deprecated
+    private GeoCodeQueriesDTO() {
+        // Default constructor required by JAX-B.
+        super();
+    }
+
+    @XmlElement(name = "queries", required = true)
+    @Nonnull
+    public List<String> getQueries() {
+        beforeGet();
+        assert queries != null;
+        return queries;
+    }
+
+    public void setQueries(@Nullable final List<String> queries) {
+        beforeSet();
+        this.queries = queries;
+    }
+
+    @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        return EqualsBuilder.reflectionEquals(this, obj, false);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, false);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}